@@ -0,0 +1,166 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link SimpleCache} and {@link ConcurrentCache}, with a single thread
+ * and with as many threads as there are CPUs.
+ * <p>
+ * The cache is filled with {@value #ENTRIES} entries. The "get" and "fetch" benchmarks
+ * only hit these entries. The "fetchMiss" benchmarks always fetch new keys, so every
+ * call evicts an entry.
+ *
+ * @author Richard "Shred" Körber
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+    private static final int ENTRIES = 1000;
+
+    private static final String[] KEYS = new String[ENTRIES];
+
+    static {
+        for (int ix = 0; ix < ENTRIES; ix++) {
+            KEYS[ix] = "https://www.example.com/blog/article-" + ix + ".html";
+        }
+    }
+
+    /**
+     * Common interface of both cache implementations.
+     */
+    private interface Cache {
+        String get(String key);
+
+        String fetch(String key, BiFunction<String, String, String> provider);
+    }
+
+    /**
+     * Key sequence of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+        private int next;
+        private long missing = Thread.currentThread().getId() << 32;
+
+        public String hit() {
+            next = (next + 1) % ENTRIES;
+            return KEYS[next];
+        }
+
+        public String miss() {
+            return "https://www.example.com/missing/" + (missing++);
+        }
+    }
+
+    @Param({"simple", "concurrent"})
+    public String implementation;
+
+    private Cache cache;
+
+    @Setup
+    public void setup() {
+        if ("simple".equals(implementation)) {
+            SimpleCache<String, String> simple = new SimpleCache<>(ENTRIES, 1L, TimeUnit.HOURS);
+            cache = new Cache() {
+                @Override
+                public String get(String key) {
+                    return simple.get(key);
+                }
+
+                @Override
+                public String fetch(String key, BiFunction<String, String, String> provider) {
+                    return simple.fetch(key, provider);
+                }
+            };
+        } else {
+            ConcurrentCache<String, String> concurrent = new ConcurrentCache<>(ENTRIES, 1L, TimeUnit.HOURS);
+            cache = new Cache() {
+                @Override
+                public String get(String key) {
+                    return concurrent.get(key);
+                }
+
+                @Override
+                public String fetch(String key, BiFunction<String, String, String> provider) {
+                    return concurrent.fetch(key, provider);
+                }
+            };
+        }
+
+        for (String key : KEYS) {
+            cache.fetch(key, CacheBenchmark::provide);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String get(Keys keys) {
+        return cache.get(keys.hit());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getContended(Keys keys) {
+        return cache.get(keys.hit());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String fetch(Keys keys) {
+        return cache.fetch(keys.hit(), CacheBenchmark::provide);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String fetchContended(Keys keys) {
+        return cache.fetch(keys.hit(), CacheBenchmark::provide);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String fetchMiss(Keys keys) {
+        return cache.fetch(keys.miss(), CacheBenchmark::provide);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String fetchMissContended(Keys keys) {
+        return cache.fetch(keys.miss(), CacheBenchmark::provide);
+    }
+
+    private static String provide(String key, String previous) {
+        return "counts";
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shredzone.shariff.api.Target;
+
+/**
+ * Benchmarks of {@link ShariffServlet#doGet(HttpServletRequest, HttpServletResponse)}
+ * on cache hits and cache misses.
+ * <p>
+ * The backend uses stub targets that return a counter immediately, so a cache miss
+ * measures the overhead of the backend, but not the network. Requests and responses
+ * are stubs that do not record invocations.
+ *
+ * @author Richard "Shred" Körber
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServletBenchmark {
+
+    private static final List<String> TARGETS = Arrays.asList(
+            "addthis", "buffer", "facebook", "pinterest", "reddit", "stumbleupon", "vk", "xing");
+
+    /**
+     * A {@link Target} that returns a counter immediately.
+     */
+    private static class StubTarget implements Target {
+        private final String name;
+
+        public StubTarget(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int count(String url) {
+            return url.length() * 17;
+        }
+    }
+
+    /**
+     * A {@link ServletOutputStream} that only counts the bytes written.
+     */
+    private static class CountingOutputStream extends ServletOutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * Request of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Request {
+        private final String[] url = new String[1];
+        private final HttpServletRequest req = stub(HttpServletRequest.class, (method, args) -> {
+            switch (method) {
+                case "getParameter":
+                    return url[0];
+                case "getParameterValues":
+                    return url.clone();
+                case "getServerName":
+                    return "www.example.com";
+                case "getMethod":
+                    return "GET";
+                default:
+                    return null;
+            }
+        });
+        private long missing = Thread.currentThread().getId() << 32;
+
+        public HttpServletRequest hit() {
+            url[0] = "https://www.example.com/blog/article.html";
+            return req;
+        }
+
+        public HttpServletRequest miss() {
+            url[0] = "https://www.example.com/blog/article-" + (missing++) + ".html";
+            return req;
+        }
+    }
+
+    private final CountingOutputStream out = new CountingOutputStream();
+    private final HttpServletResponse resp = stub(HttpServletResponse.class,
+            (method, args) -> "getOutputStream".equals(method) ? out : null);
+
+    private ShariffServlet servlet;
+    private ShariffBackend backend;
+
+    @Setup
+    @SuppressWarnings("serial")
+    public void setup() throws IOException {
+        backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return TARGETS.stream().map(StubTarget::new).collect(Collectors.toList());
+            }
+        };
+
+        servlet = new ShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                return backend;
+            }
+        };
+
+        // Fail early if the request is not answered with counters
+        doGetHit(new Request());
+        if (out.count == 0L) {
+            throw new IllegalStateException("No counters were written");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        servlet.destroy();
+    }
+
+    @Benchmark
+    public long doGetHit(Request request) throws IOException {
+        servlet.doGet(request.hit(), resp);
+        return out.count;
+    }
+
+    @Benchmark
+    public long doGetMiss(Request request) throws IOException {
+        servlet.doGet(request.miss(), resp);
+        return out.count;
+    }
+
+    @FunctionalInterface
+    private interface Answer {
+        Object answer(String method, Object[] args);
+    }
+
+    /**
+     * Creates a stub of a servlet interface. Methods returning a primitive type return
+     * 0 or {@code false} unless answered otherwise.
+     */
+    private static <T> T stub(Class<T> type, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> {
+                    Object result = answer.answer(method.getName(), args);
+                    if (result == null && method.getReturnType() == boolean.class) {
+                        return Boolean.FALSE;
+                    }
+                    if (result == null && method.getReturnType() == int.class) {
+                        return 0;
+                    }
+                    if (result == null && method.getReturnType() == long.class) {
+                        return 0L;
+                    }
+                    return result;
+                }));
+    }
+
+}
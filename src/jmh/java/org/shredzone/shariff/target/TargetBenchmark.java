@@ -0,0 +1,129 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff.target;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@code extractCount} implementations of all targets, reading
+ * recorded responses.
+ *
+ * @author Richard "Shred" Körber
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetBenchmark {
+
+    @FunctionalInterface
+    private interface Extractor {
+        int extract(InputStream in) throws IOException;
+    }
+
+    @Param({"addthis", "buffer", "facebook", "pinterest", "reddit", "stumbleupon", "vk", "xing"})
+    public String target;
+
+    private Extractor extractor;
+    private byte[] response;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (target) {
+            case "addthis":
+                extractor = new AddThis()::extractCount;
+                response = read("/addthis-result.json");
+                break;
+
+            case "buffer":
+                extractor = new Buffer()::extractCount;
+                response = read("/buffer-result.json");
+                break;
+
+            case "facebook":
+                extractor = new Facebook()::extractCount;
+                response = read("/facebook-result.json");
+                break;
+
+            case "pinterest":
+                extractor = new Pinterest()::extractCount;
+                response = read("/pinterest-result.txt");
+                break;
+
+            case "reddit":
+                extractor = new Reddit()::extractCount;
+                response = read("/reddit-result.json");
+                break;
+
+            case "stumbleupon":
+                extractor = new StumbleUpon()::extractCount;
+                response = read("/stumbleupon-result.json");
+                break;
+
+            case "vk":
+                extractor = new Vk()::extractCount;
+                response = read("/vk-result.txt");
+                break;
+
+            case "xing":
+                extractor = new Xing()::extractCount;
+                response = read("/xing-result.json");
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown target " + target);
+        }
+
+        // Fail early if the response cannot be parsed
+        extractCount();
+    }
+
+    @Benchmark
+    public int extractCount() throws IOException {
+        return extractor.extract(new ByteArrayInputStream(response));
+    }
+
+    private static byte[] read(String name) throws IOException {
+        try (InputStream in = TargetBenchmark.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing response " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A variant of {@link ShariffServlet} that uses asynchronous request processing.
+ * <p>
+ * Cache hits are answered immediately. On a cache miss, the container thread is released
+ * while the counters are fetched, and the response is written as soon as all targets
+ * have responded. If it takes longer than the configured timeout, the request is
+ * answered with a "504 Gateway Timeout" error.
+ * <p>
+ * This servlet requires a Servlet 3.0 container, and must be configured with
+ * {@code <async-supported>true</async-supported>}.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class AsyncShariffServlet extends ShariffServlet {
+    private static final long serialVersionUID = -2981046416826178419L;
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncShariffServlet.class);
+
+    protected long asyncTimeoutMs = 15000L;
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+
+        String ato = config.getInitParameter("async.timeoutMs");
+        if (ato != null) {
+            asyncTimeoutMs = Long.parseLong(ato);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+    throws IOException {
+        try {
+            if (isBatch(req)) {
+                handleBatch(req, resp, getUrls(req));
+                return;
+            }
+
+            String url = getValidUrl(req, resp);
+            if (url == null) {
+                return;
+            }
+
+            respond(req, resp, getCountsCachedAsync(url), this::writeCounts);
+        } catch (Exception ex) {
+            LOG.error("Failed to handle Shariff request", ex);
+            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    @Override
+    protected void handleBatch(HttpServletRequest req, HttpServletResponse resp, Collection<String> urls)
+    throws IOException {
+        Collection<String> valid = getValidUrls(urls, req, resp);
+        if (valid != null) {
+            respond(req, resp, getCountsCachedAsync(valid), this::writeBatch);
+        }
+    }
+
+    /**
+     * Writes the response as soon as the result is available. If the result is already
+     * available, it is written immediately. Otherwise the container thread is released
+     * until the result is available.
+     *
+     * @param req
+     *            {@link HttpServletRequest}
+     * @param resp
+     *            {@link HttpServletResponse} to write to
+     * @param future
+     *            {@link CompletableFuture} of the result
+     * @param writer
+     *            {@link ResultWriter} that writes the result to the response
+     */
+    private <T> void respond(HttpServletRequest req, HttpServletResponse resp,
+            CompletableFuture<T> future, ResultWriter<T> writer) throws IOException {
+        // Cache hit: answer immediately
+        if (future.isDone()) {
+            writer.write(req, resp, future.join());
+            return;
+        }
+
+        // Cache miss: release the container thread until the counters are fetched
+        AsyncContext ctx = req.startAsync(req, resp);
+        ctx.setTimeout(asyncTimeoutMs);
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        ctx.addListener(new TimeoutListener(done));
+
+        future.whenComplete((result, ex) -> {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+
+            HttpServletResponse asyncResp = (HttpServletResponse) ctx.getResponse();
+            try {
+                if (ex != null) {
+                    LOG.error("Failed to handle Shariff request", ex);
+                    asyncResp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+                } else {
+                    writer.write((HttpServletRequest) ctx.getRequest(), asyncResp, result);
+                }
+            } catch (IOException ioex) {
+                LOG.debug("Could not send Shariff response", ioex);
+            } finally {
+                ctx.complete();
+            }
+        });
+    }
+
+    /**
+     * Writes a result to the {@link HttpServletResponse}.
+     */
+    @FunctionalInterface
+    private interface ResultWriter<T> {
+        void write(HttpServletRequest req, HttpServletResponse resp, T result) throws IOException;
+    }
+
+    /**
+     * An {@link AsyncListener} that sends an error if the request has timed out before
+     * the counters were fetched.
+     */
+    private static class TimeoutListener implements AsyncListener {
+        private final AtomicBoolean done;
+
+        public TimeoutListener(AtomicBoolean done) {
+            this.done = done;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            if (done.compareAndSet(false, true)) {
+                HttpServletResponse resp = (HttpServletResponse) event.getAsyncContext().getResponse();
+                resp.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT, "counters not available in time");
+                event.getAsyncContext().complete();
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            done.set(true);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            // nothing to do
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // nothing to do
+        }
+    }
+
+}
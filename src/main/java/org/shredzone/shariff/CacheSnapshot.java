@@ -0,0 +1,172 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A binary snapshot of the counter cache, so the cache can be restored after a restart.
+ * <p>
+ * The snapshot starts with a header containing the names of the targets, followed by
+ * the cache entries. Every entry consists of the url, the expiry time stamp of the
+ * entry, and the counters encoded by a {@link CachedCountsCodec}. As the target names
+ * are part of the snapshot, it can still be read after the targets were reconfigured.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+class CacheSnapshot {
+
+    private static final int MAGIC = 0x53484346; // "SHCF"
+    private static final int VERSION = 1;
+    private static final int MAX_KEY_LENGTH = 8192;
+
+    private final Path file;
+
+    /**
+     * Creates a new {@link CacheSnapshot}.
+     *
+     * @param file
+     *            Snapshot file
+     */
+    public CacheSnapshot(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Writes all entries of the cache to the snapshot file. The file is written to a
+     * temporary file first, and then replaces the previous snapshot.
+     *
+     * @param cache
+     *            {@link ConcurrentCache} to write
+     * @param names
+     *            Names of the known targets
+     * @return Number of entries that were written
+     */
+    public int write(ConcurrentCache<String, CachedCounts> cache, List<String> names) throws IOException {
+        CachedCountsCodec codec = new CachedCountsCodec(names);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        int[] count = new int[1];
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeShort(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+
+            try {
+                cache.forEach((key, entry) -> {
+                    if (key.length() > MAX_KEY_LENGTH) {
+                        return;
+                    }
+                    try {
+                        byte[] value = codec.encode(entry.getValue());
+                        out.writeBoolean(true);
+                        out.writeUTF(key);
+                        out.writeLong(entry.getExpiry());
+                        out.writeShort(value.length);
+                        out.write(value);
+                        count[0]++;
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+
+            out.writeBoolean(false);
+        }
+
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return count[0];
+    }
+
+    /**
+     * Reads the entries of the snapshot file into the cache. Entries with all counters
+     * expired before the given time stamp are skipped.
+     *
+     * @param cache
+     *            {@link ConcurrentCache} to restore the entries to
+     * @param minExpiry
+     *            Entries where all counters expired before this time stamp are skipped
+     * @return Number of entries that were restored
+     */
+    public int read(ConcurrentCache<String, CachedCounts> cache, long minExpiry) throws IOException {
+        int count = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not a cache snapshot: " + file);
+            }
+
+            int nameCount = in.readUnsignedShort();
+            List<String> names = new ArrayList<>(nameCount);
+            for (int ix = 0; ix < nameCount; ix++) {
+                names.add(in.readUTF());
+            }
+            CachedCountsCodec codec = new CachedCountsCodec(names);
+
+            byte[] buffer = new byte[1024];
+            while (in.readBoolean()) {
+                String key = in.readUTF();
+                long expiry = in.readLong();
+                int length = in.readUnsignedShort();
+                if (length > buffer.length) {
+                    buffer = new byte[length];
+                }
+                in.readFully(buffer, 0, length);
+
+                CachedCounts value = codec.decode(ByteBuffer.wrap(buffer, 0, length));
+                if (isUseful(value, minExpiry)) {
+                    cache.restore(key, value, expiry);
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks if at least one counter is expiring at or after the given time stamp.
+     */
+    private static boolean isUseful(CachedCounts value, long minExpiry) {
+        for (String name : value.getNames()) {
+            if (value.getExpiry(name) >= minExpiry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.function.BiConsumer;
+
+import org.shredzone.shariff.api.MetricsListener;
+
+/**
+ * The storage engine of a {@link ConcurrentCache}.
+ * <p>
+ * A store keeps the values and their expiry times, and evicts elements when it is full.
+ * It does not care about expiry times itself. Implementations must be thread safe.
+ *
+ * @param <K>
+ *            Key type
+ * @param <V>
+ *            Value type
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public interface CacheStore<K, V> {
+
+    /**
+     * Reads an element.
+     *
+     * @param key
+     *            Cache key
+     * @return {@link Entry} of the element, or {@code null} if there is no such element
+     */
+    Entry<V> read(K key);
+
+    /**
+     * Writes an element. If the key is already present, the element is replaced. If the
+     * store is full, other elements are evicted.
+     *
+     * @param key
+     *            Cache key
+     * @param value
+     *            Value to be stored
+     * @param expiry
+     *            Expiry time stamp of the value
+     */
+    void write(K key, V value, long expiry);
+
+    /**
+     * Removes an element. Nothing happens if there is no such element.
+     *
+     * @param key
+     *            Cache key
+     */
+    void remove(K key);
+
+    /**
+     * Removes an element, but only if it still has the given expiry time stamp, so
+     * elements that have just been replaced are kept.
+     *
+     * @param key
+     *            Cache key
+     * @param expiry
+     *            Expected expiry time stamp
+     */
+    void remove(K key, long expiry);
+
+    /**
+     * Returns the number of elements in the store.
+     */
+    int size();
+
+    /**
+     * Invokes the action for every element in the store. Elements that are written or
+     * removed while iterating may or may not be seen.
+     *
+     * @param action
+     *            Action that accepts the key and the {@link Entry} of each element
+     */
+    void forEach(BiConsumer<? super K, ? super Entry<V>> action);
+
+    /**
+     * Changes the maximum number of elements. If the store holds more elements than
+     * that, the least recently used elements are evicted. All other elements are kept.
+     * <p>
+     * The default implementation throws an {@link UnsupportedOperationException}.
+     *
+     * @param maxEntries
+     *            new maximum number of elements
+     * @throws UnsupportedOperationException
+     *             if the store cannot be resized
+     */
+    default void resize(int maxEntries) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be resized");
+    }
+
+    /**
+     * Sets a {@link MetricsListener} that is informed about evicted elements.
+     * <p>
+     * The default implementation does nothing, so evictions are not reported.
+     *
+     * @param metricsListener
+     *            {@link MetricsListener} to be used, or {@code null} for none
+     */
+    default void setMetricsListener(MetricsListener metricsListener) {
+        // default: evictions are not reported
+    }
+
+    /**
+     * A value and its expiry time stamp.
+     *
+     * @param <V>
+     *            Value type
+     */
+    final class Entry<V> {
+        private final V value;
+        private final long expiry;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param value
+         *            Value to be cached
+         * @param expiry
+         *            Expiry time stamp
+         */
+        public Entry(V value, long expiry) {
+            this.value = value;
+            this.expiry = expiry;
+        }
+
+        /**
+         * Returns the cached value.
+         */
+        public V getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the expiry time stamp.
+         */
+        public long getExpiry() {
+            return expiry;
+        }
+    }
+
+}
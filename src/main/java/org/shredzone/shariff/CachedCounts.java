@@ -0,0 +1,176 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.shredzone.shariff.CountVector.NameTable;
+
+/**
+ * The cached counters of an URL. Every target has its own expiry time, so the counters
+ * of the individual targets can be refreshed independently.
+ * <p>
+ * Targets that have failed have an expiry time, but no counter. The counters are kept
+ * in a {@link CountVector}, and the expiry times in an array of the same
+ * {@link NameTable}, so a cached URL only takes a few objects.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+class CachedCounts {
+
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private CountVector counts;
+    private long[] expiries;
+
+    /**
+     * Creates a new, empty {@link CachedCounts}.
+     */
+    CachedCounts() {
+        this(NameTable.EMPTY);
+    }
+
+    /**
+     * Creates a new, empty {@link CachedCounts} that uses the given {@link NameTable}.
+     * Names that are not part of the table can still be added, but then need a table
+     * of their own.
+     *
+     * @param names
+     *            {@link NameTable} to use
+     */
+    CachedCounts(NameTable names) {
+        this.counts = new CountVector(names);
+        this.expiries = new long[names.size()];
+        Arrays.fill(expiries, UNKNOWN);
+    }
+
+    /**
+     * Sets the counter of a target.
+     *
+     * @param name
+     *            Target name
+     * @param count
+     *            Counter, or {@code null} if the target has failed
+     * @param expiry
+     *            Time when the counter expires
+     */
+    void put(String name, Integer count, long expiry) {
+        int ordinal = counts.getNameTable().indexOf(name);
+        if (ordinal < 0) {
+            NameTable extended = counts.getNameTable().with(name);
+            ordinal = extended.indexOf(name);
+            counts = counts.extend(extended);
+            expiries = Arrays.copyOf(expiries, extended.size());
+            expiries[ordinal] = UNKNOWN;
+        }
+        counts.set(ordinal, count);
+        expiries[ordinal] = expiry;
+        counts.setExpiry(getExpiry());
+    }
+
+    /**
+     * Returns the {@link NameTable} of the counters.
+     */
+    NameTable getNameTable() {
+        return counts.getNameTable();
+    }
+
+    /**
+     * Returns the {@link CountVector} of all counters.
+     */
+    public CountVector getCountVector() {
+        return counts;
+    }
+
+    /**
+     * Returns a map containing the target name as key, and the counter as value. The
+     * map can be modified without changing these counters.
+     */
+    public Map<String, Integer> getCounts() {
+        return counts.asMap();
+    }
+
+    /**
+     * Returns the counter of the given target, or {@code null} if it is not available.
+     */
+    public Integer getCount(String name) {
+        return counts.get(name);
+    }
+
+    /**
+     * Returns the names of all targets with an expiry time.
+     */
+    public Set<String> getNames() {
+        NameTable names = counts.getNameTable();
+        Set<String> result = new HashSet<>();
+        for (int ix = 0; ix < expiries.length; ix++) {
+            if (expiries[ix] != UNKNOWN) {
+                result.add(names.getName(ix));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the expiry time of the given target, or {@code 0} if the target is unknown.
+     */
+    public long getExpiry(String name) {
+        int ordinal = counts.getNameTable().indexOf(name);
+        return ordinal >= 0 && expiries[ordinal] != UNKNOWN ? expiries[ordinal] : 0L;
+    }
+
+    /**
+     * Returns the time when the first counter expires, so the entry needs to be
+     * refreshed, or {@code 0} if there are no counters.
+     */
+    public long getExpiry() {
+        long result = UNKNOWN;
+        for (long expiry : expiries) {
+            if (expiry != UNKNOWN && (result == UNKNOWN || expiry < result)) {
+                result = expiry;
+            }
+        }
+        return result != UNKNOWN ? result : 0L;
+    }
+
+    /**
+     * Returns the names of all targets that are expired or unknown.
+     *
+     * @param names
+     *            Names of all targets to be checked
+     * @param now
+     *            Current time
+     * @return Names of the targets that need to be fetched
+     */
+    public Set<String> getExpired(Collection<String> names, long now) {
+        Set<String> result = new HashSet<>();
+        for (String name : names) {
+            if (getExpiry(name) <= now) {
+                result.add(name);
+            }
+        }
+        NameTable table = counts.getNameTable();
+        for (int ix = 0; ix < expiries.length; ix++) {
+            if (expiries[ix] != UNKNOWN && expiries[ix] <= now) {
+                result.add(table.getName(ix));
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.shredzone.shariff.CountVector.NameTable;
+
+/**
+ * A {@link OffHeapCacheStore.Codec} for {@link CachedCounts}.
+ * <p>
+ * Target names are encoded as an index into a list of known target names, so usually a
+ * target only takes 14 bytes. Unknown target names are encoded inline.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+class CachedCountsCodec implements OffHeapCacheStore.Codec<CachedCounts> {
+
+    private static final int INLINE = 0xFF;
+    private static final int HAS_COUNT = 0x01;
+
+    private final NameTable names;
+
+    /**
+     * Creates a new {@link CachedCountsCodec}.
+     *
+     * @param names
+     *            Names of the known targets. Only the first 255 names are used.
+     */
+    public CachedCountsCodec(List<String> names) {
+        this.names = new NameTable(names.subList(0, Math.min(names.size(), INLINE)));
+    }
+
+    @Override
+    public byte[] encode(CachedCounts value) {
+        int size = 1;
+        for (String name : value.getNames()) {
+            size += names.indexOf(name) >= 0 ? 1 : 2 + name.getBytes(UTF_8).length;
+            size += value.getCount(name) != null ? 13 : 9;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put((byte) value.getNames().size());
+        for (String name : value.getNames()) {
+            int index = names.indexOf(name);
+            if (index >= 0) {
+                buffer.put((byte) index);
+            } else {
+                byte[] nameBytes = name.getBytes(UTF_8);
+                buffer.put((byte) INLINE);
+                buffer.put((byte) nameBytes.length);
+                buffer.put(nameBytes);
+            }
+
+            Integer count = value.getCount(name);
+            buffer.put((byte) (count != null ? HAS_COUNT : 0));
+            if (count != null) {
+                buffer.putInt(count);
+            }
+            buffer.putLong(value.getExpiry(name));
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public CachedCounts decode(ByteBuffer buffer) {
+        CachedCounts result = new CachedCounts(names);
+        int count = buffer.get() & 0xFF;
+        for (int ix = 0; ix < count; ix++) {
+            String name;
+            int index = buffer.get() & 0xFF;
+            if (index == INLINE) {
+                byte[] nameBytes = new byte[buffer.get() & 0xFF];
+                buffer.get(nameBytes);
+                name = new String(nameBytes, UTF_8);
+            } else {
+                name = names.getName(index);
+            }
+
+            int flags = buffer.get();
+            Integer value = (flags & HAS_COUNT) != 0 ? buffer.getInt() : null;
+            result.put(name, value, buffer.getLong());
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A circuit breaker that protects a single target.
+ * <p>
+ * The breaker is closed while the target works. After a number of consecutive failures,
+ * it opens, and the target is not requested for a while. A
+ * {@link RateLimitExceededException} opens the breaker immediately, and for a longer
+ * time. After that time, the breaker is half-open and lets a single probe request pass.
+ * If it succeeds, the breaker is closed again, otherwise it is opened again.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class CircuitBreaker {
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * State of the circuit breaker.
+     */
+    public enum State {
+        /**
+         * Requests are passed to the target.
+         */
+        CLOSED,
+
+        /**
+         * Requests are not passed to the target.
+         */
+        OPEN,
+
+        /**
+         * A single probe request is passed to the target.
+         */
+        HALF_OPEN
+    }
+
+    private final String name;
+    private int failureThreshold = 5;
+    private long openMs = 30000L;
+    private long rateLimitOpenMs = 900000L;
+
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long openUntil = 0L;
+    private boolean probing = false;
+
+    /**
+     * Creates a new, closed {@link CircuitBreaker}.
+     *
+     * @param name
+     *            Name of the target that is protected by this breaker
+     */
+    public CircuitBreaker(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Sets the number of consecutive failures that open the breaker. Default is 5.
+     */
+    public synchronized void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Sets how long the breaker stays open after consecutive failures. Default is 30
+     * seconds.
+     */
+    public synchronized void setOpenDuration(long duration, TimeUnit unit) {
+        this.openMs = unit.toMillis(duration);
+    }
+
+    /**
+     * Sets how long the breaker stays open after the target reported that a rate limit
+     * has been exceeded. Default is 15 minutes.
+     */
+    public synchronized void setRateLimitOpenDuration(long duration, TimeUnit unit) {
+        this.rateLimitOpenMs = unit.toMillis(duration);
+    }
+
+    /**
+     * Returns the name of the target that is protected by this breaker.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the current {@link State} of the breaker.
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Returns the number of consecutive failures.
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the time stamp when an open breaker will let a probe request pass.
+     */
+    public synchronized long getOpenUntil() {
+        return openUntil;
+    }
+
+    /**
+     * Checks if a request may be passed to the target. If {@code true} is returned, the
+     * outcome must be reported to {@link #onSuccess()}, {@link #onFailure(Throwable)} or
+     * {@link #onCancel()}.
+     *
+     * @return {@code true} if the request may be passed, {@code false} if the target
+     *         must not be requested
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            state = State.HALF_OPEN;
+        }
+
+        switch (state) {
+            case CLOSED:
+                return true;
+
+            case HALF_OPEN:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reports that a request has succeeded. The breaker is closed.
+     */
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            LOG.info("{}: circuit breaker closed", name);
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    /**
+     * Reports that a request has failed.
+     *
+     * @param ex
+     *            Cause of the failure
+     */
+    public synchronized void onFailure(Throwable ex) {
+        failures++;
+        probing = false;
+
+        if (ex instanceof RateLimitExceededException) {
+            open(rateLimitOpenMs, ex);
+        } else if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            open(openMs, ex);
+        }
+    }
+
+    /**
+     * Reports that a request was cancelled before its outcome was known.
+     */
+    public synchronized void onCancel() {
+        probing = false;
+    }
+
+    /**
+     * Opens the breaker.
+     *
+     * @param durationMs
+     *            Time to keep the breaker open, in ms
+     * @param ex
+     *            Failure that caused the breaker to open
+     */
+    private void open(long durationMs, Throwable ex) {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + durationMs;
+        LOG.warn("{}: circuit breaker opened for {} s after {} failure(s), last: {}",
+                name, durationMs / 1000L, failures, ex.toString());
+    }
+
+}
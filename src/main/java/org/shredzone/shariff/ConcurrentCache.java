@@ -0,0 +1,497 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import org.shredzone.shariff.CacheStore.Entry;
+import org.shredzone.shariff.api.MetricsListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A thread safe variant of {@link SimpleCache}.
+ * <p>
+ * The elements are kept in a {@link CacheStore}. By default, it is a
+ * {@link HeapCacheStore} that is split into segments, so reads of different keys rarely
+ * contend. For very large caches, an {@link OffHeapCacheStore} can be used instead.
+ * <p>
+ * On a cache miss, {@link #fetch(Object, BiFunction)} invokes the provider without
+ * holding any lock. Only callers that fetch the same key wait for each other, and the
+ * provider is invoked just once for them. {@link #fetchAsync(Object, BiFunction)} does
+ * the same without blocking the caller.
+ * <p>
+ * Optionally, expired elements can be served for a limited time while they are
+ * refreshed in background. See
+ * {@link #setStaleWhileRevalidate(long, TimeUnit, Executor)}. Frequently read elements
+ * can also be refreshed before they expire, see {@link RefreshAheadScheduler}.
+ * <p>
+ * Hits, misses, expiries and evictions can be reported to a {@link MetricsListener},
+ * see {@link #setMetricsListener(MetricsListener)}.
+ *
+ * @param <K>
+ *            Key type
+ * @param <V>
+ *            Value type
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class ConcurrentCache<K, V> {
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrentCache.class);
+
+    private final CacheStore<K, V> store;
+    private final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, Boolean> refreshing = new ConcurrentHashMap<>();
+    private final long timeToLiveMs;
+    private volatile long maxStaleMs = 0L;
+    private volatile Executor refreshExecutor = null;
+    private volatile RefreshAheadScheduler<K, V> refreshAhead = null;
+    private volatile MetricsListener metricsListener = null;
+
+    /**
+     * Creates a new {@link ConcurrentCache}, using one segment per available processor.
+     *
+     * @param maxEntries
+     *            maximum number of elements to keep
+     * @param timeToLive
+     *            maximum time to live for each element
+     * @param unit
+     *            {@link TimeUnit} of timeToLive
+     */
+    public ConcurrentCache(int maxEntries, long timeToLive, TimeUnit unit) {
+        this(maxEntries, timeToLive, unit, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new {@link ConcurrentCache}.
+     *
+     * @param maxEntries
+     *            maximum number of elements to keep
+     * @param timeToLive
+     *            maximum time to live for each element
+     * @param unit
+     *            {@link TimeUnit} of timeToLive
+     * @param concurrencyLevel
+     *            estimated number of concurrently reading threads. It is rounded up to
+     *            the next power of two, and gives the number of segments. There are
+     *            never more segments than {@code maxEntries}.
+     */
+    public ConcurrentCache(int maxEntries, long timeToLive, TimeUnit unit, int concurrencyLevel) {
+        this(new HeapCacheStore<>(maxEntries, concurrencyLevel), timeToLive, unit);
+    }
+
+    /**
+     * Creates a new {@link ConcurrentCache} that uses the given {@link CacheStore}.
+     *
+     * @param store
+     *            {@link CacheStore} that keeps the elements
+     * @param timeToLive
+     *            maximum time to live for each element
+     * @param unit
+     *            {@link TimeUnit} of timeToLive
+     */
+    public ConcurrentCache(CacheStore<K, V> store, long timeToLive, TimeUnit unit) {
+        this.store = store;
+        this.timeToLiveMs = unit.toMillis(timeToLive);
+    }
+
+    /**
+     * Enables the stale-while-revalidate mode.
+     * <p>
+     * In this mode, {@link #fetch(Object, BiFunction)} immediately returns an expired
+     * element if it has not been expired for longer than the given maximum stale time.
+     * The element is then refreshed in background, using the given {@link Executor}.
+     * Elements that have been expired for longer are fetched synchronously again.
+     *
+     * @param maxStale
+     *            maximum time an expired element is served, {@code 0} disables this mode
+     * @param unit
+     *            {@link TimeUnit} of maxStale
+     * @param executor
+     *            {@link Executor} that performs the background refreshes
+     * @since 1.25
+     */
+    public void setStaleWhileRevalidate(long maxStale, TimeUnit unit, Executor executor) {
+        this.refreshExecutor = executor;
+        this.maxStaleMs = unit.toMillis(maxStale);
+    }
+
+    /**
+     * Sets a {@link MetricsListener} that is informed about cache hits, misses and
+     * expiries. It is also passed to the {@link CacheStore}, which reports evictions.
+     * <p>
+     * Only reads by {@link #fetch(Object, BiFunction)},
+     * {@link #fetchAsync(Object, BiFunction)} and {@link #get(Object)} are reported.
+     *
+     * @param metricsListener
+     *            {@link MetricsListener} to be used, or {@code null} for none
+     * @since 1.25
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        store.setMetricsListener(metricsListener);
+    }
+
+    /**
+     * Changes the maximum number of elements at runtime. If the cache is shrunk, the
+     * least recently used elements are evicted. All other elements are kept.
+     *
+     * @param maxEntries
+     *            new maximum number of elements to keep
+     * @throws UnsupportedOperationException
+     *             if the {@link CacheStore} cannot be resized
+     * @since 1.25
+     */
+    public void resize(int maxEntries) {
+        store.resize(maxEntries);
+    }
+
+    /**
+     * Fetches an element from the cache.
+     * <p>
+     * On a cache miss, the {@code provider} function is invoked. It is supposed to fetch
+     * the value, which is cached and returned. Concurrent callers that fetch the same
+     * key wait for the result instead of invoking the provider again. Callers of other
+     * keys are not blocked.
+     * <p>
+     * If there is an expired value still present in the cache, it is passed to the
+     * {@code provider}. In stale-while-revalidate mode, the expired value is returned
+     * instead, and the {@code provider} is invoked in background.
+     *
+     * @param key
+     *            Cache key
+     * @param provider
+     *            A {@link BiFunction} that is used to fetch the value on cache miss. One
+     *            parameter is the cache key. The other parameter is the previous (and
+     *            expired) value present in this cache, or {@code null} if there was no
+     *            previous value.
+     * @return Value, or {@code null} if there was no such element
+     */
+    public V fetch(K key, BiFunction<K, V, V> provider) {
+        try {
+            return fetchAsync(key, (k, previous) ->
+                    CompletableFuture.completedFuture(provider.apply(k, previous))).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Fetches an element from the cache, without blocking the caller.
+     * <p>
+     * This method works like {@link #fetch(Object, BiFunction)}, but the
+     * {@code provider} returns a {@link CompletionStage} of the value. On a cache hit,
+     * the returned {@link CompletableFuture} is already completed.
+     *
+     * @param key
+     *            Cache key
+     * @param provider
+     *            A {@link BiFunction} that is used to fetch the value on cache miss. One
+     *            parameter is the cache key. The other parameter is the previous (and
+     *            expired) value present in this cache, or {@code null} if there was no
+     *            previous value.
+     * @return {@link CompletableFuture} of the value, which is {@code null} if there was
+     *         no such element
+     */
+    public CompletableFuture<V> fetchAsync(K key, BiFunction<K, V, ? extends CompletionStage<V>> provider) {
+        // Cache hit: return cached value
+        Entry<V> entry = store.read(key);
+        boolean hit = entry != null && !isExpired(entry.getExpiry());
+
+        RefreshAheadScheduler<K, V> scheduler = refreshAhead;
+        if (scheduler != null) {
+            scheduler.onRead(key, hit);
+        }
+
+        MetricsListener listener = metricsListener;
+        if (hit) {
+            if (listener != null) {
+                listener.onCacheHit();
+            }
+            return CompletableFuture.completedFuture(entry.getValue());
+        }
+
+        // Stale hit: return expired value, and refresh it in background
+        if (entry != null && isStale(entry)) {
+            if (listener != null) {
+                listener.onCacheHit();
+            }
+            refresh(key, provider);
+            return CompletableFuture.completedFuture(entry.getValue());
+        }
+
+        // Cache miss: fetch new value
+        onMiss(listener, entry);
+        return load(key, provider, false);
+    }
+
+    /**
+     * Fetches a new value from the provider and caches it, even if the current value has
+     * not expired yet. If the key is already being loaded, that load is used instead.
+     *
+     * @param key
+     *            Cache key
+     * @param provider
+     *            Provider to fetch the value from
+     * @return {@link CompletableFuture} of the value
+     */
+    CompletableFuture<V> reload(K key, BiFunction<K, V, ? extends CompletionStage<V>> provider) {
+        return load(key, provider, true);
+    }
+
+    /**
+     * Reads the {@link Entry} of the given key, even if it has expired.
+     *
+     * @param key
+     *            Cache key
+     * @return {@link Entry}, or {@code null} if there is no such element
+     */
+    Entry<V> getEntry(K key) {
+        return store.read(key);
+    }
+
+    /**
+     * Sets the {@link RefreshAheadScheduler} that is informed about every read.
+     */
+    void setRefreshAhead(RefreshAheadScheduler<K, V> refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    /**
+     * Fetches a new value from the provider and caches it. Only one caller per key is
+     * loading at a time, all other callers get the same {@link CompletableFuture}.
+     *
+     * @param key
+     *            Cache key
+     * @param provider
+     *            Provider to fetch the value from
+     * @param force
+     *            {@code true} to fetch the value even if the cached value is not expired
+     * @return {@link CompletableFuture} of the value
+     */
+    private CompletableFuture<V> load(K key, BiFunction<K, V, ? extends CompletionStage<V>> provider, boolean force) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+
+        CompletableFuture<V> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            return running;
+        }
+
+        try {
+            // Another caller may have just finished loading the value
+            Entry<V> entry = store.read(key);
+            if (!force && entry != null && !isExpired(entry.getExpiry())) {
+                loading.remove(key, future);
+                future.complete(entry.getValue());
+                return future;
+            }
+
+            provider.apply(key, entry != null ? entry.getValue() : null).whenComplete((value, ex) -> {
+                if (ex == null) {
+                    if (value != null) {
+                        put(key, value);
+                    } else {
+                        store.remove(key);
+                    }
+                }
+
+                loading.remove(key, future);
+
+                if (ex != null) {
+                    future.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null
+                            ? ex.getCause() : ex);
+                } else {
+                    future.complete(value);
+                }
+            });
+        } catch (RuntimeException ex) {
+            loading.remove(key, future);
+            future.completeExceptionally(ex);
+        }
+
+        return future;
+    }
+
+    /**
+     * Refreshes the value of the given key in background. Nothing happens if there is
+     * already a refresh of this key in progress.
+     *
+     * @param key
+     *            Cache key
+     * @param provider
+     *            Provider to fetch the value from
+     */
+    private void refresh(K key, BiFunction<K, V, ? extends CompletionStage<V>> provider) {
+        if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> load(key, provider, false).whenComplete((value, ex) -> {
+                refreshing.remove(key);
+                if (ex != null) {
+                    LOG.warn("Failed to refresh cache entry {}", key, ex);
+                }
+            }));
+        } catch (RejectedExecutionException ex) {
+            LOG.debug("Refresh of cache entry {} was rejected", key, ex);
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * Gets an element from the cache.
+     * <p>
+     * An expired element is kept in the cache, so it is still passed to the provider of
+     * the next fetch.
+     *
+     * @param key
+     *            Cache key
+     * @return Value, or {@code null} if there was no such element or the element was
+     *         expired
+     */
+    public V get(K key) {
+        Entry<V> entry = store.read(key);
+
+        MetricsListener listener = metricsListener;
+        if (entry != null && !isExpired(entry.getExpiry())) {
+            if (listener != null) {
+                listener.onCacheHit();
+            }
+            return entry.getValue();
+        }
+
+        onMiss(listener, entry);
+        return null;
+    }
+
+    /**
+     * Puts an element into the cache. If the key was already present in the cache, it is
+     * replaced.
+     *
+     * @param key
+     *            Cache key
+     * @param value
+     *            Cache value
+     */
+    public void put(K key, V value) {
+        store.write(key, value, System.currentTimeMillis() + getTimeToLive(value));
+    }
+
+    /**
+     * Puts an element with the given expiry time stamp into the cache, e.g. when it is
+     * restored from a snapshot. If the key was already present in the cache, it is
+     * replaced.
+     *
+     * @param key
+     *            Cache key
+     * @param value
+     *            Cache value
+     * @param expiry
+     *            Expiry time stamp
+     * @since 1.25
+     */
+    public void restore(K key, V value, long expiry) {
+        store.write(key, value, expiry);
+    }
+
+    /**
+     * Invokes the action for every element in the cache, including elements that have
+     * expired but have not been purged yet.
+     *
+     * @param action
+     *            Action that accepts the key and the {@link Entry} of each element
+     * @since 1.25
+     */
+    public void forEach(BiConsumer<? super K, ? super Entry<V>> action) {
+        store.forEach(action);
+    }
+
+    /**
+     * Returns the time to live of the given value.
+     * <p>
+     * The default implementation returns the time to live that was passed to the
+     * constructor. Override to keep individual values for a different time.
+     *
+     * @param value
+     *            Value to be cached
+     * @return Time to live, in ms
+     * @since 1.25
+     */
+    protected long getTimeToLive(V value) {
+        return timeToLiveMs;
+    }
+
+    /**
+     * Returns the current cache size. The size includes entries that have timed out, but
+     * have not been purged yet.
+     *
+     * @return Cache size
+     */
+    protected int size() {
+        return store.size();
+    }
+
+    /**
+     * Checks if the expiry date has been reached.
+     *
+     * @param expiry
+     *            Expiry time to check
+     * @return {@code true} if the expiry date has been reached
+     */
+    protected boolean isExpired(long expiry) {
+        return expiry < System.currentTimeMillis();
+    }
+
+    /**
+     * Reports a cache miss to the {@link MetricsListener}.
+     *
+     * @param listener
+     *            {@link MetricsListener}, or {@code null} if there is none
+     * @param entry
+     *            Expired {@link Entry} that was found, or {@code null} if there was none
+     */
+    private static void onMiss(MetricsListener listener, Entry<?> entry) {
+        if (listener != null) {
+            if (entry != null) {
+                listener.onCacheExpiry();
+            } else {
+                listener.onCacheMiss();
+            }
+        }
+    }
+
+    /**
+     * Checks if an expired entry may still be served in stale-while-revalidate mode.
+     */
+    private boolean isStale(Entry<V> entry) {
+        return refreshExecutor != null && maxStaleMs > 0L
+                && !isExpired(entry.getExpiry() + maxStaleMs);
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of a counter request. It contains the counters of all targets that have
+ * responded, and the names of all targets that did not respond in time.
+ * <p>
+ * Targets that failed with an error are neither part of the counters nor of the timed
+ * out targets.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class CountResult {
+
+    private final CountVector counts;
+    private final Set<String> timedOut;
+
+    /**
+     * Creates a new {@link CountResult}.
+     *
+     * @param counts
+     *            Map containing the target name as key, and the counter as value
+     * @param timedOut
+     *            Names of the targets that did not respond in time
+     */
+    public CountResult(Map<String, Integer> counts, Set<String> timedOut) {
+        this(CountVector.of(counts), timedOut);
+    }
+
+    /**
+     * Creates a new {@link CountResult}.
+     *
+     * @param counts
+     *            {@link CountVector} of the counters
+     * @param timedOut
+     *            Names of the targets that did not respond in time
+     */
+    public CountResult(CountVector counts, Set<String> timedOut) {
+        this.counts = counts;
+        this.timedOut = Collections.unmodifiableSet(timedOut);
+    }
+
+    /**
+     * Returns a map containing the target name as key, and the counter as value. The
+     * map can be modified without changing these counters.
+     */
+    public Map<String, Integer> getCounts() {
+        return counts.asMap();
+    }
+
+    /**
+     * Returns the {@link CountVector} of the counters.
+     */
+    public CountVector getCountVector() {
+        return counts;
+    }
+
+    /**
+     * Returns the names of all targets that did not respond in time.
+     */
+    public Set<String> getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Returns {@code true} if no target was cut off by the deadline.
+     */
+    public boolean isComplete() {
+        return timedOut.isEmpty();
+    }
+
+}
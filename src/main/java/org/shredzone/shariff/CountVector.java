@@ -0,0 +1,504 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONObject;
+
+/**
+ * The counters of an URL, stored in an {@code int} array that is indexed by the ordinal
+ * of the target in a shared {@link NameTable}.
+ * <p>
+ * Compared to a {@code Map<String, Integer>}, there are no boxed values and no
+ * per-entry objects. {@link #asMap()} gives a {@link Map} view for compatibility.
+ * <p>
+ * The JSON representation and its ETag are generated only once and then kept with the
+ * vector, so cached counters can be sent without generating the response again.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public final class CountVector {
+
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    private final NameTable names;
+    private final int[] counts;
+    private volatile byte[] json;
+    private volatile byte[] jsonGzip;
+    private volatile String etag;
+    private volatile long expiry;
+
+    /**
+     * Creates a new {@link CountVector} without any counters.
+     *
+     * @param names
+     *            {@link NameTable} of the targets
+     */
+    public CountVector(NameTable names) {
+        this.names = names;
+        this.counts = new int[names.size()];
+        Arrays.fill(counts, MISSING);
+    }
+
+    /**
+     * Creates a {@link CountVector} with the counters of the given map.
+     *
+     * @param counts
+     *            Map containing the target name as key, and the counter as value
+     * @return {@link CountVector} of the counters
+     */
+    public static CountVector of(Map<String, Integer> counts) {
+        if (counts instanceof MapView && ((MapView) counts).copy == null) {
+            return ((MapView) counts).vector;
+        }
+
+        CountVector result = new CountVector(new NameTable(counts.keySet()));
+        counts.forEach(result::set);
+        return result;
+    }
+
+    /**
+     * Returns the {@link NameTable} of this vector.
+     */
+    public NameTable getNameTable() {
+        return names;
+    }
+
+    /**
+     * Returns {@code true} if there is a counter of the target with the given ordinal.
+     */
+    public boolean isPresent(int ordinal) {
+        return counts[ordinal] != MISSING;
+    }
+
+    /**
+     * Returns the counter of the target with the given ordinal. Use
+     * {@link #isPresent(int)} to check if there is a counter at all.
+     */
+    public int getInt(int ordinal) {
+        return counts[ordinal];
+    }
+
+    /**
+     * Returns the counter of the given target, or {@code null} if there is no counter.
+     */
+    public Integer get(String name) {
+        int ordinal = names.indexOf(name);
+        return ordinal >= 0 && isPresent(ordinal) ? counts[ordinal] : null;
+    }
+
+    /**
+     * Returns the number of targets with a counter.
+     */
+    public int size() {
+        int result = 0;
+        for (int count : counts) {
+            if (count != MISSING) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a {@link Map} view of this vector, containing the target name as key, and
+     * the counter as value. Targets without counter are not contained.
+     * <p>
+     * The map can be modified. The first modification copies the counters into a map
+     * of its own, so the vector itself is never changed.
+     */
+    public Map<String, Integer> asMap() {
+        return new MapView(this);
+    }
+
+    /**
+     * Returns the counters as UTF-8 encoded JSON object, containing the target name as
+     * key, and the counter as value. The result is generated on the first invocation.
+     * <p>
+     * The returned array must not be modified.
+     */
+    byte[] getJson() {
+        byte[] result = json;
+        if (result == null) {
+            StringBuilder sb = new StringBuilder(16 * counts.length + 2);
+            sb.append('{');
+            for (int ix = 0; ix < counts.length; ix++) {
+                if (isPresent(ix)) {
+                    if (sb.length() > 1) {
+                        sb.append(',');
+                    }
+                    sb.append(JSONObject.quote(names.getName(ix))).append(':').append(counts[ix]);
+                }
+            }
+            sb.append('}');
+            result = sb.toString().getBytes(UTF_8);
+            json = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the gzip compressed result of {@link #getJson()}. The result is generated
+     * on the first invocation. Note that small objects may get larger by compression.
+     * <p>
+     * The returned array must not be modified.
+     */
+    byte[] getJsonGzip() {
+        byte[] result = jsonGzip;
+        if (result == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(getJson());
+            } catch (IOException ex) {
+                // ByteArrayOutputStream does not throw
+                throw new UncheckedIOException(ex);
+            }
+            result = out.toByteArray();
+            jsonGzip = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a strong ETag of the JSON representation, including the quotes. The result
+     * is generated on the first invocation.
+     */
+    String getETag() {
+        String result = etag;
+        if (result == null) {
+            result = getETag(getJson());
+            etag = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a strong ETag of the given JSON representation, including the quotes.
+     *
+     * @param json
+     *            JSON representation
+     * @return ETag
+     */
+    static String getETag(byte[] json) {
+        // 64 bit FNV-1a hash
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : json) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return '"' + Long.toHexString(hash) + '"';
+    }
+
+    /**
+     * Returns the time when the first counter expires, or 0 if unknown.
+     */
+    long getExpiry() {
+        return expiry;
+    }
+
+    /**
+     * Sets the time when the first counter expires.
+     */
+    void setExpiry(long expiry) {
+        this.expiry = expiry;
+    }
+
+    /**
+     * Sets the counter of a target.
+     *
+     * @param ordinal
+     *            Ordinal of the target
+     * @param count
+     *            Counter, or {@code null} if there is no counter
+     */
+    void set(int ordinal, Integer count) {
+        if (count != null && count == MISSING) {
+            throw new IllegalArgumentException("Invalid counter " + count);
+        }
+        counts[ordinal] = count != null ? count : MISSING;
+        json = null;
+        jsonGzip = null;
+        etag = null;
+    }
+
+    /**
+     * Sets the counter of a target.
+     *
+     * @param name
+     *            Target name, must be part of the {@link NameTable}
+     * @param count
+     *            Counter, or {@code null} if there is no counter
+     */
+    void set(String name, Integer count) {
+        int ordinal = names.indexOf(name);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Unknown target " + name);
+        }
+        set(ordinal, count);
+    }
+
+    /**
+     * Returns a copy of this vector that uses the given {@link NameTable}. The table must
+     * start with all the names of this vector's table.
+     */
+    CountVector extend(NameTable extended) {
+        CountVector result = new CountVector(extended);
+        System.arraycopy(counts, 0, result.counts, 0, counts.length);
+        result.expiry = expiry;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CountVector && asMap().equals(((CountVector) obj).asMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    /**
+     * An immutable table of target names. Every name has an ordinal, which is its
+     * position in the table. A table is meant to be shared by all {@link CountVector}
+     * of the same set of targets.
+     */
+    public static final class NameTable {
+        /**
+         * A table without any names.
+         */
+        public static final NameTable EMPTY = new NameTable(Collections.emptyList());
+
+        private final String[] names;
+        private final Map<String, Integer> ordinals;
+
+        /**
+         * Creates a new {@link NameTable}.
+         *
+         * @param names
+         *            Target names, in the order of their ordinals. Duplicates are
+         *            ignored.
+         */
+        public NameTable(Collection<String> names) {
+            this.names = new LinkedHashSet<>(names).toArray(new String[0]);
+            this.ordinals = new HashMap<>(this.names.length * 2);
+            for (int ix = 0; ix < this.names.length; ix++) {
+                ordinals.put(this.names[ix], ix);
+            }
+        }
+
+        /**
+         * Returns the number of names in this table.
+         */
+        public int size() {
+            return names.length;
+        }
+
+        /**
+         * Returns the name with the given ordinal.
+         */
+        public String getName(int ordinal) {
+            return names[ordinal];
+        }
+
+        /**
+         * Returns the ordinal of the given name, or -1 if the name is not in this table.
+         */
+        public int indexOf(String name) {
+            Integer ordinal = ordinals.get(name);
+            return ordinal != null ? ordinal : -1;
+        }
+
+        /**
+         * Returns all names, in the order of their ordinals.
+         */
+        public List<String> getNames() {
+            return Collections.unmodifiableList(Arrays.asList(names));
+        }
+
+        /**
+         * Returns a table that contains all names of this table, followed by the given
+         * name. If the name is already part of this table, this table is returned.
+         */
+        public NameTable with(String name) {
+            if (ordinals.containsKey(name)) {
+                return this;
+            }
+            String[] extended = Arrays.copyOf(names, names.length + 1);
+            extended[names.length] = name;
+            return new NameTable(Arrays.asList(extended));
+        }
+    }
+
+    /**
+     * A copy-on-write {@link Map} view of a {@link CountVector}. While it is unmodified,
+     * it reads the vector. The first modification copies the counters.
+     */
+    private static final class MapView extends AbstractMap<String, Integer> {
+        private final CountVector vector;
+        private Map<String, Integer> copy;
+
+        private MapView(CountVector vector) {
+            this.vector = vector;
+        }
+
+        /**
+         * Returns the copy of the counters, creating it on the first invocation.
+         */
+        private Map<String, Integer> modifiable() {
+            if (copy == null) {
+                Map<String, Integer> result = new LinkedHashMap<>();
+                for (int ix = 0; ix < vector.counts.length; ix++) {
+                    if (vector.isPresent(ix)) {
+                        result.put(vector.names.getName(ix), vector.counts[ix]);
+                    }
+                }
+                copy = result;
+            }
+            return copy;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (copy != null) {
+                return copy.get(key);
+            }
+            return key instanceof String ? vector.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return copy != null ? copy.containsKey(key) : get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return copy != null ? copy.size() : vector.size();
+        }
+
+        @Override
+        public Integer put(String key, Integer value) {
+            return modifiable().put(key, value);
+        }
+
+        @Override
+        public Integer remove(Object key) {
+            return modifiable().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            modifiable().clear();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Integer>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Integer>>() {
+                @Override
+                public Iterator<Map.Entry<String, Integer>> iterator() {
+                    return copy != null ? copy.entrySet().iterator() : new EntryIterator(MapView.this);
+                }
+
+                @Override
+                public int size() {
+                    return MapView.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Iterates over the targets of an unmodified {@link MapView} that have a counter.
+     * Changes are written to the copy of the view.
+     */
+    private static final class EntryIterator implements Iterator<Map.Entry<String, Integer>> {
+        private final MapView view;
+        private final CountVector vector;
+        private int next;
+        private String last;
+
+        private EntryIterator(MapView view) {
+            this.view = view;
+            this.vector = view.vector;
+            this.next = seek(0);
+        }
+
+        private int seek(int from) {
+            int ix = from;
+            while (ix < vector.counts.length && !vector.isPresent(ix)) {
+                ix++;
+            }
+            return ix;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < vector.counts.length;
+        }
+
+        @Override
+        public Map.Entry<String, Integer> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int ordinal = next;
+            next = seek(ordinal + 1);
+            String key = vector.names.getName(ordinal);
+            last = key;
+            return new AbstractMap.SimpleEntry<String, Integer>(key, vector.counts[ordinal]) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public Integer setValue(Integer value) {
+                    super.setValue(value);
+                    return view.put(key, value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            view.remove(last);
+            last = null;
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.shredzone.shariff.api.MetricsListener;
+
+/**
+ * A {@link CacheStore} that keeps the elements on the heap, and is bounded by a number of
+ * elements.
+ * <p>
+ * The store is split into segments, each of them guarded by its own lock, so reads of
+ * different keys rarely contend. Every segment evicts its least recently read element
+ * when it is full, so the overall eviction order is only an approximation of LRU.
+ *
+ * @param <K>
+ *            Key type
+ * @param <V>
+ *            Value type
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class HeapCacheStore<K, V> implements CacheStore<K, V> {
+    private final Segment<K, V>[] segments;
+
+    /**
+     * Creates a new {@link HeapCacheStore}.
+     *
+     * @param maxEntries
+     *            maximum number of elements to keep
+     * @param concurrencyLevel
+     *            estimated number of concurrently reading threads. It is rounded up to
+     *            the next power of two, and gives the number of segments. There are
+     *            never more segments than {@code maxEntries}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HeapCacheStore(int maxEntries, int concurrencyLevel) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+
+        int count = 1;
+        while (count < concurrencyLevel && count * 2 <= maxEntries) {
+            count *= 2;
+        }
+
+        segments = new Segment[count];
+        for (int ix = 0; ix < count; ix++) {
+            segments[ix] = new Segment<>(maxEntries / count + (ix < maxEntries % count ? 1 : 0));
+        }
+    }
+
+    @Override
+    public Entry<V> read(K key) {
+        return segmentFor(key).read(key);
+    }
+
+    @Override
+    public void write(K key, V value, long expiry) {
+        segmentFor(key).write(key, new Entry<>(value, expiry));
+    }
+
+    @Override
+    public void remove(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    @Override
+    public void remove(K key, long expiry) {
+        segmentFor(key).remove(key, expiry);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.count();
+        }
+        return size;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super Entry<V>> action) {
+        for (Segment<K, V> segment : segments) {
+            segment.entries().forEach(it -> action.accept(it.getKey(), it.getValue()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The number of segments is not changed, and every segment keeps at least one
+     * element.
+     */
+    @Override
+    public void resize(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+
+        int count = segments.length;
+        for (int ix = 0; ix < count; ix++) {
+            segments[ix].resize(Math.max(maxEntries / count + (ix < maxEntries % count ? 1 : 0), 1));
+        }
+    }
+
+    @Override
+    public void setMetricsListener(MetricsListener metricsListener) {
+        for (Segment<K, V> segment : segments) {
+            segment.metricsListener = metricsListener;
+        }
+    }
+
+    /**
+     * Returns the {@link Segment} that is responsible for the given key.
+     */
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * A segment of the store. It keeps the given maximum number of elements, and removes
+     * the least recently read element if the maximum number is exceeded. All methods are
+     * synchronized.
+     */
+    private static class Segment<T, U> {
+        private final LinkedHashMap<T, CacheStore.Entry<U>> map;
+        private volatile MetricsListener metricsListener;
+        private int maxEntries;
+
+        /**
+         * Creates a new {@link Segment}.
+         *
+         * @param maxEntries
+         *            maximum number of elements to keep
+         */
+        @SuppressWarnings("serial")
+        public Segment(int maxEntries) {
+            this.maxEntries = maxEntries;
+            map = new LinkedHashMap<T, CacheStore.Entry<U>>(Math.max(maxEntries / 4, 4), 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<T, CacheStore.Entry<U>> eldest) {
+                    if (super.size() <= Segment.this.maxEntries) {
+                        return false;
+                    }
+                    onEviction();
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Changes the maximum number of elements, and evicts the least recently read
+         * elements that exceed it.
+         */
+        public synchronized void resize(int maxEntries) {
+            this.maxEntries = maxEntries;
+            Iterator<T> it = map.keySet().iterator();
+            while (map.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                onEviction();
+            }
+        }
+
+        public synchronized Entry<U> read(T key) {
+            return map.get(key);
+        }
+
+        public synchronized void write(T key, Entry<U> entry) {
+            map.put(key, entry);
+        }
+
+        public synchronized void remove(T key) {
+            map.remove(key);
+        }
+
+        public synchronized void remove(T key, long expiry) {
+            Entry<U> entry = map.get(key);
+            if (entry != null && entry.getExpiry() == expiry) {
+                map.remove(key);
+            }
+        }
+
+        public synchronized int count() {
+            return map.size();
+        }
+
+        public synchronized List<Map.Entry<T, Entry<U>>> entries() {
+            return new ArrayList<>(map.entrySet());
+        }
+
+        private void onEviction() {
+            MetricsListener listener = metricsListener;
+            if (listener != null) {
+                listener.onCacheEviction();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,433 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.shredzone.shariff.api.MetricsListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link MetricsListener} that keeps counters and {@link LatencyHistogram}s, and
+ * exposes them as MXBeans.
+ * <p>
+ * After {@link #register(MBeanServer)}, these MXBeans are found in the
+ * {@value #DOMAIN} domain:
+ * <ul>
+ * <li>{@code type=Cache}: hits, misses, expiries and evictions of the cache</li>
+ * <li>{@code type=Executor}: time that fetches are waiting for a backend thread</li>
+ * <li>{@code type=Target,name=...}: duration and failures of the requests to each
+ * target. They are registered when the first request to the target is sent.</li>
+ * </ul>
+ * All of them carry an {@code instance} key, so several listeners can be registered at
+ * the same {@link MBeanServer}. The metrics are collected from the creation of the
+ * listener, and are never reset.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class JmxMetricsListener implements MetricsListener {
+    private static final Logger LOG = LoggerFactory.getLogger(JmxMetricsListener.class);
+
+    /**
+     * JMX domain of the MXBeans.
+     */
+    public static final String DOMAIN = "org.shredzone.shariff";
+
+    /**
+     * Cache metrics.
+     */
+    public interface CacheMetricsMXBean {
+        /**
+         * Returns the number of reads that were answered from the cache.
+         */
+        long getHits();
+
+        /**
+         * Returns the number of reads that found no element.
+         */
+        long getMisses();
+
+        /**
+         * Returns the number of reads that found an expired element, which had to be
+         * fetched again.
+         */
+        long getExpiries();
+
+        /**
+         * Returns the number of elements that were evicted to make room for others.
+         */
+        long getEvictions();
+
+        /**
+         * Returns the ratio of hits to all reads, or 0 if there were no reads yet.
+         */
+        double getHitRatio();
+    }
+
+    /**
+     * Latency metrics. All durations are in milliseconds.
+     */
+    public interface LatencyMetricsMXBean {
+        /**
+         * Returns the number of recorded durations.
+         */
+        long getCount();
+
+        /**
+         * Returns the mean duration.
+         */
+        double getMeanMillis();
+
+        /**
+         * Returns the median duration.
+         */
+        double getMedianMillis();
+
+        /**
+         * Returns the 99th percentile of the durations.
+         */
+        double getP99Millis();
+
+        /**
+         * Returns the 99.9th percentile of the durations.
+         */
+        double getP999Millis();
+
+        /**
+         * Returns the longest duration.
+         */
+        double getMaxMillis();
+    }
+
+    /**
+     * Target metrics. The latencies include the failed requests.
+     */
+    public interface TargetMetricsMXBean extends LatencyMetricsMXBean {
+        /**
+         * Returns the number of failed requests.
+         */
+        long getFailures();
+
+        /**
+         * Returns the ratio of failed requests to all requests, or 0 if there were no
+         * requests yet.
+         */
+        double getFailureRatio();
+
+        /**
+         * Returns the number of requests that are currently in progress.
+         */
+        long getInFlight();
+    }
+
+    private final String instance;
+    private final CacheMetrics cache = new CacheMetrics();
+    private final LatencyMetrics queueWait = new LatencyMetrics();
+    private final ConcurrentMap<String, TargetMetrics> targets = new ConcurrentHashMap<>();
+    private final List<ObjectName> registered = new ArrayList<>();
+    private MBeanServer server;
+
+    /**
+     * Creates a new {@link JmxMetricsListener}.
+     *
+     * @param instance
+     *            Name of this instance, which is used as {@code instance} key of the
+     *            MXBean names
+     */
+    public JmxMetricsListener(String instance) {
+        this.instance = instance;
+    }
+
+    /**
+     * Registers the MXBeans at the given {@link MBeanServer}. MXBeans of targets that
+     * are used later are registered as well.
+     *
+     * @param server
+     *            {@link MBeanServer} to register at, usually the
+     *            {@link java.lang.management.ManagementFactory#getPlatformMBeanServer()}
+     * @throws JMException
+     *             if the MXBeans could not be registered
+     */
+    public synchronized void register(MBeanServer server) throws JMException {
+        if (this.server != null) {
+            throw new IllegalStateException("Already registered");
+        }
+        this.server = server;
+        try {
+            register("type=Cache", cache, CacheMetricsMXBean.class);
+            register("type=Executor", queueWait, LatencyMetricsMXBean.class);
+            for (TargetMetrics target : targets.values()) {
+                register("type=Target,name=" + ObjectName.quote(target.name), target, TargetMetricsMXBean.class);
+            }
+        } catch (JMException ex) {
+            unregister();
+            throw ex;
+        }
+    }
+
+    /**
+     * Unregisters all MXBeans. Nothing happens if they are not registered.
+     */
+    public synchronized void unregister() {
+        if (server == null) {
+            return;
+        }
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ex) {
+                LOG.debug("Could not unregister {}", name, ex);
+            }
+        }
+        registered.clear();
+        server = null;
+    }
+
+    /**
+     * Returns the cache metrics.
+     */
+    public CacheMetrics getCacheMetrics() {
+        return cache;
+    }
+
+    /**
+     * Returns the metrics of the time that fetches are waiting for a backend thread.
+     */
+    public LatencyMetrics getQueueWaitMetrics() {
+        return queueWait;
+    }
+
+    /**
+     * Returns the metrics of the given target.
+     *
+     * @param name
+     *            Target name
+     * @return {@link TargetMetrics}, or {@code null} if there was no request to the
+     *         target yet
+     */
+    public TargetMetrics getTargetMetrics(String name) {
+        return targets.get(name);
+    }
+
+    @Override
+    public void onCacheHit() {
+        cache.hits.increment();
+    }
+
+    @Override
+    public void onCacheMiss() {
+        cache.misses.increment();
+    }
+
+    @Override
+    public void onCacheExpiry() {
+        cache.expiries.increment();
+    }
+
+    @Override
+    public void onCacheEviction() {
+        cache.evictions.increment();
+    }
+
+    @Override
+    public void onFetchStart(String target) {
+        target(target).inFlight.increment();
+    }
+
+    @Override
+    public void onFetchSuccess(String target, long nanos) {
+        TargetMetrics metrics = target(target);
+        metrics.inFlight.decrement();
+        metrics.histogram.record(nanos);
+    }
+
+    @Override
+    public void onFetchFailure(String target, long nanos, Throwable cause) {
+        TargetMetrics metrics = target(target);
+        metrics.inFlight.decrement();
+        metrics.failures.increment();
+        metrics.histogram.record(nanos);
+    }
+
+    @Override
+    public void onQueueWait(long nanos) {
+        queueWait.histogram.record(nanos);
+    }
+
+    /**
+     * Returns the {@link TargetMetrics} of the given target. If there are none yet, they
+     * are created, and registered if this listener is registered.
+     */
+    private TargetMetrics target(String name) {
+        TargetMetrics result = targets.get(name);
+        if (result == null) {
+            result = targets.computeIfAbsent(name, TargetMetrics::new);
+            registerTarget(result);
+        }
+        return result;
+    }
+
+    /**
+     * Registers the MXBean of a {@link TargetMetrics} that has just been created, if
+     * this listener is registered. Targets that are already registered are ignored.
+     */
+    private synchronized void registerTarget(TargetMetrics target) {
+        if (server == null) {
+            return;
+        }
+        try {
+            ObjectName name = objectName("type=Target,name=" + ObjectName.quote(target.name));
+            if (!registered.contains(name)) {
+                register(name, target, TargetMetricsMXBean.class);
+            }
+        } catch (JMException ex) {
+            LOG.warn("Could not register metrics of target {}", target.name, ex);
+        }
+    }
+
+    private <T> void register(String properties, T bean, Class<T> type) throws JMException {
+        register(objectName(properties), bean, type);
+    }
+
+    private <T> void register(ObjectName name, T bean, Class<T> type) throws JMException {
+        server.registerMBean(new StandardMBean(bean, type, true), name);
+        registered.add(name);
+    }
+
+    private ObjectName objectName(String properties) throws JMException {
+        return new ObjectName(DOMAIN + ":" + properties + ",instance=" + ObjectName.quote(instance));
+    }
+
+    /**
+     * Converts nanoseconds to fractional milliseconds.
+     */
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1L);
+    }
+
+    /**
+     * Metrics of the cache.
+     */
+    public static class CacheMetrics implements CacheMetricsMXBean {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder expiries = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        @Override
+        public long getHits() {
+            return hits.sum();
+        }
+
+        @Override
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        @Override
+        public long getExpiries() {
+            return expiries.sum();
+        }
+
+        @Override
+        public long getEvictions() {
+            return evictions.sum();
+        }
+
+        @Override
+        public double getHitRatio() {
+            long h = hits.sum();
+            long total = h + misses.sum() + expiries.sum();
+            return total > 0L ? (double) h / total : 0.0;
+        }
+    }
+
+    /**
+     * Metrics of durations.
+     */
+    public static class LatencyMetrics implements LatencyMetricsMXBean {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return toMillis(histogram.getMean());
+        }
+
+        @Override
+        public double getMedianMillis() {
+            return toMillis(histogram.getPercentile(50.0));
+        }
+
+        @Override
+        public double getP99Millis() {
+            return toMillis(histogram.getPercentile(99.0));
+        }
+
+        @Override
+        public double getP999Millis() {
+            return toMillis(histogram.getPercentile(99.9));
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return toMillis(histogram.getMax());
+        }
+    }
+
+    /**
+     * Metrics of a target.
+     */
+    public static class TargetMetrics extends LatencyMetrics implements TargetMetricsMXBean {
+        private final String name;
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+
+        private TargetMetrics(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        @Override
+        public double getFailureRatio() {
+            long total = getCount();
+            return total > 0L ? (double) failures.sum() / total : 0.0;
+        }
+
+        @Override
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations.
+ * <p>
+ * Values are counted in buckets of exponentially growing width. Every power of two is
+ * split into 8 buckets, so percentiles are accurate to 12.5%, over the whole range of
+ * {@code long}. Recording a value is a few atomic increments, and never blocks or
+ * allocates. Percentiles are computed from a snapshot of the buckets that may be
+ * slightly inconsistent while values are recorded.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *            Value to record. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0L);
+        buckets.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean of all recorded values, or 0 if no value was recorded.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n > 0L ? (double) sum.sum() / n : 0.0;
+    }
+
+    /**
+     * Returns the largest recorded value, or 0 if no value was recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns a percentile of the recorded values. The result is the upper bound of the
+     * bucket that contains the percentile, but never more than the largest value.
+     *
+     * @param percentile
+     *            Percentile, between 0 and 100
+     * @return Percentile, or 0 if no value was recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0L;
+        for (int ix = 0; ix < BUCKETS; ix++) {
+            snapshot[ix] = buckets.get(ix);
+            total += snapshot[ix];
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+
+        long rank = Math.max((long) Math.ceil(percentile / 100.0 * total), 1L);
+        long seen = 0L;
+        for (int ix = 0; ix < BUCKETS; ix++) {
+            seen += snapshot[ix];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(ix), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the index of the bucket that counts the given value.
+     */
+    static int indexOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest value that is counted by the given bucket.
+     */
+    static long upperBoundOf(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long next = (long) (SUB_BUCKETS + index % SUB_BUCKETS + 1) << shift;
+        return next > 0L ? next - 1L : Long.MAX_VALUE;
+    }
+
+}
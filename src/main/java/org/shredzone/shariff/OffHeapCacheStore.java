@@ -0,0 +1,487 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.shredzone.shariff.api.MetricsListener;
+
+/**
+ * A {@link CacheStore} that keeps keys and values off the heap, in direct
+ * {@link ByteBuffer}s. It is bounded by a number of bytes rather than a number of
+ * elements.
+ * <p>
+ * The store is split into segments, each of them guarded by its own lock. Every segment
+ * is a ring buffer that elements are appended to. When it is full, the oldest elements
+ * are evicted, so the eviction order is first-in-first-out. Replaced and removed
+ * elements stay in the buffer until they are overwritten.
+ * <p>
+ * The index of each segment is an open addressing hash table of {@code int} arrays, so
+ * the store does not create any objects per element on the heap, and does not add to
+ * the garbage collector's work however large it gets. Note that the maximum amount of
+ * direct memory may need to be raised by the {@code -XX:MaxDirectMemorySize} JVM option.
+ *
+ * @param <V>
+ *            Value type
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class OffHeapCacheStore<V> implements CacheStore<String, V> {
+
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+    private final Segment[] segments;
+    private final Codec<V> codec;
+
+    /**
+     * Creates a new {@link OffHeapCacheStore}, using one segment per available processor.
+     *
+     * @param maxBytes
+     *            maximum number of bytes to be used for keys and values
+     * @param codec
+     *            {@link Codec} that converts values to bytes and back
+     */
+    public OffHeapCacheStore(long maxBytes, Codec<V> codec) {
+        this(maxBytes, codec, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new {@link OffHeapCacheStore}.
+     *
+     * @param maxBytes
+     *            maximum number of bytes to be used for keys and values
+     * @param codec
+     *            {@link Codec} that converts values to bytes and back
+     * @param concurrencyLevel
+     *            estimated number of concurrently reading threads. It is rounded up to
+     *            the next power of two, and gives the number of segments. There are more
+     *            segments if required for the number of bytes.
+     */
+    public OffHeapCacheStore(long maxBytes, Codec<V> codec, int concurrencyLevel) {
+        if (maxBytes < 1024L) {
+            throw new IllegalArgumentException("maxBytes must be at least 1024");
+        }
+
+        int bits = 0;
+        while (((1 << bits) < concurrencyLevel && (maxBytes >> (bits + 1)) >= 1024L)
+                || (maxBytes >> bits) > MAX_SEGMENT_BYTES) {
+            bits++;
+        }
+
+        this.codec = codec;
+        this.segments = new Segment[1 << bits];
+        for (int ix = 0; ix < segments.length; ix++) {
+            segments[ix] = new Segment((int) (maxBytes >> bits));
+        }
+    }
+
+    @Override
+    public Entry<V> read(String key) {
+        int hash = hash(key);
+        byte[] keyBytes = key.getBytes(UTF_8);
+        ByteBuffer value = segmentFor(hash).read(keyBytes, hash);
+        if (value == null) {
+            return null;
+        }
+        long expiry = value.getLong();
+        return new Entry<>(codec.decode(value.slice()), expiry);
+    }
+
+    @Override
+    public void write(String key, V value, long expiry) {
+        int hash = hash(key);
+        segmentFor(hash).write(key.getBytes(UTF_8), hash, codec.encode(value), expiry);
+    }
+
+    @Override
+    public void remove(String key) {
+        int hash = hash(key);
+        segmentFor(hash).remove(key.getBytes(UTF_8), hash, null);
+    }
+
+    @Override
+    public void remove(String key, long expiry) {
+        int hash = hash(key);
+        segmentFor(hash).remove(key.getBytes(UTF_8), hash, expiry);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.count();
+        }
+        return size;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Entry<V>> action) {
+        for (Segment segment : segments) {
+            for (ByteBuffer record : segment.records()) {
+                byte[] keyBytes = new byte[record.getInt()];
+                record.get(keyBytes);
+                long expiry = record.getLong();
+                action.accept(new String(keyBytes, UTF_8), new Entry<>(codec.decode(record.slice()), expiry));
+            }
+        }
+    }
+
+    @Override
+    public void setMetricsListener(MetricsListener metricsListener) {
+        for (Segment segment : segments) {
+            segment.metricsListener = metricsListener;
+        }
+    }
+
+    /**
+     * Computes the hash of a key.
+     */
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the {@link Segment} that is responsible for the given hash.
+     */
+    private Segment segmentFor(int hash) {
+        return segments[hash & (segments.length - 1)];
+    }
+
+    /**
+     * Converts values to bytes and back.
+     *
+     * @param <V>
+     *            Value type
+     */
+    public interface Codec<V> {
+        /**
+         * Encodes a value.
+         *
+         * @param value
+         *            Value to encode
+         * @return Encoded value
+         */
+        byte[] encode(V value);
+
+        /**
+         * Decodes a value.
+         *
+         * @param buffer
+         *            {@link ByteBuffer} containing exactly the bytes of an encoded value
+         * @return Decoded value
+         */
+        V decode(ByteBuffer buffer);
+    }
+
+    /**
+     * A segment of the store. All methods are synchronized.
+     * <p>
+     * The data buffer is a ring buffer of records. Records are written at {@code head},
+     * and evicted at {@code tail}. If the buffer has wrapped around, the records are
+     * found between {@code tail} and {@code end}, and then between {@code 0} and
+     * {@code head}. Every record consists of:
+     * <ul>
+     * <li>total length of the record (int)</li>
+     * <li>key hash (int)</li>
+     * <li>key length (int)</li>
+     * <li>expiry time stamp (long)</li>
+     * <li>key bytes</li>
+     * <li>value bytes</li>
+     * </ul>
+     */
+    private static class Segment {
+        private static final int HEADER = 20;
+        private static final int INITIAL_SLOTS = 64;
+
+        private final ByteBuffer data;
+        private final int capacity;
+        private int head = 0;
+        private int tail = 0;
+        private int end;
+        private int records = 0;
+
+        private int[] slots = new int[INITIAL_SLOTS];
+        private int[] hashes = new int[INITIAL_SLOTS];
+        private int live = 0;
+        private volatile MetricsListener metricsListener;
+
+        /**
+         * Creates a new {@link Segment}.
+         *
+         * @param capacity
+         *            Size of the data buffer, in bytes
+         */
+        public Segment(int capacity) {
+            this.capacity = capacity;
+            this.end = capacity;
+            this.data = ByteBuffer.allocateDirect(capacity);
+        }
+
+        /**
+         * Reads a record.
+         *
+         * @return {@link ByteBuffer} that contains the expiry time stamp, followed by the
+         *         value bytes. {@code null} if there is no such record.
+         */
+        public synchronized ByteBuffer read(byte[] key, int hash) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+
+            int offset = slots[slot] - 1;
+            int length = data.getInt(offset);
+            ByteBuffer result = ByteBuffer.allocate(length - HEADER - key.length + 8);
+            result.putLong(data.getLong(offset + 12));
+            ByteBuffer src = data.duplicate();
+            src.limit(offset + length).position(offset + HEADER + key.length);
+            result.put(src);
+            result.flip();
+            return result;
+        }
+
+        /**
+         * Writes a record, replacing an existing record of the same key. Records that
+         * are larger than the segment are not written.
+         */
+        public synchronized void write(byte[] key, int hash, byte[] value, long expiry) {
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                removeSlot(slot);
+            }
+
+            int length = HEADER + key.length + value.length;
+            if (length > capacity) {
+                return;
+            }
+
+            int offset = allocate(length);
+            data.putInt(offset, length);
+            data.putInt(offset + 4, hash);
+            data.putInt(offset + 8, key.length);
+            data.putLong(offset + 12, expiry);
+            ByteBuffer dst = data.duplicate();
+            dst.position(offset + HEADER);
+            dst.put(key);
+            dst.put(value);
+            records++;
+
+            insertSlot(hash, offset);
+        }
+
+        /**
+         * Removes a record.
+         *
+         * @param expiry
+         *            If not {@code null}, the record is only removed if it has this
+         *            expiry time stamp
+         */
+        public synchronized void remove(byte[] key, int hash, Long expiry) {
+            int slot = find(key, hash);
+            if (slot >= 0 && (expiry == null || data.getLong(slots[slot] - 1 + 12) == expiry)) {
+                removeSlot(slot);
+            }
+        }
+
+        public synchronized int count() {
+            return live;
+        }
+
+        /**
+         * Returns a copy of all records. Each {@link ByteBuffer} contains the key length,
+         * the key bytes, the expiry time stamp, followed by the value bytes.
+         */
+        public synchronized List<ByteBuffer> records() {
+            List<ByteBuffer> result = new ArrayList<>(live);
+            for (int slot : slots) {
+                if (slot != 0) {
+                    int offset = slot - 1;
+                    int length = data.getInt(offset);
+                    int keyLength = data.getInt(offset + 8);
+                    ByteBuffer record = ByteBuffer.allocate(length - HEADER + 12);
+                    record.putInt(keyLength);
+                    ByteBuffer src = data.duplicate();
+                    src.limit(offset + HEADER + keyLength).position(offset + HEADER);
+                    record.put(src);
+                    record.putLong(data.getLong(offset + 12));
+                    src.limit(offset + length).position(offset + HEADER + keyLength);
+                    record.put(src);
+                    record.flip();
+                    result.add(record);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Allocates space for a record of the given length, evicting the oldest records
+         * if necessary.
+         *
+         * @return Offset of the allocated space
+         */
+        private int allocate(int length) {
+            while (true) {
+                if (records == 0) {
+                    head = 0;
+                    tail = 0;
+                    end = capacity;
+                }
+
+                boolean wrapped = head < tail || (head == tail && records > 0);
+                if (!wrapped) {
+                    if (capacity - head >= length) {
+                        int offset = head;
+                        head += length;
+                        return offset;
+                    }
+                    end = head;
+                    head = 0;
+                    continue;
+                }
+
+                if (tail - head >= length) {
+                    int offset = head;
+                    head += length;
+                    return offset;
+                }
+
+                evict();
+            }
+        }
+
+        /**
+         * Evicts the oldest record.
+         */
+        private void evict() {
+            int length = data.getInt(tail);
+            int hash = data.getInt(tail + 4);
+
+            int mask = slots.length - 1;
+            for (int ix = home(hash, mask); slots[ix] != 0; ix = (ix + 1) & mask) {
+                if (slots[ix] == tail + 1) {
+                    removeSlot(ix);
+                    MetricsListener listener = metricsListener;
+                    if (listener != null) {
+                        listener.onCacheEviction();
+                    }
+                    break;
+                }
+            }
+
+            records--;
+            tail += length;
+            if (tail >= end) {
+                tail = 0;
+                end = capacity;
+            }
+        }
+
+        /**
+         * Finds the index slot of the given key.
+         *
+         * @return Slot, or -1 if the key was not found
+         */
+        private int find(byte[] key, int hash) {
+            int mask = slots.length - 1;
+            for (int ix = home(hash, mask); slots[ix] != 0; ix = (ix + 1) & mask) {
+                if (hashes[ix] == hash && keyEquals(slots[ix] - 1, key)) {
+                    return ix;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Checks if the record at the given offset has the given key.
+         */
+        private boolean keyEquals(int offset, byte[] key) {
+            if (data.getInt(offset + 8) != key.length) {
+                return false;
+            }
+            int keyOffset = offset + HEADER;
+            for (int ix = 0; ix < key.length; ix++) {
+                if (data.get(keyOffset + ix) != key[ix]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Adds a record to the index. The index grows if it is half full.
+         */
+        private void insertSlot(int hash, int offset) {
+            if ((live + 1) * 2 > slots.length) {
+                int[] oldSlots = slots;
+                int[] oldHashes = hashes;
+                slots = new int[oldSlots.length * 2];
+                hashes = new int[oldHashes.length * 2];
+                live = 0;
+                for (int ix = 0; ix < oldSlots.length; ix++) {
+                    if (oldSlots[ix] != 0) {
+                        insertSlot(oldHashes[ix], oldSlots[ix] - 1);
+                    }
+                }
+            }
+
+            int mask = slots.length - 1;
+            int ix = home(hash, mask);
+            while (slots[ix] != 0) {
+                ix = (ix + 1) & mask;
+            }
+            slots[ix] = offset + 1;
+            hashes[ix] = hash;
+            live++;
+        }
+
+        /**
+         * Removes a record from the index. The record itself stays in the data buffer
+         * until it is evicted.
+         */
+        private void removeSlot(int slot) {
+            int mask = slots.length - 1;
+            int free = slot;
+            slots[free] = 0;
+            live--;
+
+            // Move subsequent entries of the probe sequence into the free slot
+            for (int ix = (free + 1) & mask; slots[ix] != 0; ix = (ix + 1) & mask) {
+                int home = home(hashes[ix], mask);
+                boolean movable = free <= ix
+                                ? (home <= free || home > ix)
+                                : (home <= free && home > ix);
+                if (movable) {
+                    slots[free] = slots[ix];
+                    hashes[free] = hashes[ix];
+                    slots[ix] = 0;
+                    free = ix;
+                }
+            }
+        }
+
+        /**
+         * Returns the preferred index slot of a hash. The lower bits of the hash were
+         * already used for selecting the segment, so the hash is rotated.
+         */
+        private static int home(int hash, int mask) {
+            return Integer.rotateRight(hash, 8) & mask;
+        }
+    }
+
+}
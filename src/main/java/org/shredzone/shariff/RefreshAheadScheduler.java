@@ -0,0 +1,280 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static java.util.Comparator.comparingInt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+import org.shredzone.shariff.CacheStore.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refreshes frequently read elements of a {@link ConcurrentCache} shortly before they
+ * expire, so readers of popular keys never have to wait for a fetch.
+ * <p>
+ * The scheduler counts the reads of every key. On each run, the read counts are halved,
+ * so keys that are not read any more are soon forgotten. Hot keys that expire within the
+ * refresh-ahead time are refreshed, hottest first. The number of refreshes per run is
+ * limited by a budget. Hot keys exceeding that budget are skipped, and are fetched again
+ * when they are read after expiry.
+ *
+ * @param <K>
+ *            Key type
+ * @param <V>
+ *            Value type
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class RefreshAheadScheduler<K, V> {
+    private static final Logger LOG = LoggerFactory.getLogger(RefreshAheadScheduler.class);
+
+    private final ConcurrentCache<K, V> cache;
+    private final BiFunction<K, V, ? extends CompletionStage<V>> provider;
+    private final ConcurrentMap<K, Access> accesses = new ConcurrentHashMap<>();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder refreshedHits = new LongAdder();
+    private final long refreshAheadMs;
+    private final int maxRefreshes;
+    private volatile int minScore = 2;
+    private ScheduledFuture<?> task;
+
+    /**
+     * Creates a new {@link RefreshAheadScheduler} for the given cache. From now on, the
+     * cache reports all reads to this scheduler.
+     *
+     * @param cache
+     *            {@link ConcurrentCache} to refresh
+     * @param refreshAhead
+     *            Elements expiring within this time are refreshed
+     * @param unit
+     *            {@link TimeUnit} of refreshAhead
+     * @param maxRefreshes
+     *            Maximum number of refreshes per run
+     * @param provider
+     *            Provider that fetches the value of a key, see
+     *            {@link ConcurrentCache#fetchAsync(Object, BiFunction)}. The previous
+     *            value passed in has not expired yet.
+     */
+    public RefreshAheadScheduler(ConcurrentCache<K, V> cache, long refreshAhead, TimeUnit unit,
+                int maxRefreshes, BiFunction<K, V, ? extends CompletionStage<V>> provider) {
+        this.cache = cache;
+        this.refreshAheadMs = unit.toMillis(refreshAhead);
+        this.maxRefreshes = maxRefreshes;
+        this.provider = provider;
+        cache.setRefreshAhead(this);
+    }
+
+    /**
+     * Sets the minimum score of a key to be refreshed. The score is the number of reads
+     * since the last run, plus half of the previous score. A key that is read once per
+     * run has a score of about 2. Default is 2.
+     *
+     * @param minScore
+     *            Minimum score
+     */
+    public void setMinScore(int minScore) {
+        this.minScore = minScore;
+    }
+
+    /**
+     * Starts refreshing in background.
+     *
+     * @param executor
+     *            {@link ScheduledExecutorService} that runs the scheduler
+     * @param interval
+     *            Interval between two runs. It should be shorter than the refresh-ahead
+     *            time.
+     * @param unit
+     *            {@link TimeUnit} of interval
+     */
+    public synchronized void start(ScheduledExecutorService executor, long interval, TimeUnit unit) {
+        if (task != null) {
+            throw new IllegalStateException("Scheduler is already started");
+        }
+        task = executor.scheduleWithFixedDelay(this::run, interval, interval, unit);
+    }
+
+    /**
+     * Stops refreshing. The cache does not report reads to this scheduler any more.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        cache.setRefreshAhead(null);
+        accesses.clear();
+    }
+
+    /**
+     * Returns the number of refreshes that have been started.
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * Returns the number of refreshes that were skipped because the budget was exceeded.
+     */
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * Returns the number of cache hits that were served by refreshed elements.
+     */
+    public long getRefreshedHitCount() {
+        return refreshedHits.sum();
+    }
+
+    /**
+     * Returns the number of keys that are currently tracked.
+     */
+    public int getTrackedKeyCount() {
+        return accesses.size();
+    }
+
+    /**
+     * Runs the scheduler once. It decays the read counts, forgets about keys that are
+     * not read any more, and refreshes the hottest keys that are about to expire.
+     */
+    public synchronized void run() {
+        try {
+            long now = System.currentTimeMillis();
+            List<Candidate<K>> candidates = new ArrayList<>();
+
+            for (Map.Entry<K, Access> e : accesses.entrySet()) {
+                K key = e.getKey();
+                Access access = e.getValue();
+                int score = access.decay();
+
+                Entry<V> entry = cache.getEntry(key);
+                if (score == 0 || entry == null) {
+                    accesses.remove(key, access);
+                    continue;
+                }
+
+                if (score >= minScore && !access.inFlight
+                        && entry.getExpiry() - now <= refreshAheadMs) {
+                    candidates.add(new Candidate<>(key, access, score));
+                }
+            }
+
+            candidates.sort(comparingInt((Candidate<K> c) -> c.score).reversed());
+
+            int budget = maxRefreshes;
+            for (Candidate<K> candidate : candidates) {
+                if (budget > 0) {
+                    budget--;
+                    refresh(candidate.key, candidate.access);
+                } else {
+                    skipped.increment();
+                }
+            }
+        } catch (RuntimeException ex) {
+            LOG.warn("Refresh-ahead run failed", ex);
+        }
+    }
+
+    /**
+     * Counts a read of the given key. Invoked by the cache on every read.
+     *
+     * @param key
+     *            Cache key
+     * @param hit
+     *            {@code true} if the read was a cache hit
+     */
+    void onRead(K key, boolean hit) {
+        Access access = accesses.get(key);
+        if (access == null) {
+            Access created = new Access();
+            access = accesses.putIfAbsent(key, created);
+            if (access == null) {
+                access = created;
+            }
+        }
+
+        access.reads.incrementAndGet();
+
+        if (!hit) {
+            access.refreshed = false;
+        } else if (access.refreshed) {
+            refreshedHits.increment();
+        }
+    }
+
+    /**
+     * Refreshes the given key.
+     */
+    private void refresh(K key, Access access) {
+        access.inFlight = true;
+        refreshes.increment();
+        cache.reload(key, provider).whenComplete((value, ex) -> {
+            access.inFlight = false;
+            if (ex == null) {
+                access.refreshed = true;
+            } else {
+                LOG.debug("Failed to refresh cache entry {} ahead", key, ex);
+            }
+        });
+    }
+
+    /**
+     * Read statistics of a key.
+     */
+    private static class Access {
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile boolean refreshed;
+        private volatile boolean inFlight;
+        private int score;
+
+        /**
+         * Adds the reads since the last invocation to half of the previous score, and
+         * returns the new score. Only invoked by the scheduler run.
+         */
+        public int decay() {
+            score = score / 2 + reads.getAndSet(0);
+            return score;
+        }
+    }
+
+    /**
+     * A key to be refreshed.
+     */
+    private static class Candidate<K> {
+        private final K key;
+        private final Access access;
+        private final int score;
+
+        public Candidate(K key, Access access, int score) {
+            this.key = key;
+            this.access = access;
+            this.score = score;
+        }
+    }
+
+}
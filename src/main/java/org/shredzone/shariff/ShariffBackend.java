@@ -14,17 +14,42 @@ package org.shredzone.shariff;
 
 import static java.util.stream.Collectors.toList;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
+import org.shredzone.shariff.api.HttpTarget;
+import org.shredzone.shariff.api.MetricsListener;
+import org.shredzone.shariff.api.RateLimiter;
 import org.shredzone.shariff.api.Target;
 import org.shredzone.shariff.target.AddThis;
 import org.shredzone.shariff.target.Buffer;
@@ -44,9 +69,27 @@ import org.slf4j.LoggerFactory;
  */
 public class ShariffBackend {
     private static final Logger LOG = LoggerFactory.getLogger(ShariffBackend.class);
+    private static final boolean VIRTUAL_THREAD_SUPPORT = probeVirtualThreads();
+
+    /**
+     * Default maximum number of concurrent fetches if virtual threads are used.
+     *
+     * @since 1.25
+     */
+    public static final int DEFAULT_VIRTUAL_CONCURRENCY = 256;
 
     private final List<Target> targets;
+    private final CountVector.NameTable nameTable;
+    private final Map<String, CircuitBreaker> breakers;
     private final ExecutorService executor;
+    private final ThreadPoolExecutor pool;
+    private final ConcurrencyLimit permits;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<FetchKey, Fetch> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> disabled = ConcurrentHashMap.newKeySet();
+    private final LongAdder coalesced = new LongAdder();
+    private final Executor timedExecutor = this::execute;
+    private volatile MetricsListener metricsListener;
 
     /**
      * Creates a new backend instance.
@@ -79,19 +122,114 @@ public class ShariffBackend {
      *            are targets.
      */
     public ShariffBackend(Collection<String> names, Integer maxThreads) {
+        this(names, maxThreads, false);
+    }
+
+    /**
+     * Creates a new backend instance, only providing the given targets. Optionally,
+     * every fetch is performed on a virtual thread of its own, instead of a fixed
+     * number of platform threads.
+     * <p>
+     * Virtual threads require Java 21 or higher. On older Java runtimes, a warning is
+     * logged and a thread pool is used instead.
+     *
+     * @param names
+     *            Target names, as returned by {@link Target#getName()}. Unknown names
+     *            will be silently ignored. {@code null} means all targets.
+     * @param maxThreads
+     *            Maximum number of threads, or maximum number of concurrent fetches if
+     *            virtual threads are used. {@code null} means as many threads as there
+     *            are targets, or {@link #DEFAULT_VIRTUAL_CONCURRENCY} concurrent
+     *            fetches.
+     * @param virtualThreads
+     *            {@code true} to use virtual threads if supported
+     * @see #isVirtualThreadSupported()
+     * @since 1.25
+     */
+    public ShariffBackend(Collection<String> names, Integer maxThreads, boolean virtualThreads) {
         List<Target> list = createTargets().stream()
                     .filter(target -> names == null || names.contains(target.getName()))
                     .collect(toList());
         targets = Collections.unmodifiableList(list);
+        nameTable = new CountVector.NameTable(targets.stream().map(Target::getName).collect(toList()));
+
+        Map<String, CircuitBreaker> breakerMap = new LinkedHashMap<>();
+        targets.forEach(target -> breakerMap.put(target.getName(), createCircuitBreaker(target)));
+        breakers = Collections.unmodifiableMap(breakerMap);
 
         ThreadGroup group = new ThreadGroup("shariff");
-        executor =  Executors.newFixedThreadPool(
-                maxThreads != null ? maxThreads : targets.size(),
-                runnable -> {
-                    Thread t = new Thread(group, runnable);
-                    t.setDaemon(true);
-                    return t;
-                });
+        ExecutorService virtual = virtualThreads ? createVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            executor = virtual;
+            pool = null;
+            permits = new ConcurrencyLimit(virtual,
+                    maxThreads != null ? maxThreads : DEFAULT_VIRTUAL_CONCURRENCY);
+        } else {
+            if (virtualThreads) {
+                LOG.warn("Virtual threads are not supported by this Java runtime, using a thread pool");
+            }
+            int threads = maxThreads != null ? maxThreads : targets.size();
+            pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread t = new Thread(group, runnable);
+                        t.setDaemon(true);
+                        return t;
+                    });
+            executor = pool;
+            permits = null;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(group, runnable, "shariff-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+        targets.stream()
+                .filter(HttpTarget.class::isInstance)
+                .forEach(target -> ((HttpTarget) target).setBatchScheduler(scheduler));
+    }
+
+    /**
+     * Checks if this Java runtime supports virtual threads, which requires Java 21 or
+     * higher.
+     *
+     * @return {@code true} if virtual threads are supported
+     * @since 1.25
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_SUPPORT;
+    }
+
+    /**
+     * Checks once if a virtual thread executor can be created.
+     */
+    private static boolean probeVirtualThreads() {
+        ExecutorService probe = createVirtualThreadExecutor();
+        if (probe == null) {
+            return false;
+        }
+        probe.shutdown();
+        return true;
+    }
+
+    /**
+     * Creates an {@link ExecutorService} that starts a new virtual thread for each task.
+     * It is looked up by reflection, so this class still runs on Java 8.
+     *
+     * @return {@link ExecutorService}, or {@code null} if virtual threads are not
+     *         supported
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // Before Java 21, there are no virtual threads, or only as preview feature
+            LOG.trace("Virtual threads are not available", ex);
+            return null;
+        }
     }
 
     /**
@@ -110,6 +248,18 @@ public class ShariffBackend {
         );
     }
 
+    /**
+     * Creates the {@link CircuitBreaker} that protects the given {@link Target}.
+     *
+     * @param target
+     *            {@link Target} to be protected
+     * @return {@link CircuitBreaker} to be used
+     * @since 1.25
+     */
+    protected CircuitBreaker createCircuitBreaker(Target target) {
+        return new CircuitBreaker(target.getName());
+    }
+
     /**
      * Returns all available Shariff targets.
      */
@@ -117,6 +267,16 @@ public class ShariffBackend {
         return targets;
     }
 
+    /**
+     * Returns the {@link CountVector.NameTable} of all available targets. It is shared by
+     * all {@link CountVector} returned by this backend.
+     *
+     * @since 1.25
+     */
+    public CountVector.NameTable getNameTable() {
+        return nameTable;
+    }
+
     /**
      * Returns the Shariff target instance of the given type.
      *
@@ -132,41 +292,598 @@ public class ShariffBackend {
                 .orElse(null);
     }
 
+    /**
+     * Returns the {@link CircuitBreaker} of the given target.
+     *
+     * @param name
+     *            Target name, as returned by {@link Target#getName()}
+     * @return {@link CircuitBreaker}, or {@code null} if there is no such target
+     *         available
+     * @since 1.25
+     */
+    public CircuitBreaker getCircuitBreaker(String name) {
+        return breakers.get(name);
+    }
+
+    /**
+     * Returns the {@link CircuitBreaker} of all available targets.
+     *
+     * @since 1.25
+     */
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return breakers.values();
+    }
+
+    /**
+     * Checks if requests to the given target are currently throttled by its
+     * {@link RateLimiter}, because the target's quota is about to be exhausted.
+     *
+     * @param name
+     *            Target name, as returned by {@link Target#getName()}
+     * @return {@code true} if the target is throttled
+     * @since 1.25
+     */
+    public boolean isThrottled(String name) {
+        return targets.stream()
+                .filter(target -> target.getName().equals(name))
+                .filter(HttpTarget.class::isInstance)
+                .map(target -> ((HttpTarget) target).getRateLimiter())
+                .anyMatch(limiter -> limiter != null && limiter.isThrottled());
+    }
+
+    /**
+     * Checks if the fetches are performed on virtual threads.
+     *
+     * @since 1.25
+     */
+    public boolean isVirtualThreads() {
+        return permits != null;
+    }
+
+    /**
+     * Returns the maximum number of threads that fetch the counters. If virtual threads
+     * are used, it is the maximum number of concurrent fetches.
+     *
+     * @since 1.25
+     */
+    public synchronized int getMaxThreads() {
+        return permits != null ? permits.getLimit() : pool.getMaximumPoolSize();
+    }
+
+    /**
+     * Changes the maximum number of threads that fetch the counters, e.g. for coping
+     * with a traffic spike. Fetches that are already queued are kept. If the number is
+     * reduced, surplus threads terminate after their current fetch.
+     *
+     * @param maxThreads
+     *            New maximum number of threads
+     * @since 1.25
+     */
+    public synchronized void setMaxThreads(int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("maxThreads must be at least 1");
+        }
+        if (permits != null) {
+            permits.setLimit(maxThreads);
+        } else if (maxThreads > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(maxThreads);
+            pool.setCorePoolSize(maxThreads);
+        } else {
+            pool.setCorePoolSize(maxThreads);
+            pool.setMaximumPoolSize(maxThreads);
+        }
+    }
+
+    /**
+     * Checks if the given target is enabled. All targets are enabled initially.
+     *
+     * @param name
+     *            Target name, as returned by {@link Target#getName()}
+     * @return {@code true} if the target is available and enabled
+     * @since 1.25
+     */
+    public boolean isEnabled(String name) {
+        return breakers.containsKey(name) && !disabled.contains(name);
+    }
+
+    /**
+     * Enables or disables a target at runtime, e.g. while it is throttling all requests.
+     * Disabled targets are not fetched, and are missing in the results. Fetches that are
+     * already in progress are not affected.
+     *
+     * @param name
+     *            Target name, as returned by {@link Target#getName()}
+     * @param enabled
+     *            {@code true} to enable, {@code false} to disable the target
+     * @throws IllegalArgumentException
+     *             if there is no such target available
+     * @since 1.25
+     */
+    public void setEnabled(String name, boolean enabled) {
+        if (!breakers.containsKey(name)) {
+            throw new IllegalArgumentException("Unknown target: " + name);
+        }
+        if (enabled) {
+            disabled.remove(name);
+        } else {
+            disabled.add(name);
+        }
+    }
+
+    /**
+     * Sets a {@link MetricsListener} that is informed about the time that fetches are
+     * waiting for a free thread. It is also set at all {@link HttpTarget}, which report
+     * the duration and outcome of their requests.
+     *
+     * @param metricsListener
+     *            {@link MetricsListener} to be used, or {@code null} for none
+     * @since 1.25
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        targets.stream()
+                .filter(HttpTarget.class::isInstance)
+                .forEach(target -> ((HttpTarget) target).setMetricsListener(metricsListener));
+    }
+
+    /**
+     * Returns the number of target fetches that were not sent upstream, because a fetch
+     * of the same target and URL was already in progress.
+     *
+     * @since 1.25
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
     /**
      * Retrieves the counters for the given URL and returns a map of all Shariff targets
      * and the returned counters.
+     * <p>
+     * Concurrent invocations for the same URL share the upstream fetches that are
+     * currently in progress, and get the same result.
      *
      * @param url
      *            URL to get the counters for
-     * @return Map containing the target name as key, and the counter as value
+     * @return Map containing the target name as key, and the counter as value. It can
+     *         be modified by the caller.
      */
     public Map<String, Integer> getCounts(String url) {
-        List<Future<Integer>> futures = getTargets().stream()
-            .map(target -> executor.submit(() -> target.count(url)))
+        return getCountsAsync(url).join().getCounts();
+    }
+
+    /**
+     * Retrieves the counters of many URLs at once. Duplicate URLs are only fetched once.
+     * The counters of all URLs are fetched concurrently, sharing the executor of this
+     * backend.
+     *
+     * @param urls
+     *            URLs to get the counters for
+     * @return Map containing the URL as key, and a map of the counters as value. The
+     *         order of the URLs is kept. The maps can be modified by the caller.
+     * @since 1.25
+     */
+    public Map<String, Map<String, Integer>> getCounts(Collection<String> urls) {
+        Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+        getCountsAsync(urls).join().forEach((url, counts) -> result.put(url, counts.getCounts()));
+        return result;
+    }
+
+    /**
+     * Retrieves the counters for the given URL, but waits no longer than the given
+     * timeout.
+     * <p>
+     * The result contains the counters of all targets that responded in time. Fetches
+     * of the other targets are cancelled, unless they are shared with other callers.
+     *
+     * @param url
+     *            URL to get the counters for
+     * @param timeout
+     *            Maximum time to wait for the counters
+     * @param unit
+     *            {@link TimeUnit} of timeout
+     * @return {@link CountResult} with the counters, and the targets that were cut off
+     * @since 1.25
+     */
+    public CountResult getCounts(String url, long timeout, TimeUnit unit) {
+        return getCountsAsync(url, timeout, unit).join();
+    }
+
+    /**
+     * Retrieves the counters for the given URL without blocking the caller.
+     * <p>
+     * The returned {@link CompletableFuture} is completed when all Shariff targets have
+     * either returned their counter or failed. Failed targets are logged and missing in
+     * the result. Targets with an open {@link CircuitBreaker} and disabled targets are
+     * skipped, and are also missing in the result.
+     *
+     * @param url
+     *            URL to get the counters for
+     * @return {@link CompletableFuture} of the {@link CountResult}
+     * @since 1.25
+     */
+    public CompletableFuture<CountResult> getCountsAsync(String url) {
+        return collect(url, null, -1L);
+    }
+
+    /**
+     * Retrieves the counters of many URLs at once, without blocking the caller.
+     * Duplicate URLs are only fetched once.
+     *
+     * @param urls
+     *            URLs to get the counters for
+     * @return {@link CompletableFuture} of a map containing the URL as key, and the
+     *         {@link CountResult} as value. The order of the URLs is kept.
+     * @see #getCountsAsync(String)
+     * @since 1.25
+     */
+    public CompletableFuture<Map<String, CountResult>> getCountsAsync(Collection<String> urls) {
+        Map<String, CompletableFuture<CountResult>> futures = new LinkedHashMap<>();
+        for (String url : urls) {
+            futures.computeIfAbsent(url, this::getCountsAsync);
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    Map<String, CountResult> result = new LinkedHashMap<>();
+                    futures.forEach((url, future) -> result.put(url, future.join()));
+                    return result;
+                });
+    }
+
+    /**
+     * Retrieves the counters of the given targets for the given URL without blocking the
+     * caller.
+     *
+     * @param url
+     *            URL to get the counters for
+     * @param names
+     *            Target names, as returned by {@link Target#getName()}. Unknown names
+     *            will be silently ignored.
+     * @return {@link CompletableFuture} of the {@link CountResult}
+     * @see #getCountsAsync(String)
+     * @since 1.25
+     */
+    public CompletableFuture<CountResult> getCountsAsync(String url, Collection<String> names) {
+        return collect(url, names, -1L);
+    }
+
+    /**
+     * Retrieves the counters for the given URL without blocking the caller, but waits no
+     * longer than the given timeout.
+     * <p>
+     * The returned {@link CompletableFuture} is completed when all Shariff targets have
+     * either returned their counter or failed, or when the timeout has elapsed. In the
+     * latter case, the result contains the counters of all targets that responded in
+     * time. Fetches of the other targets are cancelled, unless they are shared with other
+     * callers.
+     *
+     * @param url
+     *            URL to get the counters for
+     * @param timeout
+     *            Maximum time to wait for the counters
+     * @param unit
+     *            {@link TimeUnit} of timeout
+     * @return {@link CompletableFuture} of the {@link CountResult}
+     * @since 1.25
+     */
+    public CompletableFuture<CountResult> getCountsAsync(String url, long timeout, TimeUnit unit) {
+        return collect(url, null, Math.max(unit.toMillis(timeout), 0L));
+    }
+
+    /**
+     * Retrieves the counters of the given targets for the given URL without blocking the
+     * caller, but waits no longer than the given timeout.
+     *
+     * @param url
+     *            URL to get the counters for
+     * @param names
+     *            Target names, as returned by {@link Target#getName()}. Unknown names
+     *            will be silently ignored.
+     * @param timeout
+     *            Maximum time to wait for the counters
+     * @param unit
+     *            {@link TimeUnit} of timeout
+     * @return {@link CompletableFuture} of the {@link CountResult}
+     * @see #getCountsAsync(String, long, TimeUnit)
+     * @since 1.25
+     */
+    public CompletableFuture<CountResult> getCountsAsync(String url, Collection<String> names,
+            long timeout, TimeUnit unit) {
+        return collect(url, names, Math.max(unit.toMillis(timeout), 0L));
+    }
+
+    /**
+     * Fetches the counters of all URLs of a sitemap or URL list, e.g. for warming up a
+     * cache after a deployment.
+     *
+     * @param source
+     *            {@link Reader} of the sitemap or URL list, see {@link UrlListReader}
+     * @param concurrency
+     *            Maximum number of URLs that are fetched at the same time
+     * @return Number of URLs that have been fetched
+     * @see #warmUp(Reader, int, Function)
+     * @since 1.25
+     */
+    public int warmUp(Reader source, int concurrency) throws IOException, InterruptedException {
+        return warmUp(source, concurrency, this::getCountsAsync);
+    }
+
+    /**
+     * Passes all URLs of a sitemap or URL list to the given fetcher, e.g. for filling a
+     * cache after a deployment.
+     * <p>
+     * The source is streamed, and no more than the given number of URLs are fetched at
+     * the same time. Before an URL is passed to the fetcher, this method waits until the
+     * {@link RateLimiter} of every target would permit a request, so the warm-up does not
+     * exhaust the quota of a target. Failed fetches are logged and ignored.
+     *
+     * @param source
+     *            {@link Reader} of the sitemap or URL list, see {@link UrlListReader}. It
+     *            is closed when all URLs have been read.
+     * @param concurrency
+     *            Maximum number of URLs that are fetched at the same time
+     * @param fetcher
+     *            Fetches the counters of an URL, without blocking the caller
+     * @return Number of URLs that have been fetched
+     * @since 1.25
+     */
+    public int warmUp(Reader source, int concurrency, Function<String, ? extends CompletionStage<?>> fetcher)
+                throws IOException, InterruptedException {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+
+        Semaphore warmupPermits = new Semaphore(concurrency);
+        int count = 0;
+
+        try (UrlListReader reader = new UrlListReader(source)) {
+            String url;
+            while ((url = reader.next()) != null) {
+                String current = url;
+                warmupPermits.acquire();
+                awaitRateLimiters();
+                try {
+                    fetcher.apply(current).whenComplete((result, ex) -> {
+                        warmupPermits.release();
+                        if (ex != null) {
+                            LOG.warn("Warm-up of {} failed", current, ex);
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    warmupPermits.release();
+                    LOG.warn("Warm-up of {} failed", current, ex);
+                }
+                count++;
+            }
+        }
+
+        // Wait for the pending fetches
+        warmupPermits.acquire(concurrency);
+        warmupPermits.release(concurrency);
+        return count;
+    }
+
+    /**
+     * Waits until the {@link RateLimiter} of every target would permit a request.
+     */
+    private void awaitRateLimiters() throws InterruptedException {
+        long delay;
+        while ((delay = targets.stream()
+                    .filter(HttpTarget.class::isInstance)
+                    .map(target -> ((HttpTarget) target).getRateLimiter())
+                    .filter(Objects::nonNull)
+                    .mapToLong(RateLimiter::getDelayNanos)
+                    .max()
+                    .orElse(0L)) > 0L) {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+    }
+
+    /**
+     * Fetches the counters of the targets and collects the results.
+     *
+     * @param url
+     *            URL to get the counters for
+     * @param names
+     *            Target names, or {@code null} for all targets
+     * @param timeoutMs
+     *            Maximum time to wait for the counters, in ms. Negative means no timeout.
+     * @return {@link CompletableFuture} of the {@link CountResult}
+     */
+    private CompletableFuture<CountResult> collect(String url, Collection<String> names, long timeoutMs) {
+        List<Target> list = getTargets().stream()
+            .filter(target -> names == null || names.contains(target.getName()))
+            .filter(target -> !disabled.contains(target.getName()))
             .collect(toList());
+        List<FetchKey> keys = list.stream()
+            .map(target -> new FetchKey(target.getName(), url))
+            .collect(toList());
+        List<Fetch> fetches = new ArrayList<>(list.size());
+        for (int ix = 0; ix < list.size(); ix++) {
+            fetches.add(fetch(list.get(ix), keys.get(ix)));
+        }
 
-        Map<String, Integer> result = new HashMap<>();
-        for (int ix = 0; ix < futures.size(); ix++) {
-            Target target = getTargets().get(ix);
-            try {
-                result.put(target.getName(), futures.get(ix).get());
-            } catch (ExecutionException ex) {
-                LOG.trace("Caught exception from {}", target.getName(), ex);
-                LOG.warn("{} @ {}", target.getName(), url, ex.getCause());
-            } catch (Exception ex) {
-                LOG.warn("{} @ {}", target.getName(), url, ex);
+        CompletableFuture<?> done = CompletableFuture.allOf(fetches.stream()
+            .map(fetch -> fetch.future)
+            .toArray(CompletableFuture<?>[]::new));
+
+        if (timeoutMs >= 0L) {
+            CompletableFuture<Void> deadline = new CompletableFuture<>();
+            ScheduledFuture<?> timer = scheduler.schedule(
+                () -> deadline.complete(null), timeoutMs, TimeUnit.MILLISECONDS);
+            done.whenComplete((ignored, failure) -> timer.cancel(false));
+            done = CompletableFuture.anyOf(done, deadline);
+        }
+
+        return done.handle((ignored, failure) -> {
+            CountVector result = new CountVector(nameTable);
+            Set<String> timedOut = new HashSet<>();
+            for (int ix = 0; ix < fetches.size(); ix++) {
+                Target target = list.get(ix);
+                Fetch fetch = fetches.get(ix);
+
+                if (!fetch.future.isDone()) {
+                    timedOut.add(target.getName());
+                    abandon(keys.get(ix), fetch);
+                    continue;
+                }
+
+                try {
+                    Integer count = fetch.future.join();
+                    if (fetch.skipped) {
+                        LOG.debug("{} @ {}: skipped, circuit breaker is open", target.getName(), url);
+                    } else {
+                        result.set(target.getName(), count);
+                    }
+                } catch (CompletionException ex) {
+                    LOG.trace("Caught exception from {}", target.getName(), ex);
+                    if (ex.getCause() instanceof ThrottledException) {
+                        LOG.debug("{} @ {}: skipped, target is throttled", target.getName(), url);
+                    } else if (ex.getCause() instanceof IOException) {
+                        // Expected when a target is unavailable, so spare the stack trace
+                        LOG.warn("{} @ {}: {}", target.getName(), url, ex.getCause().toString());
+                    } else {
+                        LOG.warn("{} @ {}", target.getName(), url, ex.getCause());
+                    }
+                } catch (Exception ex) {
+                    LOG.warn("{} @ {}", target.getName(), url, ex);
+                }
             }
+
+            if (!timedOut.isEmpty()) {
+                LOG.debug("Deadline exceeded @ {}, cut off: {}", url, timedOut);
+            }
+
+            return new CountResult(result, timedOut);
+        });
+    }
+
+    /**
+     * Fetches the counter of a single target. If a fetch of the same target and URL is
+     * already in progress, it is shared instead of starting another fetch. If the
+     * {@link CircuitBreaker} of the target is open, the fetch is skipped.
+     *
+     * @param target
+     *            {@link Target} to fetch the counter from
+     * @param key
+     *            {@link FetchKey} of the target and the URL
+     * @return {@link Fetch} that is in progress
+     */
+    private Fetch fetch(Target target, FetchKey key) {
+        Fetch created = new Fetch();
+
+        Fetch fetch = inFlight.compute(key, (k, running) -> {
+            Fetch result = running != null ? running : created;
+            result.waiters++;
+            return result;
+        });
+
+        if (fetch != created) {
+            coalesced.increment();
+            return fetch;
         }
 
-        return result;
+        CircuitBreaker breaker = breakers.get(key.target);
+        if (!breaker.tryAcquire()) {
+            inFlight.remove(key, fetch);
+            fetch.skipped = true;
+            fetch.future.complete(null);
+            return fetch;
+        }
+
+        try {
+            fetch.stage = target.countAsync(key.url, timedExecutor);
+            fetch.stage.whenComplete((count, ex) -> {
+                inFlight.remove(key, fetch);
+                if (ex != null) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                                    ? ex.getCause() : ex;
+                    if (cause instanceof CancellationException
+                                    || cause instanceof ThrottledException) {
+                        breaker.onCancel();
+                    } else {
+                        breaker.onFailure(cause);
+                    }
+                    fetch.future.completeExceptionally(ex);
+                } else {
+                    breaker.onSuccess();
+                    fetch.future.complete(count);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.remove(key, fetch);
+            breaker.onFailure(ex);
+            fetch.future.completeExceptionally(ex);
+        }
+
+        return fetch;
     }
 
     /**
-     * A small tool that shows the counters for the given URL.
+     * Executes a task using the backend's executor. If there is a
+     * {@link MetricsListener}, the time the task is waiting for a free thread is
+     * reported to it.
+     * <p>
+     * If virtual threads are used, the task is queued until the number of concurrent
+     * fetches permits it to run, and only then a virtual thread is started for it.
+     *
+     * @param task
+     *            Task to be executed
+     */
+    private void execute(Runnable task) {
+        MetricsListener listener = metricsListener;
+        Executor target = permits != null ? permits : executor;
+
+        if (listener == null) {
+            target.execute(task);
+            return;
+        }
+
+        long queued = System.nanoTime();
+        target.execute(() -> {
+            listener.onQueueWait(System.nanoTime() - queued);
+            task.run();
+        });
+    }
+
+    /**
+     * Abandons a {@link Fetch} that is still in progress. If there are no other callers
+     * waiting for the result, the fetch is cancelled.
+     *
+     * @param key
+     *            {@link FetchKey} of the fetch
+     * @param fetch
+     *            {@link Fetch} to be abandoned
+     */
+    private void abandon(FetchKey key, Fetch fetch) {
+        AtomicBoolean unused = new AtomicBoolean(false);
+
+        inFlight.computeIfPresent(key, (k, running) -> {
+            if (running != fetch || --running.waiters > 0) {
+                return running;
+            }
+            unused.set(true);
+            return null;
+        });
+
+        if (unused.get()) {
+            fetch.future.cancel(false);
+            CompletionStage<Integer> stage = fetch.stage;
+            if (stage != null) {
+                stage.toCompletableFuture().cancel(false);
+            }
+        }
+    }
+
+    /**
+     * A small tool that shows the counters for the given URL, or for all URLs of a
+     * sitemap or URL list.
      */
     public static void main(String... args) {
-        if (args.length < 1) {
+        if (args.length < 1 || ("--warmup".equals(args[0]) && args.length < 2)) {
             System.err.println("Usage: ShariffBackend <url> ...");
+            System.err.println("       ShariffBackend --warmup <sitemap or url list> [concurrency]");
             System.err.println("Facebook: use system properties 'facebook.id' and 'facebook.secret'");
             return;
         }
@@ -175,6 +892,23 @@ public class ShariffBackend {
         Facebook fb = backend.getTarget(Facebook.class);
         fb.setSecret(System.getProperty("facebook.id"), System.getProperty("facebook.secret"));
 
+        if ("--warmup".equals(args[0])) {
+            int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+            try {
+                long start = System.currentTimeMillis();
+                int count = backend.warmUp(UrlListReader.open(args[1]), concurrency,
+                        url -> backend.getCountsAsync(url).thenAccept(result ->
+                                System.out.println(url + " " + result.getCounts())));
+                System.err.printf("%d urls fetched in %d ms%n", count,
+                        System.currentTimeMillis() - start);
+            } catch (IOException ex) {
+                System.err.println("Could not read " + args[1] + ": " + ex.getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
         for (String url : args) {
             System.out.println(url);
 
@@ -185,4 +919,117 @@ public class ShariffBackend {
         }
     }
 
+    /**
+     * An {@link Executor} that limits the number of concurrent fetches on virtual
+     * threads. Tasks exceeding the limit are queued, and a thread is started only when a
+     * task is permitted to run, so a burst of fetches does not park a virtual thread for
+     * each of them. The limit can be changed while tasks are running.
+     */
+    static class ConcurrencyLimit implements Executor {
+        private final Executor executor;
+        private final Queue<Runnable> pending = new ArrayDeque<>();
+        private int limit;
+        private int running;
+
+        public ConcurrencyLimit(Executor executor, int limit) {
+            this.executor = executor;
+            this.limit = limit;
+        }
+
+        public synchronized int getLimit() {
+            return limit;
+        }
+
+        public void setLimit(int newLimit) {
+            synchronized (this) {
+                limit = newLimit;
+            }
+            dispatch();
+        }
+
+        public synchronized int getRunning() {
+            return running;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                pending.add(task);
+            }
+            dispatch();
+        }
+
+        /**
+         * Starts queued tasks as long as the limit permits. When a task is completed,
+         * the next queued task is started.
+         */
+        private void dispatch() {
+            while (true) {
+                Runnable task;
+                synchronized (this) {
+                    if (running >= limit || pending.isEmpty()) {
+                        return;
+                    }
+                    task = pending.poll();
+                    running++;
+                }
+
+                try {
+                    executor.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            synchronized (this) {
+                                running--;
+                            }
+                            dispatch();
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    synchronized (this) {
+                        running--;
+                    }
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * A fetch that is in progress.
+     */
+    private static class Fetch {
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private volatile CompletionStage<Integer> stage;
+        private volatile boolean skipped;
+        private int waiters;
+    }
+
+    /**
+     * Key of a fetch that is in progress.
+     */
+    private static class FetchKey {
+        private final String target;
+        private final String url;
+
+        public FetchKey(String target, String url) {
+            this.target = target;
+            this.url = url;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FetchKey)) {
+                return false;
+            }
+            FetchKey other = (FetchKey) obj;
+            return target.equals(other.target) && url.equals(other.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(target, url);
+        }
+    }
+
 }
@@ -0,0 +1,101 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.List;
+
+/**
+ * Tunes a {@link ShariffServlet} at runtime, without a restart.
+ * <p>
+ * If the "control.jmx" init parameter is set, the servlet registers this MXBean as
+ * {@code org.shredzone.shariff:type=Control,instance=<servlet name>} at the platform
+ * MBean server.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public interface ShariffControlMXBean {
+
+    /**
+     * Returns the maximum number of cached urls.
+     */
+    int getCacheSize();
+
+    /**
+     * Changes the maximum number of cached urls. If the cache is shrunk, the least
+     * recently used urls are evicted. All other urls are kept.
+     *
+     * @param cacheSize
+     *            new maximum number of cached urls
+     * @throws UnsupportedOperationException
+     *             if the counters are cached off the heap
+     */
+    void setCacheSize(int cacheSize);
+
+    /**
+     * Returns the time counters are cached, in ms.
+     */
+    long getTimeToLiveMs();
+
+    /**
+     * Changes the time counters are cached. It is used for all counters fetched from
+     * now on. Counters that are already cached keep their expiry time. Services with an
+     * individual time to live are not affected.
+     *
+     * @param timeToLiveMs
+     *            new time to live, in ms
+     */
+    void setTimeToLiveMs(long timeToLiveMs);
+
+    /**
+     * Returns the number of fetcher threads.
+     */
+    int getThreads();
+
+    /**
+     * Changes the number of fetcher threads.
+     *
+     * @param threads
+     *            new number of fetcher threads
+     */
+    void setThreads(int threads);
+
+    /**
+     * Returns the names of all available services.
+     */
+    List<String> getTargets();
+
+    /**
+     * Returns the names of all services that are currently disabled.
+     */
+    List<String> getDisabledTargets();
+
+    /**
+     * Enables a service that was disabled.
+     *
+     * @param name
+     *            service name
+     */
+    void enableTarget(String name);
+
+    /**
+     * Disables a service, e.g. while it is throttling all requests. Its counters are
+     * handled like those of a service that failed to respond, so they are missing or
+     * are taken from the cache if "cache.useOnError" is set.
+     *
+     * @param name
+     *            service name
+     */
+    void disableTarget(String name);
+
+}
@@ -13,23 +13,52 @@
 package org.shredzone.shariff;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.shredzone.shariff.CountVector.NameTable;
 import org.shredzone.shariff.api.HttpTarget;
+import org.shredzone.shariff.api.Target;
+import org.shredzone.shariff.api.TokenBucketRateLimiter;
 import org.shredzone.shariff.target.Facebook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +66,10 @@ import org.slf4j.LoggerFactory;
 /**
  * A servlet that reads the "url" parameter and returns a JSON object containing the
  * target counters.
+ * <p>
+ * The counters of several URLs can be requested at once, either by passing more than
+ * one "url" parameter, or by posting a JSON array of URLs. The result is a JSON object
+ * containing the URL as key, and the counters of that URL as value.
  *
  * @author Richard "Shred" Körber
  */
@@ -44,18 +77,52 @@ public class ShariffServlet extends HttpServlet {
     private static final long serialVersionUID = 3246833254367746537L;
     private static final Logger LOG = LoggerFactory.getLogger(ShariffServlet.class);
 
-    private transient ShariffBackend backend = null;
-    private transient SimpleCache<String, Map<String, Integer>> cache = null;
+    private transient volatile ShariffBackend backend = null;
+    private transient volatile ConcurrentCache<String, CachedCounts> cache = null;
+    private transient volatile ScheduledExecutorService snapshotScheduler = null;
+    private transient volatile NameTable nameTable = null;
+    private transient volatile RefreshAheadScheduler<String, CachedCounts> refreshAhead = null;
+    private transient volatile ScheduledExecutorService refreshAheadExecutor = null;
+    private transient volatile ExecutorService refreshExecutor = null;
+    private transient volatile Thread warmupThread = null;
+    private transient volatile JmxMetricsListener metrics = null;
+    private transient volatile ObjectName controlName = null;
 
     protected Pattern hostPattern = null;
     protected int cacheSize = 1000;
-    protected long timeToLiveMs = 60000L;
+    protected long cacheOffHeapBytes = 0L;
+    protected volatile long timeToLiveMs = 60000L;
+    protected String snapshotFile = null;
+    protected long snapshotIntervalMs = 0L;
+    protected boolean cacheGzip = false;
+    protected boolean httpCaching = true;
+    protected long staleIfErrorMs = 86400000L;
+    protected int batchMaxUrls = 50;
+    protected String warmupSource = null;
+    protected int warmupConcurrency = 4;
     protected String[] targets = null;
     protected Integer threads = null;
+    protected boolean virtualThreads = false;
     protected String fbClientId;
     protected String fbClientSecret;
     protected String organisation;
     protected boolean useCacheOnError;
+    protected long staleWhileRevalidateMs = 0L;
+    protected long partialTimeToLiveMs = 5000L;
+    protected long refreshAheadMs = 0L;
+    protected double refreshAheadRate = 10.0;
+    protected long deadlineMs = 0L;
+    protected Integer connectTimeoutMs = null;
+    protected Integer readTimeoutMs = null;
+    protected Map<String, Long> targetTimeToLiveMs = new HashMap<>();
+    protected Integer breakerFailureThreshold = null;
+    protected Long breakerOpenMs = null;
+    protected Long breakerRateLimitOpenMs = null;
+    protected Double fbRateLimit = null;
+    protected int fbBatchSize = 0;
+    protected long fbBatchWindowMs = 20L;
+    protected boolean metricsJmx = false;
+    protected boolean controlJmx = false;
 
     /**
      * Generates a {@link ShariffBackend}.
@@ -65,20 +132,49 @@ public class ShariffServlet extends HttpServlet {
     protected ShariffBackend createBackend() {
         ShariffBackend instance = new ShariffBackend(
                         targets != null ? Arrays.asList(targets) : null,
-                        threads);
+                        threads, virtualThreads);
 
         Facebook fb = instance.getTarget(Facebook.class);
         if (fb != null && fbClientId != null && fbClientSecret != null) {
             fb.setSecret(fbClientId, fbClientSecret);
         }
-
-        if (organisation != null) {
-            instance.getTargets().stream()
-                    .filter(HttpTarget.class::isInstance)
-                    .map(HttpTarget.class::cast)
-                    .forEach(it -> it.setOrganisation(organisation));
+        if (fb != null && fbRateLimit != null) {
+            fb.setRateLimiter(fbRateLimit > 0.0
+                    ? new TokenBucketRateLimiter(fbRateLimit, (int) Math.ceil(fbRateLimit))
+                    : null);
+        }
+        if (fb != null && fbBatchSize > 1) {
+            fb.setBatching(Math.min(fbBatchSize, Facebook.MAX_BATCH_SIZE),
+                    fbBatchWindowMs, TimeUnit.MILLISECONDS);
         }
 
+        instance.getTargets().stream()
+                .filter(HttpTarget.class::isInstance)
+                .map(HttpTarget.class::cast)
+                .forEach(it -> {
+                    if (organisation != null) {
+                        it.setOrganisation(organisation);
+                    }
+                    if (connectTimeoutMs != null) {
+                        it.setConnectTimeout(connectTimeoutMs);
+                    }
+                    if (readTimeoutMs != null) {
+                        it.setReadTimeout(readTimeoutMs);
+                    }
+                });
+
+        instance.getCircuitBreakers().forEach(it -> {
+            if (breakerFailureThreshold != null) {
+                it.setFailureThreshold(breakerFailureThreshold);
+            }
+            if (breakerOpenMs != null) {
+                it.setOpenDuration(breakerOpenMs, TimeUnit.MILLISECONDS);
+            }
+            if (breakerRateLimitOpenMs != null) {
+                it.setRateLimitOpenDuration(breakerRateLimitOpenMs, TimeUnit.MILLISECONDS);
+            }
+        });
+
         return instance;
     }
 
@@ -91,12 +187,20 @@ public class ShariffServlet extends HttpServlet {
      * @return {@link ShariffBackend} instance.
      */
     protected final ShariffBackend getBackend() {
-        synchronized (this) {
-            if (backend == null) {
-                backend = createBackend();
+        ShariffBackend result = backend;
+        if (result == null) {
+            synchronized (this) {
+                result = backend;
+                if (result == null) {
+                    result = createBackend();
+                    if (metrics != null) {
+                        result.setMetricsListener(metrics);
+                    }
+                    backend = result;
+                }
             }
-            return backend;
         }
+        return result;
     }
 
     /**
@@ -113,42 +217,444 @@ public class ShariffServlet extends HttpServlet {
     }
 
     /**
-     * Returns the counters for the given url. The result is cached.
+     * Returns the counters of the given targets for the given url, waiting no longer than
+     * the configured deadline. The result is not cached.
      * <p>
-     * The default implementation uses simple in-memory caching. Override for own caching
+     * If all targets are requested and no deadline is configured, the default
+     * implementation uses {@link #getCounts(String)}. Override for using own counter
      * implementations.
      *
      * @param url
      *            URL to get the counters of
-     * @return Map of counters
+     * @param names
+     *            Names of the targets to get the counters of, or {@code null} for all
+     *            targets
+     * @return {@link CountResult}
+     * @since 1.25
+     */
+    protected CountResult getCountResult(String url, Collection<String> names) {
+        if (names == null && deadlineMs <= 0L) {
+            return new CountResult(getCounts(url), Collections.emptySet());
+        }
+        return getCountsAsync(url, names).join();
+    }
+
+    /**
+     * Returns the counters of the given targets for the given url, without blocking the
+     * caller. The result is not cached. If a deadline is configured, the counters of
+     * targets that did not respond in time are missing.
+     * <p>
+     * Override for using own counter implementations.
+     *
+     * @param url
+     *            URL to get the counters of
+     * @param names
+     *            Names of the targets to get the counters of, or {@code null} for all
+     *            targets
+     * @return {@link CompletableFuture} of the {@link CountResult}
+     * @since 1.25
+     */
+    protected CompletableFuture<CountResult> getCountsAsync(String url, Collection<String> names) {
+        ShariffBackend backend = getBackend();
+        if (deadlineMs > 0L) {
+            return names != null
+                    ? backend.getCountsAsync(url, names, deadlineMs, TimeUnit.MILLISECONDS)
+                    : backend.getCountsAsync(url, deadlineMs, TimeUnit.MILLISECONDS);
+        }
+        return names != null ? backend.getCountsAsync(url, names) : backend.getCountsAsync(url);
+    }
+
+    /**
+     * Returns the time to live of the counters of the given target.
+     * <p>
+     * The default implementation returns the "cache.timeToLiveMs.&lt;target&gt;" init
+     * parameter, or "cache.timeToLiveMs" if not set.
+     *
+     * @param name
+     *            Target name
+     * @return Time to live, in ms
+     * @since 1.25
+     */
+    protected long getTimeToLive(String name) {
+        return targetTimeToLiveMs.getOrDefault(name, timeToLiveMs);
+    }
+
+    /**
+     * Returns the counters for the given url. The result is cached.
+     * <p>
+     * The default implementation uses simple in-memory caching. Concurrent requests for
+     * the same url wait for a single fetch, while requests for other urls are not
+     * blocked. Every target has its own time to live, and only the expired counters are
+     * fetched again. Counters that are missing because of the deadline are only kept for
+     * a short time. Override for own caching implementations.
+     *
+     * @param url
+     *            URL to get the counters of
+     * @return Map of counters. It can be modified without changing the cached counters.
      */
     protected Map<String, Integer> getCountsCached(String url) {
-        synchronized (this) {
-            if (cache == null) {
-                cache = new SimpleCache<>(cacheSize, timeToLiveMs, TimeUnit.MILLISECONDS);
+        return getCache().fetch(url, this::fetchFailSafe).getCounts();
+    }
+
+    /**
+     * Returns the counters for the given url, without blocking the caller. The result is
+     * cached. On a cache hit, the returned {@link CompletableFuture} is already
+     * completed.
+     * <p>
+     * The default implementation uses the same in-memory cache as
+     * {@link #getCountsCached(String)}. Override for own caching implementations.
+     *
+     * @param url
+     *            URL to get the counters of
+     * @return {@link CompletableFuture} of the map of counters
+     * @since 1.25
+     */
+    protected CompletableFuture<Map<String, Integer>> getCountsCachedAsync(String url) {
+        return getCache().fetchAsync(url, (key, previous) -> fetchFailSafeAsync(key, previous, 0L))
+                .thenApply(CachedCounts::getCounts);
+    }
+
+    /**
+     * Returns the counters of many URLs, without blocking the caller. The results are
+     * cached.
+     * <p>
+     * The default implementation uses {@link #getCountsCachedAsync(String)} for each URL,
+     * so cache hits are answered from the cache, and only the misses are fetched
+     * concurrently.
+     *
+     * @param urls
+     *            URLs to get the counters of. Duplicates are only fetched once.
+     * @return {@link CompletableFuture} of a map containing the URL as key, and the map
+     *         of counters as value. The order of the URLs is kept.
+     * @since 1.25
+     */
+    protected CompletableFuture<Map<String, Map<String, Integer>>> getCountsCachedAsync(Collection<String> urls) {
+        Map<String, CompletableFuture<Map<String, Integer>>> futures = new LinkedHashMap<>();
+        for (String url : urls) {
+            futures.computeIfAbsent(url, this::getCountsCachedAsync);
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+                    futures.forEach((url, future) -> result.put(url, future.join()));
+                    return result;
+                });
+    }
+
+    /**
+     * Gets the {@link ConcurrentCache} instance. If there is no instance yet, it is
+     * lazily created.
+     */
+    private ConcurrentCache<String, CachedCounts> getCache() {
+        ConcurrentCache<String, CachedCounts> result = cache;
+        if (result == null) {
+            synchronized (this) {
+                result = cache;
+                if (result == null) {
+                    result = new ConcurrentCache<String, CachedCounts>(createCacheStore(), timeToLiveMs, TimeUnit.MILLISECONDS) {
+                        @Override
+                        protected long getTimeToLive(CachedCounts value) {
+                            // Without any counters, there is no expiry time of their own
+                            long expiry = value.getExpiry();
+                            return expiry > 0L
+                                    ? expiry - System.currentTimeMillis()
+                                    : super.getTimeToLive(value);
+                        }
+                    };
+                    if (metrics != null) {
+                        result.setMetricsListener(metrics);
+                    }
+                    if (staleWhileRevalidateMs > 0L) {
+                        ExecutorService executor = createRefreshExecutor();
+                        result.setStaleWhileRevalidate(staleWhileRevalidateMs,
+                                TimeUnit.MILLISECONDS, executor);
+                        refreshExecutor = executor;
+                    }
+                    if (snapshotFile != null) {
+                        loadSnapshot(result);
+                    }
+                    if (refreshAheadMs > 0L) {
+                        startRefreshAhead(result);
+                    }
+                    cache = result;
+                }
             }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link RefreshAheadScheduler} that refreshes popular counters before
+     * they expire. Its counters give an insight into the refreshes.
+     *
+     * @return {@link RefreshAheadScheduler}, or {@code null} if "cache.refreshAheadMs"
+     *         is not set or the cache has not been used yet
+     * @since 1.25
+     */
+    protected RefreshAheadScheduler<String, CachedCounts> getRefreshAheadScheduler() {
+        return refreshAhead;
+    }
+
+    /**
+     * Returns the {@link JmxMetricsListener} that collects the metrics of the cache, the
+     * backend and the targets.
+     *
+     * @return {@link JmxMetricsListener}, or {@code null} if "metrics.jmx" is not set
+     * @since 1.25
+     */
+    protected JmxMetricsListener getMetricsListener() {
+        return metrics;
+    }
+
+    /**
+     * Starts refreshing popular counters of the given cache shortly before they expire.
+     * The scheduler runs twice per "cache.refreshAheadMs", and starts no more than
+     * "cache.refreshAheadRate" refreshes per second.
+     *
+     * @param target
+     *            {@link ConcurrentCache} to refresh
+     */
+    private void startRefreshAhead(ConcurrentCache<String, CachedCounts> target) {
+        long intervalMs = Math.max(refreshAheadMs / 2L, 100L);
+        int maxRefreshes = (int) Math.max(Math.round(refreshAheadRate * intervalMs / 1000.0), 1L);
+
+        ThreadGroup group = new ThreadGroup("shariff-refresh-ahead");
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(group, runnable);
+            t.setDaemon(true);
+            return t;
+        });
+
+        RefreshAheadScheduler<String, CachedCounts> scheduler = new RefreshAheadScheduler<>(
+                target, refreshAheadMs, TimeUnit.MILLISECONDS, maxRefreshes,
+                (key, previous) -> fetchFailSafeAsync(key, previous, refreshAheadMs));
+        scheduler.start(executor, intervalMs, TimeUnit.MILLISECONDS);
+
+        refreshAheadExecutor = executor;
+        refreshAhead = scheduler;
+    }
+
+    /**
+     * Restores the cache from the snapshot file. Entries with counters that are too old
+     * to be served are skipped.
+     *
+     * @param target
+     *            {@link ConcurrentCache} to restore the entries to
+     */
+    private void loadSnapshot(ConcurrentCache<String, CachedCounts> target) {
+        Path file = Paths.get(snapshotFile);
+        if (!Files.exists(file)) {
+            LOG.info("No cache snapshot found at {}", file);
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            int count = new CacheSnapshot(file).read(target, start - staleWhileRevalidateMs);
+            LOG.info("Restored {} cache entries from {} in {} ms", count, file,
+                    System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException ex) {
+            LOG.warn("Could not restore cache snapshot {}", file, ex);
+        }
+    }
+
+    /**
+     * Writes the current cache to the snapshot file. Nothing happens if there is no
+     * cache yet.
+     */
+    private synchronized void saveSnapshot() {
+        ConcurrentCache<String, CachedCounts> current = cache;
+        if (current == null) {
+            return;
+        }
+
+        Path file = Paths.get(snapshotFile);
+        try {
+            long start = System.currentTimeMillis();
+            List<String> names = getBackend().getTargets().stream()
+                    .map(Target::getName)
+                    .collect(toList());
+            int count = new CacheSnapshot(file).write(current, names);
+            LOG.debug("Saved {} cache entries to {} in {} ms", count, file,
+                    System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException ex) {
+            LOG.warn("Could not save cache snapshot {}", file, ex);
+        }
+    }
+
+    /**
+     * Creates the {@link CacheStore} of the cache. If "cache.offHeapBytes" is set, the
+     * counters are stored off the heap, and the cache is limited by that number of bytes.
+     * Otherwise the cache is limited by "cache.size" entries.
+     */
+    private CacheStore<String, CachedCounts> createCacheStore() {
+        if (cacheOffHeapBytes > 0L) {
+            List<String> names = getBackend().getTargets().stream()
+                    .map(Target::getName)
+                    .collect(toList());
+            return new OffHeapCacheStore<>(cacheOffHeapBytes, new CachedCountsCodec(names));
+        }
+        return new HeapCacheStore<>(cacheSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates the {@link ExecutorService} that refreshes stale cache entries in
+     * background. It uses as many threads as the {@link ShariffBackend}, as more
+     * concurrent refreshes would only wait for a backend thread.
+     */
+    private ExecutorService createRefreshExecutor() {
+        ThreadGroup group = new ThreadGroup("shariff-refresh");
+        return Executors.newFixedThreadPool(
+                threads != null ? threads : Math.max(getBackend().getTargets().size(), 1),
+                runnable -> {
+                    Thread t = new Thread(group, runnable);
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
 
-            return cache.fetch(url, this::fetchFailSafe);
+    /**
+     * Returns the names of the targets that need to be fetched, because their counters
+     * are expired or missing.
+     *
+     * @param previous
+     *            Previously cached counters, or {@code null} if not present
+     * @param aheadMs
+     *            Counters expiring within this time are also fetched
+     * @return Names of the targets to be fetched, or {@code null} if all targets need to
+     *         be fetched
+     */
+    private Collection<String> getExpiredTargets(CachedCounts previous, long aheadMs) {
+        if (previous == null) {
+            return null;
         }
+
+        List<String> all = getBackend().getTargets().stream()
+                .map(Target::getName)
+                .collect(toList());
+        Set<String> expired = previous.getExpired(all, System.currentTimeMillis() + aheadMs);
+        return expired.containsAll(all) ? null : expired;
     }
 
     /**
-     * Gets the counters for the given url, and extends missing counters with those from a
+     * Gets the expired counters for the given url, and merges them with the counters of a
      * previous result.
      *
      * @param url
      *            URL to get the counters of
      * @param previous
-     *            Previously cached counter values, or {@code null} if not present
-     * @return Map of counters
+     *            Previously cached counters, or {@code null} if not present
+     * @return {@link CachedCounts}
      */
-    private Map<String, Integer> fetchFailSafe(String url, Map<String, Integer> previous) {
-        Map<String, Integer> result = getCounts(url);
+    private CachedCounts fetchFailSafe(String url, CachedCounts previous) {
+        Collection<String> names = getExpiredTargets(previous, 0L);
+        return mergeFailSafe(getCountResult(url, names), names, previous);
+    }
+
+    /**
+     * Gets the expired counters for the given url without blocking the caller, and
+     * merges them with the counters of a previous result.
+     *
+     * @param url
+     *            URL to get the counters of
+     * @param previous
+     *            Previously cached counters, or {@code null} if not present
+     * @param aheadMs
+     *            Counters expiring within this time are also fetched
+     * @return {@link CompletableFuture} of the {@link CachedCounts}
+     */
+    private CompletableFuture<CachedCounts> fetchFailSafeAsync(String url, CachedCounts previous, long aheadMs) {
+        Collection<String> names = getExpiredTargets(previous, aheadMs);
+        return getCountsAsync(url, names)
+                .thenApply(result -> mergeFailSafe(result, names, previous));
+    }
+
+    /**
+     * Merges fetched counters with the unexpired counters of a previous result. Missing
+     * counters are extended with those from the previous result, if enabled. Counters of
+     * targets that are currently throttled are always extended.
+     *
+     * @param result
+     *            Counters that have just been fetched
+     * @param names
+     *            Names of the targets that have been fetched, or {@code null} for all
+     *            targets
+     * @param previous
+     *            Previously cached counters, or {@code null} if not present
+     * @return {@link CachedCounts} of the merged counters
+     */
+    private CachedCounts mergeFailSafe(CountResult result, Collection<String> names, CachedCounts previous) {
+        ShariffBackend backend = getBackend();
+        long now = System.currentTimeMillis();
+
+        Set<String> fetched = new HashSet<>();
+        if (names != null) {
+            fetched.addAll(names);
+        } else {
+            backend.getTargets().forEach(target -> fetched.add(target.getName()));
+            fetched.addAll(result.getCounts().keySet());
+            fetched.addAll(result.getTimedOut());
+            if (previous != null) {
+                fetched.addAll(previous.getNames());
+            }
+        }
+
+        NameTable table = getNameTable();
+        CachedCounts merged = new CachedCounts(table);
+
+        if (previous != null) {
+            previous.getNames().stream()
+                    .filter(name -> !fetched.contains(name))
+                    .forEach(name -> merged.put(name, previous.getCount(name), previous.getExpiry(name)));
+        }
+
+        for (String name : fetched) {
+            Integer count = result.getCounts().get(name);
+            long ttl = getTimeToLive(name);
+
+            if (count == null) {
+                boolean throttled = backend.isThrottled(name);
+                if (throttled || result.getTimedOut().contains(name)) {
+                    ttl = Math.min(partialTimeToLiveMs, ttl);
+                }
+                if (previous != null && (useCacheOnError || throttled)) {
+                    count = previous.getCount(name);
+                }
+            }
 
-        if (useCacheOnError && previous != null) {
-            previous.forEach(result::putIfAbsent);
+            merged.put(name, count, now + ttl);
         }
 
+        if (merged.getNameTable() != table) {
+            // Further names were added, so let the next entries share the extended table
+            nameTable = merged.getNameTable();
+        }
+
+        // Prepare the response once, instead of on every cache hit
+        merged.getCountVector().getJson();
+        if (cacheGzip) {
+            merged.getCountVector().getJsonGzip();
+        }
+        if (httpCaching) {
+            merged.getCountVector().getETag();
+        }
+
+        return merged;
+    }
+
+    /**
+     * Gets the {@link NameTable} that is shared by all cached counters. If there is no
+     * table yet, it is created from the names of the backend's targets.
+     */
+    private NameTable getNameTable() {
+        NameTable result = nameTable;
+        if (result == null) {
+            result = new NameTable(getBackend().getTargets().stream()
+                    .map(Target::getName)
+                    .collect(toList()));
+            nameTable = result;
+        }
         return result;
     }
 
@@ -196,6 +702,188 @@ public class ShariffServlet extends HttpServlet {
         return req.getParameter("url");
     }
 
+    /**
+     * Reads all URLs of a batch request from the "url" HTTP parameters.
+     * <p>
+     * Override for individual parameters or URL normalization.
+     *
+     * @param req
+     *            {@link HttpServletRequest} to read the URLs from
+     * @return URLs, or an empty collection if there were none passed in
+     * @since 1.25
+     */
+    protected Collection<String> getUrls(HttpServletRequest req) {
+        String[] urls = req.getParameterValues("url");
+        return urls != null ? Arrays.asList(urls) : Collections.emptyList();
+    }
+
+    /**
+     * Reads all URLs of a batch request from the request body, which is a JSON array of
+     * URL strings.
+     *
+     * @param req
+     *            {@link HttpServletRequest} to read the URLs from
+     * @return URLs, or {@code null} if the body is not a JSON array of strings
+     */
+    private Collection<String> readUrls(HttpServletRequest req) throws IOException {
+        // Reject large bodies early, allowing for up to 2 kB per URL
+        int maxLength = Math.max(batchMaxUrls, 1) * 2048;
+        if (req.getContentLength() > maxLength) {
+            return null;
+        }
+
+        StringBuilder body = new StringBuilder();
+        Reader reader = req.getReader();
+        char[] buffer = new char[1024];
+        int len;
+        while ((len = reader.read(buffer)) >= 0) {
+            body.append(buffer, 0, len);
+            if (body.length() > maxLength) {
+                return null;
+            }
+        }
+
+        try {
+            JSONArray array = new JSONArray(body.toString());
+            List<String> result = new ArrayList<>(array.length());
+            for (int ix = 0; ix < array.length(); ix++) {
+                result.add(array.getString(ix));
+            }
+            return result;
+        } catch (JSONException ex) {
+            LOG.debug("Invalid batch request body", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Starts restoring the cache snapshot in background, and saving it at the
+     * configured interval.
+     */
+    private void startSnapshots() {
+        ThreadGroup group = new ThreadGroup("shariff-snapshot");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(group, runnable);
+            t.setDaemon(true);
+            return t;
+        });
+
+        scheduler.execute(this::getCache);
+        if (snapshotIntervalMs > 0L) {
+            scheduler.scheduleWithFixedDelay(this::saveSnapshot,
+                    snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        snapshotScheduler = scheduler;
+    }
+
+    /**
+     * Starts filling the cache in background, with the counters of all URLs of the
+     * sitemap or URL list at "warmup.source".
+     */
+    private void startWarmUp() {
+        String source = warmupSource;
+        Thread thread = new Thread(new ThreadGroup("shariff-warmup"), () -> {
+            try {
+                long start = System.currentTimeMillis();
+                int count = getBackend().warmUp(UrlListReader.open(source), warmupConcurrency,
+                        this::getCountsCachedAsync);
+                LOG.info("Warmed up the cache with {} urls of {} in {} ms", count, source,
+                        System.currentTimeMillis() - start);
+            } catch (IOException | RuntimeException ex) {
+                LOG.warn("Could not warm up the cache from {}", source, ex);
+            } catch (InterruptedException ex) {
+                LOG.info("Cache warm-up from {} was interrupted", source);
+            }
+        }, "shariff-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        warmupThread = thread;
+    }
+
+    /**
+     * Creates a {@link JmxMetricsListener} and registers its MXBeans at the platform
+     * MBean server. The servlet name is used as instance name.
+     */
+    private void startMetrics() {
+        JmxMetricsListener listener = new JmxMetricsListener(getInstanceName());
+        try {
+            listener.register(ManagementFactory.getPlatformMBeanServer());
+        } catch (JMException ex) {
+            LOG.warn("Could not register the metrics MXBeans", ex);
+        }
+        metrics = listener;
+    }
+
+    /**
+     * Registers the {@link ShariffControlMXBean} of this servlet at the platform MBean
+     * server. The servlet name is used as instance name.
+     */
+    private void startControl() {
+        try {
+            ObjectName name = new ObjectName(JmxMetricsListener.DOMAIN + ":type=Control,instance="
+                    + ObjectName.quote(getInstanceName()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(new Control(), ShariffControlMXBean.class, true), name);
+            controlName = name;
+        } catch (JMException ex) {
+            LOG.warn("Could not register the control MXBean", ex);
+        }
+    }
+
+    /**
+     * Returns the name of this servlet instance, for the JMX object names.
+     */
+    private String getInstanceName() {
+        String name = getServletConfig().getServletName();
+        return name != null ? name : "shariff";
+    }
+
+    @Override
+    public void destroy() {
+        JmxMetricsListener listener = metrics;
+        if (listener != null) {
+            listener.unregister();
+        }
+        ObjectName control = controlName;
+        if (control != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(control);
+            } catch (JMException ex) {
+                LOG.debug("Could not unregister {}", control, ex);
+            }
+            controlName = null;
+        }
+        Thread warmup = warmupThread;
+        if (warmup != null) {
+            warmup.interrupt();
+            warmupThread = null;
+        }
+        RefreshAheadScheduler<String, CachedCounts> refresher = refreshAhead;
+        if (refresher != null) {
+            refresher.stop();
+            refreshAhead = null;
+        }
+        ScheduledExecutorService aheadExecutor = refreshAheadExecutor;
+        if (aheadExecutor != null) {
+            aheadExecutor.shutdownNow();
+            refreshAheadExecutor = null;
+        }
+        ExecutorService staleExecutor = refreshExecutor;
+        if (staleExecutor != null) {
+            staleExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+        ScheduledExecutorService scheduler = snapshotScheduler;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            snapshotScheduler = null;
+        }
+        if (snapshotFile != null) {
+            saveSnapshot();
+        }
+        super.destroy();
+    }
+
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
@@ -213,6 +901,11 @@ public class ShariffServlet extends HttpServlet {
             cacheSize = Integer.parseInt(cs);
         }
 
+        String cob = config.getInitParameter("cache.offHeapBytes");
+        if (cob != null) {
+            cacheOffHeapBytes = Long.parseLong(cob);
+        }
+
         String ttl = config.getInitParameter("cache.timeToLiveMs");
         if (ttl == null) {
             ttl = config.getInitParameter("cacheTimeToLiveMs"); // @Deprecated
@@ -221,11 +914,97 @@ public class ShariffServlet extends HttpServlet {
             timeToLiveMs = Long.parseLong(ttl);
         }
 
+        Enumeration<String> names = config.getInitParameterNames();
+        while (names != null && names.hasMoreElements()) {
+            String name = names.nextElement();
+            if (name.startsWith("cache.timeToLiveMs.")) {
+                targetTimeToLiveMs.put(name.substring("cache.timeToLiveMs.".length()),
+                        Long.parseLong(config.getInitParameter(name)));
+            }
+        }
+
+        snapshotFile = config.getInitParameter("cache.snapshotFile");
+
+        String csi = config.getInitParameter("cache.snapshotIntervalMs");
+        if (csi != null) {
+            snapshotIntervalMs = Long.parseLong(csi);
+        }
+
+        String cgz = config.getInitParameter("cache.gzip");
+        if (cgz != null) {
+            cacheGzip = Boolean.parseBoolean(cgz);
+        }
+
+        String hcc = config.getInitParameter("http.cacheControl");
+        if (hcc != null) {
+            httpCaching = Boolean.parseBoolean(hcc);
+        }
+
+        String hsie = config.getInitParameter("http.staleIfErrorMs");
+        if (hsie != null) {
+            staleIfErrorMs = Long.parseLong(hsie);
+        }
+
+        String bmu = config.getInitParameter("batch.maxUrls");
+        if (bmu != null) {
+            batchMaxUrls = Integer.parseInt(bmu);
+        }
+
         String coe = config.getInitParameter("cache.useOnError");
         if (coe != null) {
             useCacheOnError = Boolean.parseBoolean(coe);
         }
 
+        String swr = config.getInitParameter("cache.staleWhileRevalidateMs");
+        if (swr != null) {
+            staleWhileRevalidateMs = Long.parseLong(swr);
+        }
+
+        String ram = config.getInitParameter("cache.refreshAheadMs");
+        if (ram != null) {
+            refreshAheadMs = Long.parseLong(ram);
+        }
+
+        String rar = config.getInitParameter("cache.refreshAheadRate");
+        if (rar != null) {
+            refreshAheadRate = Double.parseDouble(rar);
+        }
+
+        String pttl = config.getInitParameter("cache.partialTimeToLiveMs");
+        if (pttl != null) {
+            partialTimeToLiveMs = Long.parseLong(pttl);
+        }
+
+        String dl = config.getInitParameter("timeout.deadlineMs");
+        if (dl != null) {
+            deadlineMs = Long.parseLong(dl);
+        }
+
+        String cto = config.getInitParameter("timeout.connectMs");
+        if (cto != null) {
+            connectTimeoutMs = Integer.parseInt(cto);
+        }
+
+        String rto = config.getInitParameter("timeout.readMs");
+        if (rto != null) {
+            readTimeoutMs = Integer.parseInt(rto);
+        }
+
+        String bft = config.getInitParameter("breaker.failureThreshold");
+        if (bft != null) {
+            breakerFailureThreshold = Integer.parseInt(bft);
+        }
+
+        String bom = config.getInitParameter("breaker.openMs");
+        if (bom != null) {
+            breakerOpenMs = Long.parseLong(bom);
+        }
+
+        String brl = config.getInitParameter("breaker.rateLimitOpenMs");
+        if (brl != null) {
+            breakerRateLimitOpenMs = Long.parseLong(brl);
+        }
+
         String trg = config.getInitParameter("targets");
         if (trg != null) {
             targets = trg.split("[,:;]+");
@@ -239,39 +1018,454 @@ public class ShariffServlet extends HttpServlet {
             threads = Integer.parseInt(thr);
         }
 
+        String vthr = config.getInitParameter("threads.virtual");
+        if (vthr != null) {
+            virtualThreads = Boolean.parseBoolean(vthr);
+        }
+
         fbClientId = config.getInitParameter("facebook.id");
         fbClientSecret = config.getInitParameter("facebook.secret");
 
+        String fbrl = config.getInitParameter("facebook.rateLimit");
+        if (fbrl != null) {
+            fbRateLimit = Double.parseDouble(fbrl);
+        }
+
+        String fbbs = config.getInitParameter("facebook.batchSize");
+        if (fbbs != null) {
+            fbBatchSize = Integer.parseInt(fbbs);
+        }
+
+        String fbbw = config.getInitParameter("facebook.batchWindowMs");
+        if (fbbw != null) {
+            fbBatchWindowMs = Long.parseLong(fbbw);
+        }
+
         organisation = config.getInitParameter("organisation");
+
+        warmupSource = config.getInitParameter("warmup.source");
+
+        String wuc = config.getInitParameter("warmup.concurrency");
+        if (wuc != null) {
+            warmupConcurrency = Integer.parseInt(wuc);
+        }
+
+        String mjx = config.getInitParameter("metrics.jmx");
+        if (mjx != null) {
+            metricsJmx = Boolean.parseBoolean(mjx);
+        }
+
+        String cjx = config.getInitParameter("control.jmx");
+        if (cjx != null) {
+            controlJmx = Boolean.parseBoolean(cjx);
+        }
+
+        if (metricsJmx) {
+            startMetrics();
+        }
+        if (controlJmx) {
+            startControl();
+        }
+
+        if (snapshotFile != null) {
+            startSnapshots();
+        }
+        if (warmupSource != null) {
+            startWarmUp();
+        }
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp)
     throws IOException {
         try {
-            String url = getUrl(req);
+            if (isBatch(req)) {
+                handleBatch(req, resp, getUrls(req));
+                return;
+            }
 
-            if (url == null) {
-                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "missing url parameter");
+            String url = getValidUrl(req, resp);
+            if (url != null) {
+                writeCounts(req, resp, getCountsCached(url));
+            }
+        } catch (Exception ex) {
+            LOG.error("Failed to handle Shariff request", ex);
+            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    /**
+     * Answers a batch request. The request body is a JSON array of the URLs to get the
+     * counters of.
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+    throws IOException {
+        try {
+            Collection<String> urls = readUrls(req);
+            if (urls == null) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid request body");
                 return;
             }
+            handleBatch(req, resp, urls);
+        } catch (Exception ex) {
+            LOG.error("Failed to handle Shariff batch request", ex);
+            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    /**
+     * Checks if the request is a batch request, having more than one "url" parameter.
+     *
+     * @param req
+     *            {@link HttpServletRequest} to check
+     * @return {@code true} if it is a batch request
+     * @since 1.25
+     */
+    protected boolean isBatch(HttpServletRequest req) {
+        String[] urls = req.getParameterValues("url");
+        return urls != null && urls.length > 1;
+    }
+
+    /**
+     * Validates the URLs of a batch request, and writes the counters of all URLs.
+     *
+     * @param req
+     *            {@link HttpServletRequest} of the batch
+     * @param resp
+     *            {@link HttpServletResponse} to write to
+     * @param urls
+     *            URLs of the batch
+     * @since 1.25
+     */
+    protected void handleBatch(HttpServletRequest req, HttpServletResponse resp, Collection<String> urls)
+    throws IOException {
+        Collection<String> valid = getValidUrls(urls, req, resp);
+        if (valid != null) {
+            writeBatch(req, resp, getCountsCachedAsync(valid).join());
+        }
+    }
+
+    /**
+     * Validates the URLs of a batch request. If they are missing, too many, or one of
+     * them is invalid, an error is sent.
+     *
+     * @param urls
+     *            URLs to validate
+     * @param req
+     *            {@link HttpServletRequest} of the batch
+     * @param resp
+     *            {@link HttpServletResponse} to send an error to
+     * @return URLs without duplicates, or {@code null} if the URLs were not valid
+     * @since 1.25
+     */
+    protected Collection<String> getValidUrls(Collection<String> urls, HttpServletRequest req,
+            HttpServletResponse resp) throws IOException {
+        Set<String> result = new LinkedHashSet<>(urls);
+        result.remove(null);
+
+        if (result.isEmpty()) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "missing url parameter");
+            return null;
+        }
+
+        if (result.size() > batchMaxUrls) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "too many urls");
+            return null;
+        }
 
+        for (String url : result) {
             if (!isValidHost(url, req)) {
                 resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid host");
+                return null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the URL from the {@link HttpServletRequest} and validates it. If it is
+     * missing or invalid, an error is sent.
+     *
+     * @param req
+     *            {@link HttpServletRequest} to read the URL from
+     * @param resp
+     *            {@link HttpServletResponse} to send an error to
+     * @return URL, or {@code null} if the URL was missing or invalid
+     * @since 1.25
+     */
+    protected String getValidUrl(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String url = getUrl(req);
+
+        if (url == null) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "missing url parameter");
+            return null;
+        }
+
+        if (!isValidHost(url, req)) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid host");
+            return null;
+        }
+
+        return url;
+    }
+
+    /**
+     * Writes the counters of a batch request as JSON object to the
+     * {@link HttpServletResponse}. The object contains the URL as key, and the counters
+     * of that URL as value. The JSON representations of cached counters are reused.
+     * <p>
+     * If "http.cacheControl" is enabled, a GET request is answered with an ETag of the
+     * whole batch, and with "304 Not Modified" if the "If-None-Match" header matches it.
+     *
+     * @param req
+     *            {@link HttpServletRequest} of the batch
+     * @param resp
+     *            {@link HttpServletResponse} to write to
+     * @param counts
+     *            Map of URLs and their counters
+     * @since 1.25
+     */
+    protected void writeBatch(HttpServletRequest req, HttpServletResponse resp,
+            Map<String, Map<String, Integer>> counts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * counts.size() + 2);
+        long expiry = 0L;
+
+        out.write('{');
+        for (Map.Entry<String, Map<String, Integer>> entry : counts.entrySet()) {
+            if (out.size() > 1) {
+                out.write(',');
+            }
+            CountVector vector = CountVector.of(entry.getValue());
+            out.write(JSONObject.quote(entry.getKey()).getBytes(UTF_8));
+            out.write(':');
+            out.write(vector.getJson());
+
+            long vectorExpiry = vector.getExpiry();
+            if (vectorExpiry > 0L && (expiry == 0L || vectorExpiry < expiry)) {
+                expiry = vectorExpiry;
+            }
+        }
+        out.write('}');
+
+        if (httpCaching && "GET".equals(req.getMethod())) {
+            String etag = CountVector.getETag(out.toByteArray());
+            resp.setHeader("ETag", etag);
+            resp.setHeader("Cache-Control", getCacheControl(expiry));
+
+            if (matchesETag(req.getHeader("If-None-Match"), etag)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
                 return;
             }
+        }
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding(UTF_8.name());
+        resp.setContentLength(out.size());
+        out.writeTo(resp.getOutputStream());
+    }
+
+    /**
+     * Returns the "Cache-Control" header value for counters that expire at the given
+     * time.
+     *
+     * @param expiry
+     *            Time when the first counter expires, or 0 if unknown
+     * @return "Cache-Control" header value
+     */
+    private String getCacheControl(long expiry) {
+        long maxAgeMs = expiry > 0L ? expiry - System.currentTimeMillis() : timeToLiveMs;
 
-            JSONObject json = new JSONObject();
-            for (Map.Entry<String, Integer> count : getCountsCached(url).entrySet()) {
-                json.put(count.getKey(), count.getValue());
+        StringBuilder sb = new StringBuilder("public, max-age=");
+        sb.append(Math.max(maxAgeMs, 0L) / 1000L);
+        if (staleWhileRevalidateMs > 0L) {
+            sb.append(", stale-while-revalidate=").append(staleWhileRevalidateMs / 1000L);
+        }
+        if (staleIfErrorMs > 0L) {
+            sb.append(", stale-if-error=").append(staleIfErrorMs / 1000L);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checks if an "If-None-Match" header matches the given ETag. The header contains a
+     * comma separated list of ETags, or "*". Weak ETags are compared like strong ones.
+     *
+     * @param header
+     *            "If-None-Match" header, may be {@code null}
+     * @param etag
+     *            ETag of the response, including the quotes
+     * @return {@code true} if the ETag matches
+     */
+    private static boolean matchesETag(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
             }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
 
-            resp.setContentType("application/json");
-            resp.setCharacterEncoding(UTF_8.name());
-            resp.getWriter().append(json.toString());
-        } catch (Exception ex) {
-            LOG.error("Failed to handle Shariff request", ex);
-            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+        return false;
+    }
+
+    /**
+     * Writes the counters as JSON object to the {@link HttpServletResponse}.
+     * <p>
+     * Cached counters already carry their JSON representation, which is written directly
+     * to the output stream. If "cache.gzip" is enabled and the client accepts it, the
+     * gzip compressed representation is sent instead, unless it is larger.
+     * <p>
+     * If "http.cacheControl" is enabled, the response can be cached by browsers and
+     * proxies for the remaining lifetime of the cached counters. A request with a
+     * matching "If-None-Match" header is answered with "304 Not Modified".
+     *
+     * @param req
+     *            {@link HttpServletRequest} of the counters
+     * @param resp
+     *            {@link HttpServletResponse} to write to
+     * @param counts
+     *            Map of counters
+     * @since 1.25
+     */
+    protected void writeCounts(HttpServletRequest req, HttpServletResponse resp, Map<String, Integer> counts)
+    throws IOException {
+        CountVector vector = CountVector.of(counts);
+        byte[] body = vector.getJson();
+        boolean gzipped = false;
+
+        if (cacheGzip) {
+            resp.setHeader("Vary", "Accept-Encoding");
+            String accept = req.getHeader("Accept-Encoding");
+            if (accept != null && accept.contains("gzip")) {
+                byte[] gzip = vector.getJsonGzip();
+                if (gzip.length < body.length) {
+                    gzipped = true;
+                    body = gzip;
+                }
+            }
+        }
+
+        if (httpCaching) {
+            String etag = vector.getETag();
+            if (gzipped) {
+                // Strong ETags must differ between content encodings
+                etag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            }
+            resp.setHeader("ETag", etag);
+            resp.setHeader("Cache-Control", getCacheControl(vector.getExpiry()));
+
+            if (matchesETag(req.getHeader("If-None-Match"), etag)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        if (gzipped) {
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding(UTF_8.name());
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    /**
+     * {@link ShariffControlMXBean} of this servlet. Changes are synchronized with the
+     * lazy creation of the cache and the backend, so they are never lost.
+     */
+    private class Control implements ShariffControlMXBean {
+        @Override
+        public int getCacheSize() {
+            synchronized (ShariffServlet.this) {
+                return cacheSize;
+            }
+        }
+
+        @Override
+        public void setCacheSize(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("cacheSize must be positive");
+            }
+            synchronized (ShariffServlet.this) {
+                if (cacheOffHeapBytes > 0L) {
+                    throw new UnsupportedOperationException("Off-heap cache is limited by cache.offHeapBytes");
+                }
+                ConcurrentCache<String, CachedCounts> current = cache;
+                if (current != null) {
+                    current.resize(size);
+                }
+                cacheSize = size;
+            }
+            LOG.info("Cache size changed to {}", size);
+        }
+
+        @Override
+        public long getTimeToLiveMs() {
+            return timeToLiveMs;
+        }
+
+        @Override
+        public void setTimeToLiveMs(long ttl) {
+            if (ttl < 0L) {
+                throw new IllegalArgumentException("timeToLiveMs must not be negative");
+            }
+            timeToLiveMs = ttl;
+            LOG.info("Cache time to live changed to {} ms", ttl);
+        }
+
+        @Override
+        public int getThreads() {
+            return getBackend().getMaxThreads();
+        }
+
+        @Override
+        public void setThreads(int count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+            synchronized (ShariffServlet.this) {
+                ShariffBackend current = backend;
+                if (current != null) {
+                    current.setMaxThreads(count);
+                }
+                threads = count;
+            }
+            LOG.info("Number of fetcher threads changed to {}", count);
+        }
+
+        @Override
+        public List<String> getTargets() {
+            return getBackend().getTargets().stream()
+                    .map(Target::getName)
+                    .collect(toList());
+        }
+
+        @Override
+        public List<String> getDisabledTargets() {
+            ShariffBackend current = getBackend();
+            return current.getTargets().stream()
+                    .map(Target::getName)
+                    .filter(name -> !current.isEnabled(name))
+                    .collect(toList());
+        }
+
+        @Override
+        public void enableTarget(String name) {
+            getBackend().setEnabled(name, true);
+            LOG.info("Service {} enabled", name);
+        }
+
+        @Override
+        public void disableTarget(String name) {
+            getBackend().setEnabled(name, false);
+            LOG.info("Service {} disabled", name);
         }
     }
 
@@ -17,6 +17,8 @@ import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 
+import org.shredzone.shariff.api.MetricsListener;
+
 /**
  * A very simple cache. It keeps a maximum number of elements for the given time to live.
  * If the maximum number is reached, the least recently read element is removed. Timed out
@@ -34,6 +36,7 @@ public class SimpleCache<K, V> {
 
     private final CacheMap<K, Entry<V>> cache;
     private final long timeToLiveMs;
+    private MetricsListener metricsListener;
 
     /**
      * Creates a new {@link SimpleCache}.
@@ -74,10 +77,12 @@ public class SimpleCache<K, V> {
 
         // Cache hit: return cached value
         if (entry != null && !isExpired(entry.expiry)) {
+            onHit();
             return entry.value;
         }
 
         // Cache miss: fetch new value
+        onMiss(entry);
         V newValue = provider.apply(key, entry != null ? entry.value : null);
         if (newValue != null) {
             put(key, newValue);
@@ -101,8 +106,12 @@ public class SimpleCache<K, V> {
         Entry<V> entry = cache.get(key);
 
         if (entry != null && !isExpired(entry.expiry)) {
+            onHit();
             return entry.value;
-        } else if (entry != null) {
+        }
+
+        onMiss(entry);
+        if (entry != null) {
             cache.remove(key);
         }
 
@@ -122,6 +131,19 @@ public class SimpleCache<K, V> {
         cache.put(key, new Entry<>(value, System.currentTimeMillis() + timeToLiveMs));
     }
 
+    /**
+     * Sets a {@link MetricsListener} that is informed about cache hits, misses,
+     * expiries and evictions.
+     *
+     * @param metricsListener
+     *            {@link MetricsListener} to be used, or {@code null} for none
+     * @since 1.25
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        cache.metricsListener = metricsListener;
+    }
+
     /**
      * Returns the current cache size. The size includes entries that have timed out, but
      * have not been purged yet.
@@ -143,6 +165,31 @@ public class SimpleCache<K, V> {
         return expiry < System.currentTimeMillis();
     }
 
+    /**
+     * Reports a cache hit to the {@link MetricsListener}.
+     */
+    private void onHit() {
+        if (metricsListener != null) {
+            metricsListener.onCacheHit();
+        }
+    }
+
+    /**
+     * Reports a cache miss to the {@link MetricsListener}.
+     *
+     * @param entry
+     *            Expired {@link Entry} that was found, or {@code null} if there was none
+     */
+    private void onMiss(Entry<V> entry) {
+        if (metricsListener != null) {
+            if (entry != null) {
+                metricsListener.onCacheExpiry();
+            } else {
+                metricsListener.onCacheMiss();
+            }
+        }
+    }
+
     /**
      * A {@link LinkedHashMap} that keeps the given maximum number of elements.
      */
@@ -150,6 +197,7 @@ public class SimpleCache<K, V> {
         private static final long serialVersionUID = -294328016365489050L;
 
         private final int maxEntries;
+        private transient MetricsListener metricsListener;
 
         /**
          * Creates a new {@link CacheMap}.
@@ -164,7 +212,13 @@ public class SimpleCache<K, V> {
 
         @Override
         protected boolean removeEldestEntry(Map.Entry<T, U> eldest) {
-            return super.size() > maxEntries;
+            if (super.size() <= maxEntries) {
+                return false;
+            }
+            if (metricsListener != null) {
+                metricsListener.onCacheEviction();
+            }
+            return true;
         }
     }
 
@@ -0,0 +1,39 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown when a request was not sent to the target server, because
+ * its {@link org.shredzone.shariff.api.RateLimiter} is throttling the requests.
+ * <p>
+ * Unlike {@link RateLimitExceededException}, this is not a failure of the target.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class ThrottledException extends IOException {
+    private static final long serialVersionUID = 4511982627415349306L;
+
+    /**
+     * Creates a new {@link ThrottledException}.
+     *
+     * @param message
+     *            A message giving a hint about the throttled target.
+     */
+    public ThrottledException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads URLs from a sitemap or a plain URL list, one by one. The source is streamed, so
+ * even huge lists are never loaded into memory as a whole.
+ * <p>
+ * If the source starts with a {@code <}, it is read as
+ * <a href="https://www.sitemaps.org/protocol.html">sitemap</a>, and the {@code <loc>} of
+ * every {@code <url>} is returned. Sitemap index files are not followed. Otherwise the
+ * source is read as plain list, with one URL per line. Empty lines and lines starting
+ * with {@code #} are skipped.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class UrlListReader implements Closeable {
+
+    private final BufferedReader reader;
+    private final XMLStreamReader xml;
+
+    /**
+     * Creates a new {@link UrlListReader}.
+     *
+     * @param in
+     *            {@link Reader} of the sitemap or URL list. It is closed when this reader
+     *            is closed.
+     */
+    public UrlListReader(Reader in) throws IOException {
+        reader = new BufferedReader(in);
+
+        if (isXml()) {
+            try {
+                XMLInputFactory factory = XMLInputFactory.newInstance();
+                factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+                factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+                xml = factory.createXMLStreamReader(reader);
+            } catch (XMLStreamException ex) {
+                throw new IOException("Could not read sitemap", ex);
+            }
+        } else {
+            xml = null;
+        }
+    }
+
+    /**
+     * Opens a sitemap or URL list.
+     *
+     * @param location
+     *            An http or https URL, or the path of a local file. The source must be
+     *            UTF-8 encoded.
+     * @return {@link Reader} of the source
+     */
+    public static Reader open(String location) throws IOException {
+        if (location.startsWith("http://") || location.startsWith("https://")) {
+            return new InputStreamReader(new URL(location).openStream(), UTF_8);
+        }
+        return Files.newBufferedReader(Paths.get(location), UTF_8);
+    }
+
+    /**
+     * Returns the next URL.
+     *
+     * @return URL, or {@code null} if there are no more URLs
+     */
+    public String next() throws IOException {
+        return xml != null ? nextLoc() : nextLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (xml != null) {
+                xml.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Could not close sitemap", ex);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Checks if the source is an XML document, by peeking at the first non-whitespace
+     * character.
+     */
+    private boolean isXml() throws IOException {
+        reader.mark(1024);
+        try {
+            for (int ix = 0; ix < 1024; ix++) {
+                int ch = reader.read();
+                if (ch < 0) {
+                    return false;
+                }
+                if (ch != '\uFEFF' && !Character.isWhitespace(ch)) {
+                    return ch == '<';
+                }
+            }
+            return false;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * Returns the next URL of a plain list.
+     */
+    private String nextLine() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.replace("\uFEFF", "").trim();
+            if (!line.isEmpty() && line.charAt(0) != '#') {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the next {@code <loc>} of an {@code <url>} element of a sitemap.
+     */
+    private String nextLoc() throws IOException {
+        try {
+            boolean inUrl = false;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamReader.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if ("url".equals(name)) {
+                        inUrl = true;
+                    } else if (inUrl && "loc".equals(name)) {
+                        String loc = xml.getElementText().trim();
+                        if (!loc.isEmpty()) {
+                            return loc;
+                        }
+                    }
+                } else if (event == XMLStreamReader.END_ELEMENT && "url".equals(xml.getLocalName())) {
+                    inUrl = false;
+                }
+            }
+            return null;
+        } catch (XMLStreamException ex) {
+            throw new IOException("Invalid sitemap", ex);
+        }
+    }
+
+}
@@ -20,18 +20,43 @@ import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.shredzone.shariff.RateLimitExceededException;
+import org.shredzone.shariff.ThrottledException;
 
 /**
  * A base {@link Target} implementation that performs HTTP requests.
+ * <p>
+ * Connections are not closed after a successful request with a small response, but are
+ * returned to the keep-alive connection pool of the JVM. This way, subsequent requests
+ * to the same service can reuse the connection. The pool size is controlled by the
+ * {@code http.maxConnections} system property.
+ * <p>
+ * An optional {@link RateLimiter} limits the rate of requests. Targets that report their
+ * quota usage can feed it back to the limiter via {@link #reportUsage(int)}.
+ * <p>
+ * Targets that are able to resolve many URLs in a single request can opt into batching,
+ * by overriding {@link #countBatch(List)}. If batching is enabled by
+ * {@link #setBatching(int, long, TimeUnit)}, asynchronous lookups are collected by a
+ * {@link RequestBatcher} and sent as a single request.
+ * <p>
+ * If a {@link MetricsListener} is set, the duration and outcome of every request is
+ * reported to it.
  *
  * @author Richard "Shred" Körber
  */
 public abstract class HttpTarget implements Target {
 
-    private static final int HTTP_TIMEOUT_MS = 10000;
+    private static final int DEFAULT_TIMEOUT_MS = 10000;
+    private static final long MAX_DRAIN_BYTES = 64L * 1024L;
     private static final String BACKEND_VERSION;
 
     static {
@@ -49,17 +74,112 @@ public abstract class HttpTarget implements Target {
     }
 
     private String userAgent = BACKEND_VERSION;
+    private volatile int connectTimeoutMs = DEFAULT_TIMEOUT_MS;
+    private volatile int readTimeoutMs = DEFAULT_TIMEOUT_MS;
+    private volatile RateLimiter rateLimiter;
+    private volatile RequestBatcher batcher;
+    private volatile ScheduledExecutorService batchScheduler;
+    private volatile MetricsListener metricsListener;
 
     @Override
     public int count(String url) throws IOException {
-        HttpURLConnection connection = connect(url);
+        acquirePermit();
+        return request(() -> connect(url), this::extractCount);
+    }
+
+    @Override
+    public CompletionStage<Integer> countAsync(String url, Executor executor) {
+        RequestBatcher current = batcher;
+        if (current != null) {
+            return current.submit(url, executor, batchScheduler);
+        }
+        return Target.super.countAsync(url, executor);
+    }
+
+    /**
+     * Fetches the counters of many URLs at once. It is invoked by the
+     * {@link RequestBatcher} if batching is enabled.
+     * <p>
+     * The default implementation fetches the counters one by one. Targets that are able
+     * to resolve many URLs in a single request should override this method.
+     *
+     * @param urls
+     *            URLs to get the counters of
+     * @return Map containing the URL as key, and the counter as value. URLs that are
+     *         missing in the map are considered failed.
+     * @throws IOException
+     *             if the counters could not be retrieved
+     * @since 1.25
+     */
+    protected Map<String, Integer> countBatch(List<String> urls) throws IOException {
+        Map<String, Integer> result = new HashMap<>();
+        for (String url : urls) {
+            result.put(url, count(url));
+        }
+        return result;
+    }
+
+    /**
+     * Sends a request and reads the response.
+     * <p>
+     * The response is checked by {@link #checkResponse(HttpURLConnection)}. If the
+     * response was read successfully and its Content-Length is small, the connection is
+     * returned to the keep-alive pool. The request is reported to the
+     * {@link MetricsListener}, if there is one. Connecting is part of the reported
+     * request, so connection failures and the time for sending a request body are
+     * reported as well.
+     *
+     * @param connector
+     *            {@link Connector} that connects to the target
+     * @param reader
+     *            {@link ResponseReader} that reads the response body
+     * @return Result of the {@link ResponseReader}
+     * @since 1.25
+     */
+    protected <T> T request(Connector connector, ResponseReader<T> reader) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = System.nanoTime();
+        if (listener != null) {
+            listener.onFetchStart(getName());
+        }
+
+        HttpURLConnection connection = null;
+        boolean reusable = false;
         try {
+            connection = connector.connect();
             checkResponse(connection);
             try (InputStream in = connection.getInputStream()) {
-                return extractCount(in);
+                T result = reader.read(in);
+                reusable = drain(connection, in);
+                if (listener != null) {
+                    listener.onFetchSuccess(getName(), System.nanoTime() - start);
+                }
+                return result;
+            }
+        } catch (IOException | RuntimeException ex) {
+            if (listener != null) {
+                listener.onFetchFailure(getName(), System.nanoTime() - start, ex);
             }
+            throw ex;
         } finally {
-            connection.disconnect();
+            if (connection != null && !reusable) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Acquires a permit from the {@link RateLimiter}, if there is one. Must be invoked
+     * before each request to the target.
+     *
+     * @throws ThrottledException
+     *             if the request must not be sent now
+     * @since 1.25
+     */
+    protected void acquirePermit() throws ThrottledException {
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null && !limiter.tryAcquire()) {
+            throw new ThrottledException(getName() + " is throttled");
         }
     }
 
@@ -95,6 +215,121 @@ public abstract class HttpTarget implements Target {
         }
     }
 
+    /**
+     * Sets the timeout for connecting to the target. Default is 10 seconds.
+     *
+     * @param timeoutMs
+     *            Connect timeout, in ms. {@code 0} means no timeout.
+     * @since 1.25
+     */
+    public void setConnectTimeout(int timeoutMs) {
+        this.connectTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Sets the timeout for reading the response of the target. Default is 10 seconds.
+     *
+     * @param timeoutMs
+     *            Read timeout, in ms. {@code 0} means no timeout.
+     * @since 1.25
+     */
+    public void setReadTimeout(int timeoutMs) {
+        this.readTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Sets a {@link RateLimiter} that limits the rate of requests to the target. If the
+     * limiter refuses a request, a {@link ThrottledException} is thrown.
+     *
+     * @param rateLimiter
+     *            {@link RateLimiter} to be used, or {@code null} for no limit
+     * @since 1.25
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Returns the {@link RateLimiter} of this target, or {@code null} if there is none.
+     *
+     * @since 1.25
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets a {@link MetricsListener} that is informed about every request to the
+     * target.
+     *
+     * @param metricsListener
+     *            {@link MetricsListener} to be used, or {@code null} for none
+     * @since 1.25
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Enables batching of asynchronous counter lookups. Lookups are collected for the
+     * given time window, or until the maximum batch size is reached, and then fetched
+     * by {@link #countBatch(List)}.
+     * <p>
+     * Batching is only useful for targets that override {@link #countBatch(List)}.
+     *
+     * @param maxBatchSize
+     *            Maximum number of URLs in a batch. {@code 1} or less disables batching.
+     * @param window
+     *            Maximum time to collect URLs for a batch
+     * @param unit
+     *            {@link TimeUnit} of window
+     * @since 1.25
+     */
+    public void setBatching(int maxBatchSize, long window, TimeUnit unit) {
+        this.batcher = maxBatchSize > 1
+                ? new RequestBatcher(this::countBatch, maxBatchSize, window, unit)
+                : null;
+    }
+
+    /**
+     * Sets the {@link ScheduledExecutorService} that sends a batch when its collection
+     * window has elapsed. If not set, a thread of the executor that is passed to
+     * {@link #countAsync(String, Executor)} waits for the collection window.
+     * {@link org.shredzone.shariff.ShariffBackend} sets its own scheduler.
+     *
+     * @param batchScheduler
+     *            {@link ScheduledExecutorService} to be used, or {@code null} for none
+     * @since 1.25
+     */
+    public void setBatchScheduler(ScheduledExecutorService batchScheduler) {
+        this.batchScheduler = batchScheduler;
+    }
+
+    /**
+     * Returns the {@link RequestBatcher} of this target, or {@code null} if batching is
+     * disabled.
+     *
+     * @since 1.25
+     */
+    public RequestBatcher getBatcher() {
+        return batcher;
+    }
+
+    /**
+     * Reports the quota usage that was returned by the target to the
+     * {@link RateLimiter}, if there is one.
+     *
+     * @param percent
+     *            Used quota, in percent
+     * @since 1.25
+     */
+    protected void reportUsage(int percent) {
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.onUsage(percent);
+        }
+    }
+
     /**
      * Extracts the click counter from the API response.
      *
@@ -137,12 +372,76 @@ public abstract class HttpTarget implements Target {
     protected HttpURLConnection openConnection(URL url) throws IOException {
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setUseCaches(false);
-        connection.setConnectTimeout(HTTP_TIMEOUT_MS);
-        connection.setReadTimeout(HTTP_TIMEOUT_MS);
+        connection.setConnectTimeout(connectTimeoutMs);
+        connection.setReadTimeout(readTimeoutMs);
         connection.setRequestProperty("User-Agent", getUserAgent());
         return connection;
     }
 
+    /**
+     * Reads the remainder of the response body, so the connection can be reused. This is
+     * only done if the Content-Length of the response is known and small. Otherwise, e.g.
+     * if an extractor stopped reading early in a large or chunked response, the
+     * remainder is not read, and the connection is closed instead.
+     *
+     * @param connection
+     *            {@link HttpURLConnection} of the request
+     * @param in
+     *            {@link InputStream} of the response body
+     * @return {@code true} if the response body was read completely
+     */
+    private static boolean drain(HttpURLConnection connection, InputStream in) throws IOException {
+        long length = connection.getContentLengthLong();
+        if (length < 0L || length > MAX_DRAIN_BYTES) {
+            return false;
+        }
+
+        byte[] buffer = new byte[512];
+        long remaining = MAX_DRAIN_BYTES;
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            remaining -= len;
+            if (remaining < 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Connects to the target.
+     *
+     * @since 1.25
+     */
+    @FunctionalInterface
+    protected interface Connector {
+        /**
+         * Opens the connection, and sends the request body if there is one.
+         *
+         * @return {@link HttpURLConnection} of the request
+         */
+        HttpURLConnection connect() throws IOException;
+    }
+
+    /**
+     * Reads the response body of a request.
+     *
+     * @param <T>
+     *            Result type
+     * @since 1.25
+     */
+    @FunctionalInterface
+    protected interface ResponseReader<T> {
+        /**
+         * Reads the response body.
+         *
+         * @param in
+         *            {@link InputStream} of the response body
+         * @return Result
+         */
+        T read(InputStream in) throws IOException;
+    }
+
     /**
      * Returns the User-Agent to be used for HTTP connections.
      *
@@ -0,0 +1,691 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff.api;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * Extracts numbers from a JSON document by a path, while streaming it.
+ * <p>
+ * A path consists of field names that are separated by dots. {@code [*]} selects all
+ * elements of an array. For example, {@code og_object.engagement.count} selects the
+ * "count" field of the "engagement" object of the "og_object" object, and
+ * {@code data.children[*].data.score} selects the "score" of every element of the
+ * "children" array. An empty path selects the document itself. Strings containing a
+ * number are accepted as well.
+ * <p>
+ * The document is scanned byte by byte, just once. No objects are built for the
+ * document, and subtrees that are not on the path are skipped. Skipped subtrees are
+ * only checked for balanced brackets. The size of the document is limited, so a huge
+ * or endless response cannot exhaust the memory or block a thread forever.
+ * <p>
+ * Instances are immutable and thread safe.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public final class JSONPathExtractor {
+
+    /**
+     * Default maximum size of a JSON document, in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024L;
+
+    private static final int BUFFER_SIZE = 2048;
+
+    private final String path;
+    private final byte[][] segments;
+    private final int parentDepth;
+    private final long maxBytes;
+
+    private JSONPathExtractor(String path, byte[][] segments, long maxBytes) {
+        this.path = path;
+        this.segments = segments;
+        this.maxBytes = maxBytes;
+
+        int depth = segments.length;
+        while (depth > 0 && segments[depth - 1] != null) {
+            depth--;
+        }
+        this.parentDepth = depth;
+    }
+
+    /**
+     * Compiles a path, using {@link #DEFAULT_MAX_BYTES} as size limit.
+     *
+     * @param path
+     *            Path to compile
+     * @return {@link JSONPathExtractor} of that path
+     */
+    public static JSONPathExtractor compile(String path) {
+        return compile(path, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Compiles a path.
+     *
+     * @param path
+     *            Path to compile
+     * @param maxBytes
+     *            Maximum size of a JSON document, in bytes
+     * @return {@link JSONPathExtractor} of that path
+     */
+    public static JSONPathExtractor compile(String path, long maxBytes) {
+        if (maxBytes < 1L) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+
+        // null segments stand for an array wildcard
+        List<byte[]> segments = new ArrayList<>();
+        int ix = 0;
+        while (ix < path.length()) {
+            int end = ix;
+            while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                end++;
+            }
+            if (end > ix) {
+                segments.add(path.substring(ix, end).getBytes(UTF_8));
+            } else if (end < path.length() && path.charAt(end) == '.') {
+                throw new IllegalArgumentException("Empty field name in path: " + path);
+            }
+
+            ix = end;
+            while (path.startsWith("[*]", ix)) {
+                segments.add(null);
+                ix += 3;
+            }
+
+            if (ix < path.length()) {
+                if (path.charAt(ix) != '.' || ix == path.length() - 1) {
+                    throw new IllegalArgumentException("Invalid path: " + path);
+                }
+                ix++;
+            }
+        }
+
+        return new JSONPathExtractor(path, segments.toArray(new byte[0][]), maxBytes);
+    }
+
+    /**
+     * Returns the path of this extractor.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the first number that is found at the path. Reading stops as soon as it
+     * has been found.
+     *
+     * @param in
+     *            {@link InputStream} of the UTF-8 encoded JSON document
+     * @return The number, or empty if there is no number at the path. Fractions are
+     *         truncated.
+     * @throws IOException
+     *             if the document could not be read, is invalid, or exceeds the size
+     *             limit
+     */
+    public OptionalLong first(InputStream in) throws IOException {
+        Scanner scanner = new Scanner(in, true);
+        scanner.value(0);
+        return scanner.found ? OptionalLong.of(scanner.result) : OptionalLong.empty();
+    }
+
+    /**
+     * Returns the first number that is found at the path. Reading stops as soon as it
+     * has been found.
+     * <p>
+     * Unlike {@link #first(InputStream)}, the object or array that contains the number
+     * must be present in the document. Only the number itself may be missing.
+     *
+     * @param in
+     *            {@link InputStream} of the UTF-8 encoded JSON document
+     * @return The number, or empty if there is no number at the path. Fractions are
+     *         truncated.
+     * @throws IOException
+     *             if the document could not be read, is invalid, exceeds the size
+     *             limit, or the object or array containing the number is missing
+     */
+    public OptionalLong firstWithParent(InputStream in) throws IOException {
+        Scanner scanner = new Scanner(in, true);
+        scanner.value(0);
+        if (!scanner.found && scanner.entered < segments.length) {
+            throw new IOException("Path not found: " + path);
+        }
+        return scanner.found ? OptionalLong.of(scanner.result) : OptionalLong.empty();
+    }
+
+    /**
+     * Returns the sum of all numbers that are found at the path. The whole document is
+     * read.
+     *
+     * @param in
+     *            {@link InputStream} of the UTF-8 encoded JSON document
+     * @return The sum of all numbers, or 0 if there is no number at the path. Fractions
+     *         are truncated.
+     * @throws IOException
+     *             if the document could not be read, is invalid, or exceeds the size
+     *             limit
+     */
+    public long sum(InputStream in) throws IOException {
+        return sum(in, false);
+    }
+
+    /**
+     * Returns the sum of all numbers that are found at the path. The whole document is
+     * read.
+     * <p>
+     * If required, the path up to its last {@code [*]} must be present in the document,
+     * so an empty array gives a sum of 0, but a missing array is an error. A path
+     * without {@code [*]} requires at least one number at the path.
+     *
+     * @param in
+     *            {@link InputStream} of the UTF-8 encoded JSON document
+     * @param required
+     *            {@code true} if the path must be present
+     * @return The sum of all numbers, or 0 if there is no number at the path. Fractions
+     *         are truncated.
+     * @throws IOException
+     *             if the document could not be read, is invalid, exceeds the size
+     *             limit, or the required path is missing
+     */
+    public long sum(InputStream in, boolean required) throws IOException {
+        Scanner scanner = new Scanner(in, false);
+        scanner.value(0);
+        if (required && (parentDepth > 0 ? scanner.reached < parentDepth : !scanner.found)) {
+            throw new IOException("Path not found: " + path);
+        }
+        return scanner.result;
+    }
+
+    /**
+     * Returns the sum of all numbers that are found at the path, for each member of an
+     * object. The path is relative to the member values. The whole document is read.
+     * <p>
+     * Members having an object as value are mapped to 0 if no number is found at the
+     * path. Other members without a number at the path are missing in the result.
+     *
+     * @param in
+     *            {@link InputStream} of the UTF-8 encoded JSON document, which must be
+     *            an object
+     * @return Map of the member names and the sum of all numbers at the path, in the
+     *         order of the document. Fractions are truncated.
+     * @throws IOException
+     *             if the document could not be read, is invalid, is not an object, or
+     *             exceeds the size limit
+     */
+    public Map<String, Long> sumByKey(InputStream in) throws IOException {
+        return new Scanner(in, false).members();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    /**
+     * Scans a single JSON document.
+     */
+    private final class Scanner {
+        private final InputStream in;
+        private final boolean stopAtFirst;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+        private long total;
+        private boolean found;
+        private long result;
+        private int reached;
+        private int entered;
+
+        private Scanner(InputStream in, boolean stopAtFirst) {
+            this.in = in;
+            this.stopAtFirst = stopAtFirst;
+        }
+
+        /**
+         * Scans the members of the document object, and sums up the numbers of each
+         * member separately.
+         */
+        private Map<String, Long> members() throws IOException {
+            Map<String, Long> sums = new LinkedHashMap<>();
+            expect(nextNonWhitespace(), '{');
+            int ch = nextNonWhitespace();
+            if (ch == '}') {
+                return sums;
+            }
+
+            while (true) {
+                expect(ch, '"');
+                String key = readString();
+                expect(nextNonWhitespace(), ':');
+
+                boolean isObject = peekNonWhitespace() == '{';
+                found = false;
+                result = 0L;
+                value(0);
+                if (found || isObject) {
+                    sums.put(key, result);
+                }
+
+                ch = nextNonWhitespace();
+                if (ch == '}') {
+                    return sums;
+                }
+                expect(ch, ',');
+                ch = nextNonWhitespace();
+            }
+        }
+
+        /**
+         * Scans a value.
+         *
+         * @param depth
+         *            Number of path segments that have been matched so far
+         * @return {@code true} if scanning is to be stopped
+         */
+        private boolean value(int depth) throws IOException {
+            int ch = nextNonWhitespace();
+            reached = Math.max(reached, depth);
+
+            if (depth == segments.length) {
+                return match(ch);
+            }
+
+            if (ch == '{' && segments[depth] != null) {
+                return object(depth);
+            } else if (ch == '[' && segments[depth] == null) {
+                return array(depth);
+            }
+
+            skipValue(ch);
+            return false;
+        }
+
+        /**
+         * Scans the members of an object, after the opening brace. Only the member of
+         * the current path segment is scanned, all others are skipped.
+         */
+        private boolean object(int depth) throws IOException {
+            entered = Math.max(entered, depth + 1);
+            int ch = nextNonWhitespace();
+            if (ch == '}') {
+                return false;
+            }
+
+            while (true) {
+                expect(ch, '"');
+                boolean matches = readKey(segments[depth]);
+                expect(nextNonWhitespace(), ':');
+                if (matches) {
+                    if (value(depth + 1)) {
+                        return true;
+                    }
+                } else {
+                    skipValue(nextNonWhitespace());
+                }
+
+                ch = nextNonWhitespace();
+                if (ch == '}') {
+                    return false;
+                }
+                expect(ch, ',');
+                ch = nextNonWhitespace();
+            }
+        }
+
+        /**
+         * Scans all elements of an array, after the opening bracket.
+         */
+        private boolean array(int depth) throws IOException {
+            reached = Math.max(reached, depth + 1);
+            entered = Math.max(entered, depth + 1);
+            if (peekNonWhitespace() == ']') {
+                read();
+                return false;
+            }
+
+            while (true) {
+                if (value(depth + 1)) {
+                    return true;
+                }
+
+                int ch = nextNonWhitespace();
+                if (ch == ']') {
+                    return false;
+                }
+                expect(ch, ',');
+            }
+        }
+
+        /**
+         * Handles a value at the end of the path. Numbers and strings containing a
+         * number are collected, other values are skipped.
+         */
+        private boolean match(int ch) throws IOException {
+            long number;
+            if (ch == '-' || (ch >= '0' && ch <= '9')) {
+                number = readNumber(ch);
+            } else if (ch == '"') {
+                String str = readString().trim();
+                try {
+                    number = Long.parseLong(str);
+                } catch (NumberFormatException ex) {
+                    try {
+                        number = (long) Double.parseDouble(str);
+                    } catch (NumberFormatException ex2) {
+                        return false;
+                    }
+                }
+            } else {
+                skipValue(ch);
+                return false;
+            }
+
+            found = true;
+            if (stopAtFirst) {
+                result = number;
+                return true;
+            }
+            result += number;
+            return false;
+        }
+
+        /**
+         * Reads a number, starting with the given first byte.
+         */
+        private long readNumber(int first) throws IOException {
+            boolean negative = first == '-';
+            int ch = negative ? read() : first;
+            if (ch < '0' || ch > '9') {
+                throw error("Invalid number");
+            }
+
+            long value = 0L;
+            while (true) {
+                int digit = ch - '0';
+                if (value > (Long.MAX_VALUE - digit) / 10L) {
+                    throw error("Number too large");
+                }
+                value = value * 10L + digit;
+                int next = peek();
+                if (next < '0' || next > '9') {
+                    break;
+                }
+                ch = read();
+            }
+
+            int next = peek();
+            if (next == '.' || next == 'e' || next == 'E') {
+                // Rare case, so use the slow path
+                StringBuilder sb = new StringBuilder().append(value);
+                while ((next = peek()) == '.' || next == 'e' || next == 'E'
+                        || next == '+' || next == '-' || (next >= '0' && next <= '9')) {
+                    sb.append((char) read());
+                }
+                try {
+                    value = (long) Double.parseDouble(sb.toString());
+                } catch (NumberFormatException ex) {
+                    throw error("Invalid number");
+                }
+            }
+
+            return negative ? -value : value;
+        }
+
+        /**
+         * Reads a string after the opening quote.
+         */
+        private String readString() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            while (true) {
+                int ch = read();
+                if (ch < 0) {
+                    throw error("Unterminated string");
+                } else if (ch == '"' || ch == '\\') {
+                    sb.append(new String(bytes.toByteArray(), UTF_8));
+                    bytes.reset();
+                    if (ch == '"') {
+                        return sb.toString();
+                    }
+                    sb.append((char) readEscape());
+                } else {
+                    bytes.write(ch);
+                }
+            }
+        }
+
+        /**
+         * Reads an object key after the opening quote, and checks if it matches the
+         * expected name.
+         *
+         * @param expected
+         *            UTF-8 encoded expected name, or {@code null} if no key matches
+         * @return {@code true} if the key matched
+         */
+        private boolean readKey(byte[] expected) throws IOException {
+            boolean matches = expected != null;
+            int ix = 0;
+
+            while (true) {
+                int ch = read();
+                if (ch < 0) {
+                    throw error("Unterminated string");
+                } else if (ch == '"') {
+                    return matches && ix == expected.length;
+                } else if (ch == '\\') {
+                    int escaped = readEscape();
+                    if (matches) {
+                        ix = matchChar(expected, ix, escaped);
+                        matches = ix >= 0;
+                    }
+                } else if (matches) {
+                    matches = ix < expected.length && expected[ix] == (byte) ch;
+                    ix++;
+                }
+            }
+        }
+
+        /**
+         * Compares the UTF-8 encoding of an escaped character with the expected name.
+         *
+         * @return Index of the next byte to compare, or -1 if it does not match
+         */
+        private int matchChar(byte[] expected, int ix, int ch) {
+            if (Character.isSurrogate((char) ch)) {
+                // Escaped surrogate pairs are not supported, and never match
+                return -1;
+            }
+
+            byte[] encoded = String.valueOf((char) ch).getBytes(UTF_8);
+            if (ix + encoded.length > expected.length) {
+                return -1;
+            }
+            for (byte b : encoded) {
+                if (expected[ix++] != b) {
+                    return -1;
+                }
+            }
+            return ix;
+        }
+
+        /**
+         * Reads an escape sequence after the backslash, and returns the character.
+         */
+        private int readEscape() throws IOException {
+            int ch = read();
+            switch (ch) {
+                case '"':
+                case '\\':
+                case '/':
+                    return ch;
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    int value = 0;
+                    for (int ix = 0; ix < 4; ix++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw error("Invalid unicode escape");
+                        }
+                        value = value * 16 + digit;
+                    }
+                    return value;
+                default:
+                    throw error("Invalid escape sequence");
+            }
+        }
+
+        /**
+         * Skips a value, starting with the given first byte.
+         */
+        private void skipValue(int ch) throws IOException {
+            if (ch == '{' || ch == '[') {
+                skipContainer();
+            } else if (ch == '"') {
+                skipString();
+            } else if (ch == '-' || (ch >= '0' && ch <= '9') || ch == 't' || ch == 'f' || ch == 'n') {
+                int next;
+                while ((next = peek()) >= 0 && next != ',' && next != '}' && next != ']'
+                        && !isWhitespace(next)) {
+                    read();
+                }
+            } else {
+                throw error(ch < 0 ? "Unexpected end of document" : "Unexpected character");
+            }
+        }
+
+        /**
+         * Skips an object or array, after the opening bracket.
+         */
+        private void skipContainer() throws IOException {
+            int nesting = 1;
+            while (nesting > 0) {
+                int ch = read();
+                if (ch < 0) {
+                    throw error("Unexpected end of document");
+                } else if (ch == '"') {
+                    skipString();
+                } else if (ch == '{' || ch == '[') {
+                    nesting++;
+                } else if (ch == '}' || ch == ']') {
+                    nesting--;
+                }
+            }
+        }
+
+        /**
+         * Skips a string, after the opening quote.
+         */
+        private void skipString() throws IOException {
+            while (true) {
+                int ch = read();
+                if (ch < 0) {
+                    throw error("Unterminated string");
+                } else if (ch == '"') {
+                    return;
+                } else if (ch == '\\') {
+                    read();
+                }
+            }
+        }
+
+        private void expect(int ch, char expected) throws IOException {
+            if (ch != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private int nextNonWhitespace() throws IOException {
+            int ch;
+            do {
+                ch = read();
+            } while (isWhitespace(ch));
+            return ch;
+        }
+
+        private int peekNonWhitespace() throws IOException {
+            int ch;
+            while (isWhitespace(ch = peek())) {
+                read();
+            }
+            return ch;
+        }
+
+        private boolean isWhitespace(int ch) {
+            return ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t';
+        }
+
+        /**
+         * Reads the next byte, or -1 at the end of the document.
+         */
+        private int read() throws IOException {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        /**
+         * Returns the next byte without consuming it, or -1 at the end of the document.
+         */
+        private int peek() throws IOException {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            return buffer[pos] & 0xFF;
+        }
+
+        /**
+         * Fills the buffer.
+         *
+         * @return {@code false} if the end of the document was reached
+         */
+        private boolean fill() throws IOException {
+            int len = in.read(buffer, 0, buffer.length);
+            if (len <= 0) {
+                return false;
+            }
+            total += len;
+            if (total > maxBytes) {
+                throw new IOException("JSON document exceeds " + maxBytes + " bytes");
+            }
+            pos = 0;
+            limit = len;
+            return true;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at byte " + (total - limit + pos) + " of JSON document");
+        }
+    }
+
+}
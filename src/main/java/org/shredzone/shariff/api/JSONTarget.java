@@ -12,29 +12,104 @@
  */
 package org.shredzone.shariff.api;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.OptionalLong;
 
 import org.json.JSONTokener;
 
 /**
  * An abstract {@link Target} for reading JSON responses.
+ * <p>
+ * Targets either override {@link #extractCount(InputStream)} and use a
+ * {@link JSONPathExtractor}, which does not build the complete JSON document in memory,
+ * or override {@link #extractCount(JSONTokener)} and decode the JSON document.
  *
  * @author Richard "Shred" Körber
  */
 public abstract class JSONTarget extends HttpTarget {
 
+    private static final int MAX_CALLBACK_LENGTH = 256;
+
     @Override
-    protected int extractCount(InputStream in) {
+    protected int extractCount(InputStream in) throws IOException {
         return extractCount(new JSONTokener(in));
     }
 
     /**
-     * Extracts the click counter from the API connection.
+     * Extracts the click counter from the API connection. It is invoked by the default
+     * implementation of {@link #extractCount(InputStream)}.
+     * <p>
+     * The default implementation throws an {@link UnsupportedOperationException}, so
+     * either this method or {@link #extractCount(InputStream)} must be overridden.
      *
      * @param json
      *            decoded JSON that was returned by the API
      * @return Click counter
      */
-    protected abstract int extractCount(JSONTokener json);
+    protected int extractCount(JSONTokener json) {
+        throw new UnsupportedOperationException(getClass().getName()
+                + " must override extractCount(InputStream) or extractCount(JSONTokener)");
+    }
+
+    /**
+     * Returns the first number at the given path of the JSON response as click counter.
+     *
+     * @param extractor
+     *            {@link JSONPathExtractor} of the path
+     * @param in
+     *            {@link InputStream} of the JSON response
+     * @param required
+     *            {@code true} if the number must be present, {@code false} if 0 is to
+     *            be returned then
+     * @return Click counter
+     * @throws IOException
+     *             if the response could not be read, or a required number is missing
+     * @since 1.25
+     */
+    protected int extractCount(JSONPathExtractor extractor, InputStream in, boolean required)
+                throws IOException {
+        OptionalLong count = extractor.first(in);
+        if (required && !count.isPresent()) {
+            throw new IOException("No counter found at " + extractor.getPath());
+        }
+        return toInt(count.orElse(0L));
+    }
+
+    /**
+     * Skips the callback function name and the opening parenthesis of a JSONP response,
+     * so the JSON value that follows can be read from the stream. The stream is read
+     * byte by byte, up to the parenthesis.
+     *
+     * @param in
+     *            {@link InputStream} of the JSONP response
+     * @throws IOException
+     *             if the response could not be read, or is not a JSONP response
+     * @since 1.25
+     */
+    protected static void skipCallback(InputStream in) throws IOException {
+        for (int ix = 0; ix < MAX_CALLBACK_LENGTH; ix++) {
+            int ch = in.read();
+            if (ch == '(') {
+                return;
+            }
+            if (ch < 0 || ch == '{' || ch == '[' || ch == '"') {
+                throw new IOException("Not a JSONP response");
+            }
+        }
+        throw new IOException("JSONP callback name is too long");
+    }
+
+    /**
+     * Converts a click counter to an int, capping it at {@link Integer#MAX_VALUE}.
+     *
+     * @param count
+     *            Click counter
+     * @return Click counter as int
+     * @since 1.25
+     */
+    protected static int toInt(long count) {
+        return (int) Math.max(Math.min(count, Integer.MAX_VALUE), Integer.MIN_VALUE + 1);
+    }
 
 }
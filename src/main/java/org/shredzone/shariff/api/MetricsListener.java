@@ -0,0 +1,107 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff.api;
+
+/**
+ * Receives metrics of the caches, the targets and the backend executor.
+ * <p>
+ * The callbacks are invoked synchronously by the thread that caused the event, some of
+ * them while a cache lock is held. Implementations must be thread safe, and must return
+ * quickly without blocking. All methods do nothing by default, so implementations only
+ * need to override the events they are interested in.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public interface MetricsListener {
+
+    /**
+     * A cache read was answered from the cache. This includes expired elements that
+     * are served while they are refreshed in background.
+     * <p>
+     * Every cache read reports exactly one of {@link #onCacheHit()},
+     * {@link #onCacheMiss()} and {@link #onCacheExpiry()}.
+     */
+    default void onCacheHit() {
+        // default: do nothing
+    }
+
+    /**
+     * A cache read found no element, so the value is fetched.
+     */
+    default void onCacheMiss() {
+        // default: do nothing
+    }
+
+    /**
+     * A cache read found an element that has expired and cannot be served anymore, so
+     * the value is fetched again.
+     */
+    default void onCacheExpiry() {
+        // default: do nothing
+    }
+
+    /**
+     * An element was evicted from the cache, to make room for a new element.
+     */
+    default void onCacheEviction() {
+        // default: do nothing
+    }
+
+    /**
+     * A request to a target is about to be sent.
+     *
+     * @param target
+     *            Target name, as returned by {@link Target#getName()}
+     */
+    default void onFetchStart(String target) {
+        // default: do nothing
+    }
+
+    /**
+     * A request to a target was successful.
+     *
+     * @param target
+     *            Target name, as returned by {@link Target#getName()}
+     * @param nanos
+     *            Duration of the request, in nanoseconds
+     */
+    default void onFetchSuccess(String target, long nanos) {
+        // default: do nothing
+    }
+
+    /**
+     * A request to a target has failed.
+     *
+     * @param target
+     *            Target name, as returned by {@link Target#getName()}
+     * @param nanos
+     *            Duration of the request until it failed, in nanoseconds
+     * @param cause
+     *            Cause of the failure
+     */
+    default void onFetchFailure(String target, long nanos, Throwable cause) {
+        // default: do nothing
+    }
+
+    /**
+     * A task of the backend executor was started.
+     *
+     * @param nanos
+     *            Time the task was waiting in the executor queue, in nanoseconds
+     */
+    default void onQueueWait(long nanos) {
+        // default: do nothing
+    }
+
+}
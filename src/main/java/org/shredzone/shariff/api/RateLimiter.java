@@ -0,0 +1,60 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff.api;
+
+/**
+ * Limits the rate of requests that are sent to a target.
+ * <p>
+ * Targets that report their quota usage (e.g. in a response header) feed it back to the
+ * limiter, so the request rate can be reduced before the quota is exhausted.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public interface RateLimiter {
+
+    /**
+     * Checks if a request may be sent now. Returns immediately.
+     *
+     * @return {@code true} if the request may be sent, {@code false} if it must not be
+     *         sent
+     */
+    boolean tryAcquire();
+
+    /**
+     * Reports the quota usage that was returned by the target.
+     *
+     * @param percent
+     *            Used quota, in percent. May exceed 100 if the quota is exceeded.
+     */
+    void onUsage(int percent);
+
+    /**
+     * Returns {@code true} if the request rate is currently reduced, because the quota
+     * is about to be exhausted.
+     */
+    boolean isThrottled();
+
+    /**
+     * Returns the estimated time until the next request may be sent. Returns
+     * immediately, and does not take a permit.
+     * <p>
+     * The default implementation returns 0.
+     *
+     * @return Delay in nanoseconds, or 0 if a request may be sent now
+     */
+    default long getDelayNanos() {
+        return 0L;
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects counter lookups of a target, and fetches them with a single request.
+ * <p>
+ * The first lookup opens a batch. The batch is sent when the collection window has
+ * elapsed, or as soon as it contains the maximum number of URLs, whatever happens first.
+ * The result is then split back to the individual lookups. Lookups that have been
+ * cancelled before the batch was sent are not part of the request.
+ * <p>
+ * If a {@link ScheduledExecutorService} is passed in, it sends the batch when the
+ * collection window has elapsed. Otherwise a thread of the {@link Executor} is waiting
+ * for the collection window.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class RequestBatcher {
+
+    private final BatchFunction function;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private Batch current;
+
+    /**
+     * Creates a new {@link RequestBatcher}.
+     *
+     * @param function
+     *            {@link BatchFunction} that fetches the counters of a batch
+     * @param maxBatchSize
+     *            Maximum number of URLs in a batch
+     * @param window
+     *            Maximum time to collect URLs for a batch
+     * @param unit
+     *            {@link TimeUnit} of window
+     */
+    public RequestBatcher(BatchFunction function, int maxBatchSize, long window, TimeUnit unit) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.function = function;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = unit.toNanos(window);
+    }
+
+    /**
+     * Returns the maximum number of URLs in a batch.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Adds a counter lookup to the current batch. A thread of the {@link Executor} waits
+     * for the collection window.
+     *
+     * @param url
+     *            URL to get the counter of
+     * @param executor
+     *            {@link Executor} that sends the batch
+     * @return {@link CompletionStage} that is completed with the click counter for this
+     *         url, or completed exceptionally if the counter could not be retrieved
+     */
+    public CompletionStage<Integer> submit(String url, Executor executor) {
+        return submit(url, executor, null);
+    }
+
+    /**
+     * Adds a counter lookup to the current batch.
+     *
+     * @param url
+     *            URL to get the counter of
+     * @param executor
+     *            {@link Executor} that sends the batch
+     * @param scheduler
+     *            {@link ScheduledExecutorService} that hands the batch to the executor
+     *            when the collection window has elapsed, or {@code null} if a thread of
+     *            the executor is to wait for the collection window
+     * @return {@link CompletionStage} that is completed with the click counter for this
+     *         url, or completed exceptionally if the counter could not be retrieved
+     */
+    public CompletionStage<Integer> submit(String url, Executor executor,
+                ScheduledExecutorService scheduler) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        Batch batch;
+        boolean opened = false;
+        boolean full = false;
+
+        synchronized (this) {
+            if (current == null) {
+                current = new Batch(System.nanoTime() + windowNanos);
+                opened = true;
+            }
+            batch = current;
+            if (batch.add(url, result) >= maxBatchSize) {
+                current = null;
+                full = true;
+            }
+        }
+
+        try {
+            if (scheduler == null) {
+                if (full) {
+                    batch.close();
+                }
+                if (opened) {
+                    executor.execute(() -> awaitAndSend(batch));
+                }
+            } else if (full) {
+                dispatch(batch, executor);
+            } else if (opened) {
+                batch.setTimer(scheduler.schedule(() -> dispatch(batch, executor),
+                        windowNanos, TimeUnit.NANOSECONDS));
+            }
+        } catch (RuntimeException ex) {
+            synchronized (this) {
+                if (current == batch) {
+                    current = null;
+                }
+            }
+            batch.fail(ex);
+        }
+
+        return result;
+    }
+
+    /**
+     * Closes the batch and hands it to the executor for sending, unless it has already
+     * been closed before.
+     */
+    private void dispatch(Batch batch, Executor executor) {
+        synchronized (this) {
+            if (current == batch) {
+                current = null;
+            }
+        }
+
+        if (batch.close()) {
+            try {
+                executor.execute(() -> send(batch));
+            } catch (RuntimeException ex) {
+                batch.fail(ex);
+            }
+        }
+    }
+
+    /**
+     * Waits until the batch is complete, and then sends it.
+     */
+    private void awaitAndSend(Batch batch) {
+        try {
+            batch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            if (current == batch) {
+                current = null;
+            }
+        }
+
+        send(batch);
+    }
+
+    /**
+     * Sends the batch, and completes its lookups.
+     */
+    private void send(Batch batch) {
+        List<String> urls = batch.getPendingUrls();
+        if (urls.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<String, Integer> counts = function.apply(urls);
+            batch.complete(counts);
+        } catch (Throwable ex) {
+            batch.fail(ex);
+        }
+    }
+
+    /**
+     * Fetches the counters of a batch of URLs.
+     */
+    @FunctionalInterface
+    public interface BatchFunction {
+        /**
+         * Fetches the counters of the given URLs.
+         *
+         * @param urls
+         *            URLs to get the counters of, without duplicates
+         * @return Map containing the URL as key, and the counter as value. URLs that
+         *         are missing in the map are considered failed.
+         * @throws IOException
+         *             if the counters could not be retrieved
+         */
+        Map<String, Integer> apply(List<String> urls) throws IOException;
+    }
+
+    /**
+     * A batch of counter lookups.
+     */
+    private static class Batch {
+        private final Map<String, List<CompletableFuture<Integer>>> lookups = new LinkedHashMap<>();
+        private final long deadline;
+        private ScheduledFuture<?> timer;
+        private boolean closed;
+
+        public Batch(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Adds a lookup, and returns the number of different URLs in this batch.
+         */
+        public synchronized int add(String url, CompletableFuture<Integer> future) {
+            lookups.computeIfAbsent(url, k -> new ArrayList<>(1)).add(future);
+            return lookups.size();
+        }
+
+        /**
+         * Sets the timer that sends the batch when the collection window has elapsed.
+         */
+        public synchronized void setTimer(ScheduledFuture<?> timer) {
+            if (closed) {
+                timer.cancel(false);
+            } else {
+                this.timer = timer;
+            }
+        }
+
+        /**
+         * Closes the batch, so it is sent immediately.
+         *
+         * @return {@code true} if the batch was open, {@code false} if it has already
+         *         been closed before
+         */
+        public synchronized boolean close() {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            notifyAll();
+            return true;
+        }
+
+        /**
+         * Waits until the batch is closed or the collection window has elapsed.
+         */
+        public synchronized void await() throws InterruptedException {
+            long remaining;
+            while (!closed && (remaining = deadline - System.nanoTime()) > 0L) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            closed = true;
+        }
+
+        /**
+         * Returns all URLs that still have a lookup waiting for the result.
+         */
+        public synchronized List<String> getPendingUrls() {
+            List<String> result = new ArrayList<>(lookups.size());
+            lookups.forEach((url, futures) -> {
+                if (futures.stream().anyMatch(f -> !f.isDone())) {
+                    result.add(url);
+                }
+            });
+            return result;
+        }
+
+        /**
+         * Completes all lookups with the given counters.
+         */
+        public synchronized void complete(Map<String, Integer> counts) {
+            lookups.forEach((url, futures) -> {
+                Integer count = counts.get(url);
+                for (CompletableFuture<Integer> future : futures) {
+                    if (count != null) {
+                        future.complete(count);
+                    } else {
+                        future.completeExceptionally(new IOException("No counter for " + url));
+                    }
+                }
+            });
+        }
+
+        /**
+         * Fails all lookups with the given exception.
+         */
+        public synchronized void fail(Throwable ex) {
+            lookups.values().forEach(futures -> futures.forEach(f -> f.completeExceptionally(ex)));
+        }
+    }
+
+}
@@ -13,6 +13,9 @@
 package org.shredzone.shariff.api;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 /**
  * A target for getting the URL counter from.
@@ -45,4 +48,36 @@ public interface Target {
      */
     int count(String url) throws IOException;
 
+    /**
+     * Fetches the counter of the target for the given URL, without blocking the caller.
+     * <p>
+     * The default implementation invokes {@link #count(String)} using the given
+     * {@link Executor}. If the returned future is cancelled before the executor has
+     * started the task, the target is not invoked at all. Implementations that are able
+     * to perform non-blocking requests may override this method, and do not need to use
+     * the {@link Executor} then.
+     *
+     * @param url
+     *            URL to get the counter of
+     * @param executor
+     *            {@link Executor} to be used for blocking operations
+     * @return {@link CompletionStage} that is completed with the click counter for this
+     *         url, or completed exceptionally if the counter could not be retrieved
+     * @since 1.25
+     */
+    default CompletionStage<Integer> countAsync(String url, Executor executor) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(count(url));
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
 }
@@ -0,0 +1,136 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff.api;
+
+/**
+ * A {@link RateLimiter} that uses a token bucket.
+ * <p>
+ * The bucket is refilled at a nominal rate, and can hold a limited number of tokens for
+ * bursts. Each request takes a token. When the reported quota usage exceeds a threshold,
+ * the refill rate is reduced linearly, down to 5% of the nominal rate at 100% usage.
+ *
+ * @since 1.25
+ * @author Richard "Shred" Körber
+ */
+public class TokenBucketRateLimiter implements RateLimiter {
+
+    private static final double MIN_RATE_FACTOR = 0.05;
+
+    private final double permitsPerSecond;
+    private final int burst;
+    private int throttleThreshold = 75;
+
+    private double rate;
+    private double tokens;
+    private int usage = 0;
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * Creates a new {@link TokenBucketRateLimiter}.
+     *
+     * @param permitsPerSecond
+     *            Nominal number of requests per second
+     * @param burst
+     *            Maximum number of requests that can be sent at once
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0.0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.rate = permitsPerSecond;
+        this.tokens = burst;
+    }
+
+    /**
+     * Sets the quota usage, in percent, above which the request rate is reduced. Default
+     * is 75.
+     */
+    public synchronized void setThrottleThreshold(int throttleThreshold) {
+        if (throttleThreshold < 0 || throttleThreshold >= 100) {
+            throw new IllegalArgumentException("throttleThreshold must be between 0 and 99");
+        }
+        this.throttleThreshold = throttleThreshold;
+        updateRate();
+    }
+
+    @Override
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void onUsage(int percent) {
+        refill();
+        usage = percent;
+        updateRate();
+        // Do not let a burst of saved tokens exceed the reduced rate
+        tokens = Math.min(tokens, Math.max(burst * rate / permitsPerSecond, 1.0));
+    }
+
+    @Override
+    public synchronized boolean isThrottled() {
+        return usage > throttleThreshold;
+    }
+
+    @Override
+    public synchronized long getDelayNanos() {
+        refill();
+        if (tokens >= 1.0) {
+            return 0L;
+        }
+        return (long) Math.ceil((1.0 - tokens) * 1_000_000_000.0 / rate);
+    }
+
+    /**
+     * Returns the last reported quota usage, in percent.
+     */
+    public synchronized int getUsage() {
+        return usage;
+    }
+
+    /**
+     * Returns the current refill rate, in requests per second.
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * Computes the refill rate from the reported quota usage.
+     */
+    private void updateRate() {
+        if (usage <= throttleThreshold) {
+            rate = permitsPerSecond;
+        } else {
+            double factor = (100.0 - usage) / (100.0 - throttleThreshold);
+            rate = permitsPerSecond * Math.max(factor, MIN_RATE_FACTOR);
+        }
+    }
+
+    /**
+     * Adds the tokens that were refilled since the last invocation.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1_000_000_000.0);
+        lastRefill = now;
+    }
+
+}
@@ -12,8 +12,10 @@
  */
 package org.shredzone.shariff.target;
 
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.shredzone.shariff.api.JSONPathExtractor;
 import org.shredzone.shariff.api.JSONTarget;
 import org.shredzone.shariff.api.TargetName;
 import org.shredzone.shariff.api.TargetUrl;
@@ -27,10 +29,11 @@ import org.shredzone.shariff.api.TargetUrl;
 @TargetUrl("https://api.bufferapp.com/1/links/shares.json?url={}")
 public class Buffer extends JSONTarget {
 
+    private static final JSONPathExtractor COUNT = JSONPathExtractor.compile("shares");
+
     @Override
-    protected int extractCount(JSONTokener json) {
-        JSONObject jo = (JSONObject) json.nextValue();
-        return jo.getInt("shares");
+    protected int extractCount(InputStream in) throws IOException {
+        return extractCount(COUNT, in, true);
     }
 
 }
@@ -13,17 +13,26 @@
 package org.shredzone.shariff.target;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toCollection;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.shredzone.shariff.RateLimitExceededException;
+import org.shredzone.shariff.api.JSONPathExtractor;
 import org.shredzone.shariff.api.JSONTarget;
 import org.shredzone.shariff.api.TargetName;
 import org.slf4j.Logger;
@@ -31,6 +40,17 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Facebook target.
+ * <p>
+ * The usage that is reported in the X-App-Usage header is fed back to the
+ * {@link org.shredzone.shariff.api.RateLimiter}, so requests are throttled before the
+ * app is locked out. There is no rate limit by default. It can be enabled by setting a
+ * {@link org.shredzone.shariff.api.TokenBucketRateLimiter} via
+ * {@link #setRateLimiter(org.shredzone.shariff.api.RateLimiter)}, or via the
+ * "facebook.rateLimit" init parameter of the servlet.
+ * <p>
+ * The Graph API is able to resolve up to {@value #MAX_BATCH_SIZE} URLs in a single
+ * request, so it is recommended to enable batching via
+ * {@link #setBatching(int, long, TimeUnit)}.
  *
  * @author Richard "Shred" Körber
  */
@@ -39,6 +59,14 @@ public class Facebook extends JSONTarget {
 
     private static final String API_VERSION = "v15.0";
 
+    /**
+     * Maximum number of URLs that can be resolved in a single request.
+     */
+    public static final int MAX_BATCH_SIZE = 50;
+
+    private static final JSONPathExtractor COUNT =
+                    JSONPathExtractor.compile("og_object.engagement.count");
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private String appId;
@@ -68,6 +96,52 @@ public class Facebook extends JSONTarget {
         return super.count(url);
     }
 
+    /**
+     * Fetches the counters of up to {@value #MAX_BATCH_SIZE} URLs with a single Graph API
+     * request. URLs containing a comma cannot be part of the request, and are fetched
+     * individually before. If one of the requests is throttled, the entire batch fails
+     * with a {@link org.shredzone.shariff.ThrottledException}.
+     */
+    @Override
+    protected Map<String, Integer> countBatch(List<String> urls) throws IOException {
+        if (appId == null || appSecret == null) {
+            throw new IllegalStateException("You need to set an app id and an app secret");
+        }
+
+        Set<String> ids = urls.stream()
+                .filter(url -> url.indexOf(',') < 0)
+                .limit(MAX_BATCH_SIZE)
+                .collect(toCollection(LinkedHashSet::new));
+
+        Map<String, Integer> result = new HashMap<>();
+        for (String url : urls) {
+            if (!ids.contains(url)) {
+                result.put(url, count(url));
+            }
+        }
+
+        if (ids.size() == 1) {
+            String id = ids.iterator().next();
+            result.put(id, count(id));
+        } else if (!ids.isEmpty()) {
+            acquirePermit();
+            URL connectUrl = new URL("https://graph.facebook.com/" + API_VERSION
+                            + "/?ids=" + URLEncoder.encode(String.join(",", ids), UTF_8.name())
+                            + "&fields=og_object%7Bengagement%7D"
+                            + "&access_token=" + URLEncoder.encode(appId, UTF_8.name())
+                            + '|' + URLEncoder.encode(appSecret, UTF_8.name()));
+            Map<String, Long> counts = request(() -> openConnection(connectUrl), COUNT::sumByKey);
+            for (String id : ids) {
+                Long count = counts.get(id);
+                if (count != null) {
+                    result.put(id, toInt(count));
+                }
+            }
+        }
+
+        return result;
+    }
+
     @Override
     protected HttpURLConnection connect(String url) throws IOException {
         URL connectUrl = new URL("https://graph.facebook.com/" + API_VERSION
@@ -89,21 +163,13 @@ public class Facebook extends JSONTarget {
     }
 
     @Override
-    protected int extractCount(JSONTokener json) {
-        JSONObject jo = (JSONObject) json.nextValue();
-        if (jo.has("og_object")) {
-            JSONObject og = jo.getJSONObject("og_object");
-            if (og.has("engagement")) {
-                JSONObject eo = og.getJSONObject("engagement");
-                return eo.optInt("count");
-            }
-        }
-        return 0;
+    protected int extractCount(InputStream in) throws IOException {
+        return extractCount(COUNT, in, false);
     }
 
     /**
-     * Parses the X-App-Usage header and throws an exception if a rate limit has been
-     * exceeded.
+     * Parses the X-App-Usage header and reports the highest usage to the rate limiter.
+     * Throws an exception if a rate limit has been exceeded.
      *
      * @param header
      *            X-App-Usage header to be checked
@@ -115,11 +181,21 @@ public class Facebook extends JSONTarget {
             JSONTokener tokener = new JSONTokener(header);
             JSONObject jo = (JSONObject) tokener.nextValue();
             Iterator<String> keys = jo.keys();
+            String maxKey = null;
+            int maxVal = 0;
             while (keys.hasNext()) {
                 String key = keys.next();
                 int val = jo.getInt(key);
-                if (val > 100) {
-                    throw new RateLimitExceededException(key + " = " + val + '%');
+                if (maxKey == null || val > maxVal) {
+                    maxKey = key;
+                    maxVal = val;
+                }
+            }
+
+            if (maxKey != null) {
+                reportUsage(maxVal);
+                if (maxVal > 100) {
+                    throw new RateLimitExceededException(maxKey + " = " + maxVal + '%');
                 }
             }
         } catch (JSONException | ClassCastException ex) {
@@ -12,8 +12,10 @@
  */
 package org.shredzone.shariff.target;
 
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.shredzone.shariff.api.JSONPathExtractor;
 import org.shredzone.shariff.api.JSONTarget;
 import org.shredzone.shariff.api.TargetName;
 import org.shredzone.shariff.api.TargetUrl;
@@ -27,11 +29,12 @@ import org.shredzone.shariff.api.TargetUrl;
 @TargetUrl("https://api.pinterest.com/v1/urls/count.json?callback=x&url={}")
 public class Pinterest extends JSONTarget {
 
+    private static final JSONPathExtractor COUNT = JSONPathExtractor.compile("count");
+
     @Override
-    protected int extractCount(JSONTokener json) {
-        json.nextValue(); // Ignore function call
-        JSONObject jo = (JSONObject) json.nextValue();
-        return jo.getInt("count");
+    protected int extractCount(InputStream in) throws IOException {
+        skipCallback(in);
+        return extractCount(COUNT, in, true);
     }
 
 }
@@ -12,9 +12,10 @@
  */
 package org.shredzone.shariff.target;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.shredzone.shariff.api.JSONPathExtractor;
 import org.shredzone.shariff.api.JSONTarget;
 import org.shredzone.shariff.api.TargetName;
 import org.shredzone.shariff.api.TargetUrl;
@@ -28,18 +29,12 @@ import org.shredzone.shariff.api.TargetUrl;
 @TargetUrl("https://www.reddit.com/api/info.json?url={}")
 public class Reddit extends JSONTarget {
 
-    @Override
-    protected int extractCount(JSONTokener json) {
-        JSONObject jo = (JSONObject) json.nextValue();
-
-        int total = 0;
+    private static final JSONPathExtractor SCORES =
+                    JSONPathExtractor.compile("data.children[*].data.score");
 
-        JSONArray children = jo.getJSONObject("data").getJSONArray("children");
-        for (int ix = 0; ix < children.length(); ix++) {
-            total += children.getJSONObject(ix).getJSONObject("data").getInt("score");
-        }
-
-        return total;
+    @Override
+    protected int extractCount(InputStream in) throws IOException {
+        return toInt(SCORES.sum(in, true));
     }
 
 }
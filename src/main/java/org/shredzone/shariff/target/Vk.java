@@ -12,14 +12,10 @@
  */
 package org.shredzone.shariff.target;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.shredzone.shariff.api.HttpTarget;
 import org.shredzone.shariff.api.TargetName;
@@ -34,18 +30,114 @@ import org.shredzone.shariff.api.TargetUrl;
 @TargetUrl("https://vk.com/share.php?act=count&index=1&url={}")
 public class Vk extends HttpTarget {
 
-    private static final Pattern COUNTER = Pattern.compile(
-                    Pattern.quote("VK.Share.count") + "\\(.*?,\\s*(\\d+)\\);.*");
+    private static final byte[] PREFIX = "VK.Share.count(".getBytes(US_ASCII);
+    private static final int BUFFER_SIZE = 64;
+    private static final int MAX_LENGTH = 4096;
+    private static final ThreadLocal<byte[]> BUFFER =
+                    ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
 
+    // States of the counter parser
+    private static final int STATE_PREFIX = 0;
+    private static final int STATE_SCAN = 1;
+    private static final int STATE_COMMA = 2;
+    private static final int STATE_DIGITS = 3;
+    private static final int STATE_PAREN = 4;
+
+    /**
+     * Parses a {@code VK.Share.count(index, count);} response. The count is the number
+     * after the first comma that is followed by a number and {@code );}. Only the first
+     * line of the response is read, and only up to the counter.
+     * <p>
+     * The response is parsed byte by byte, and the counter is computed while reading
+     * its digits, so no strings or other objects are created. The read buffer is reused
+     * by each thread.
+     */
     @Override
     protected int extractCount(InputStream in) throws IOException {
-        BufferedReader r = new BufferedReader(new InputStreamReader(in, UTF_8));
-        String line = r.readLine();
-        Matcher m = COUNTER.matcher(line);
-        if (!m.matches()) {
-            throw new IOException("Cannot parse counter: '" + line + "'");
+        byte[] buffer = BUFFER.get();
+        int state = STATE_PREFIX;
+        int prefixIx = 0;
+        long count = 0L;
+        int total = 0;
+
+        while (true) {
+            int len = in.read(buffer, 0, buffer.length);
+            if (len < 0) {
+                throw new IOException("Cannot parse counter: unexpected end of response");
+            }
+            total += len;
+
+            for (int ix = 0; ix < len; ix++) {
+                int ch = buffer[ix];
+
+                if (ch == '\n' || ch == '\r') {
+                    throw new IOException("Cannot parse counter: no counter in first line");
+                }
+
+                switch (state) {
+                    case STATE_PREFIX:
+                        if (ch != PREFIX[prefixIx++]) {
+                            throw new IOException("Cannot parse counter: unexpected response");
+                        }
+                        if (prefixIx == PREFIX.length) {
+                            state = STATE_SCAN;
+                        }
+                        continue;
+
+                    case STATE_COMMA:
+                        if (isWhitespace(ch)) {
+                            continue;
+                        }
+                        if (isDigit(ch)) {
+                            count = ch - '0';
+                            state = STATE_DIGITS;
+                            continue;
+                        }
+                        break;
+
+                    case STATE_DIGITS:
+                        if (isDigit(ch)) {
+                            // Stop counting on overflow, but keep parsing the digits
+                            if (count <= Integer.MAX_VALUE) {
+                                count = count * 10L + (ch - '0');
+                            }
+                            continue;
+                        }
+                        if (ch == ')') {
+                            state = STATE_PAREN;
+                            continue;
+                        }
+                        break;
+
+                    case STATE_PAREN:
+                        if (ch == ';') {
+                            if (count > Integer.MAX_VALUE) {
+                                throw new IOException("Cannot parse counter: number too large");
+                            }
+                            return (int) count;
+                        }
+                        break;
+
+                    default:
+                        break;
+                }
+
+                // No match (yet), so look for the next comma
+                state = ch == ',' ? STATE_COMMA : STATE_SCAN;
+            }
+
+            if (total > MAX_LENGTH) {
+                throw new IOException("Cannot parse counter: response too long");
+            }
         }
-        return Integer.parseInt(m.group(1));
+    }
+
+    private static boolean isDigit(int ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isWhitespace(int ch) {
+        return ch == ' ' || ch == '\t' || ch == '\f' || ch == 0x0B;
     }
 
 }
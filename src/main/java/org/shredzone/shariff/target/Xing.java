@@ -15,13 +15,13 @@ package org.shredzone.shariff.target;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
 
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import org.shredzone.shariff.api.JSONPathExtractor;
 import org.shredzone.shariff.api.JSONTarget;
 import org.shredzone.shariff.api.TargetName;
 
@@ -33,6 +33,8 @@ import org.shredzone.shariff.api.TargetName;
 @TargetName("xing")
 public class Xing extends JSONTarget {
 
+    private static final JSONPathExtractor COUNT = JSONPathExtractor.compile("share_counter");
+
     @Override
     protected HttpURLConnection connect(String url) throws IOException {
         URL connectUrl = new URL("https://www.xing-share.com/spi/shares/statistics");
@@ -54,9 +56,8 @@ public class Xing extends JSONTarget {
     }
 
     @Override
-    protected int extractCount(JSONTokener json) {
-        JSONObject jo = (JSONObject) json.nextValue();
-        return jo.getInt("share_counter");
+    protected int extractCount(InputStream in) throws IOException {
+        return extractCount(COUNT, in, true);
     }
 
 }
@@ -0,0 +1,207 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests for {@link AsyncShariffServlet}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class AsyncShariffServletTest {
+
+    private static final String TEST_URL = "http://example.com/testpage";
+    private static final String OTHER_URL = "http://example.com/otherpage";
+
+    private AsyncShariffServlet servlet;
+    private CompletableFuture<CountResult> counts;
+
+    @Before
+    @SuppressWarnings("serial")
+    public void setup() {
+        counts = new CompletableFuture<>();
+
+        servlet = new AsyncShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                ShariffBackend backend = mock(ShariffBackend.class);
+                when(backend.getCountsAsync(TEST_URL)).thenReturn(counts);
+                when(backend.getCountsAsync(OTHER_URL)).thenReturn(CompletableFuture.completedFuture(
+                        new CountResult(Collections.singletonMap("facebook", 1), Collections.emptySet())));
+                return backend;
+            }
+        };
+    }
+
+    @Test
+    public void cacheMissAndHitTest() throws IOException {
+        // First request is a cache miss, and is processed asynchronously
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest req = createRequest();
+        HttpServletResponse resp = createResponse(out);
+        AsyncContext ctx = mock(AsyncContext.class);
+        when(req.startAsync(req, resp)).thenReturn(ctx);
+        when(ctx.getRequest()).thenReturn(req);
+        when(ctx.getResponse()).thenReturn(resp);
+
+        servlet.doGet(req, resp);
+
+        verify(req).startAsync(req, resp);
+        verify(ctx).setTimeout(15000L);
+        verify(ctx, never()).complete();
+        assertThat(out.toString("UTF-8"), is(""));
+
+        counts.complete(new CountResult(createCounts(), Collections.emptySet()));
+
+        verify(ctx).complete();
+        verify(resp, never()).sendError(anyInt(), anyString());
+        verify(resp).setContentType("application/json");
+        assertThat(out.toString("UTF-8"), is("{\"facebook\":123,\"reddit\":456}"));
+
+        // Second request is a cache hit, and is answered immediately
+        ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+        HttpServletRequest req2 = createRequest();
+        HttpServletResponse resp2 = createResponse(out2);
+
+        servlet.doGet(req2, resp2);
+
+        verify(req2, never()).startAsync(any(), any());
+        assertThat(out2.toString("UTF-8"), is("{\"facebook\":123,\"reddit\":456}"));
+    }
+
+    @Test
+    public void batchTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest req = createRequest();
+        when(req.getParameterValues("url")).thenReturn(new String[] {OTHER_URL, TEST_URL});
+        HttpServletResponse resp = createResponse(out);
+        AsyncContext ctx = mock(AsyncContext.class);
+        when(req.startAsync(req, resp)).thenReturn(ctx);
+        when(ctx.getRequest()).thenReturn(req);
+        when(ctx.getResponse()).thenReturn(resp);
+
+        servlet.doGet(req, resp);
+
+        // One of the URLs is a cache miss, so the batch is processed asynchronously
+        verify(req).startAsync(req, resp);
+        verify(ctx, never()).complete();
+        assertThat(out.toString("UTF-8"), is(""));
+
+        counts.complete(new CountResult(createCounts(), Collections.emptySet()));
+
+        verify(ctx).complete();
+        verify(resp, never()).sendError(anyInt(), anyString());
+        assertThat(out.toString("UTF-8"), is("{"
+                + "\"http://example.com/otherpage\":{\"facebook\":1},"
+                + "\"http://example.com/testpage\":{\"facebook\":123,\"reddit\":456}}"));
+    }
+
+    @Test
+    public void timeoutTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest req = createRequest();
+        HttpServletResponse resp = createResponse(out);
+        AsyncContext ctx = mock(AsyncContext.class);
+        when(req.startAsync(req, resp)).thenReturn(ctx);
+        when(ctx.getResponse()).thenReturn(resp);
+
+        servlet.doGet(req, resp);
+
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(ctx).addListener(listener.capture());
+
+        listener.getValue().onTimeout(new AsyncEvent(ctx));
+
+        verify(resp).sendError(eq(HttpServletResponse.SC_GATEWAY_TIMEOUT), anyString());
+        verify(ctx).complete();
+
+        // Late results must not be written
+        counts.complete(new CountResult(createCounts(), Collections.emptySet()));
+        verify(ctx, times(1)).complete();
+        assertThat(out.toString("UTF-8"), is(""));
+    }
+
+    @Test
+    public void noUrlTest() throws IOException {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getParameter("url")).thenReturn(null);
+
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+
+        servlet.doGet(req, resp);
+
+        verify(resp).sendError(HttpServletResponse.SC_BAD_REQUEST, "missing url parameter");
+        verify(req, never()).startAsync(any(), any());
+    }
+
+    @Test
+    public void initTest() throws ServletException {
+        AsyncShariffServlet realServlet = new AsyncShariffServlet();
+
+        ServletConfig config = mock(ServletConfig.class);
+        when(config.getInitParameter("async.timeoutMs")).thenReturn("5000");
+
+        realServlet.init(config);
+
+        assertThat(realServlet.asyncTimeoutMs, is(5000L));
+    }
+
+    private HttpServletRequest createRequest() {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getParameter("url")).thenReturn(TEST_URL);
+        when(req.getServerName()).thenReturn("example.com");
+        return req;
+    }
+
+    private HttpServletResponse createResponse(ByteArrayOutputStream out) throws IOException {
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+        });
+        return resp;
+    }
+
+    private Map<String, Integer> createCounts() {
+        Map<String, Integer> result = new TreeMap<>();
+        result.put("facebook", 123);
+        result.put("reddit", 456);
+        return result;
+    }
+
+}
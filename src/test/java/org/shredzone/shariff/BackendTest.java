@@ -14,13 +14,32 @@ package org.shredzone.shariff;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeThat;
+import static org.mockito.Mockito.*;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
+import org.shredzone.shariff.api.HttpTarget;
+import org.shredzone.shariff.api.MetricsListener;
+import org.shredzone.shariff.api.RateLimiter;
 import org.shredzone.shariff.api.Target;
 import org.shredzone.shariff.target.AddThis;
 import org.shredzone.shariff.target.Buffer;
@@ -100,6 +119,586 @@ public class BackendTest {
         assertThat(counts.get("xing"), is(30));
     }
 
+    @Test
+    public void getCountsOfTargetsTest() {
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(
+                        new TestTarget("facebook", 10),
+                        new TestTarget("reddit", 20),
+                        new TestTarget("xing", 30)
+                );
+            }
+        };
+
+        CountResult result = backend.getCountsAsync(TEST_URL, Arrays.asList("reddit", "foo")).join();
+        assertThat(result.getCounts().size(), is(1));
+        assertThat(result.getCounts().get("reddit"), is(20));
+
+        CountResult deadline = backend.getCountsAsync(TEST_URL, Arrays.asList("facebook", "xing"),
+                1L, TimeUnit.MINUTES).join();
+        assertThat(deadline.getCounts().keySet(), containsInAnyOrder("facebook", "xing"));
+    }
+
+    @Test
+    public void getBatchCountsTest() {
+        FailingTarget facebook = new FailingTarget("facebook", 10);
+        FailingTarget reddit = new FailingTarget("reddit", 20);
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(facebook, reddit);
+            }
+        };
+
+        Map<String, Map<String, Integer>> counts = backend.getCounts(Arrays.asList(
+                "http://example.com/b", "http://example.com/a", "http://example.com/b"));
+
+        assertThat(counts.keySet(), contains("http://example.com/b", "http://example.com/a"));
+        assertThat(counts.get("http://example.com/a").get("facebook"), is(10));
+        assertThat(counts.get("http://example.com/b").get("reddit"), is(20));
+
+        // Duplicate URLs are only fetched once
+        assertThat(facebook.invocations.get(), is(2));
+        assertThat(reddit.invocations.get(), is(2));
+    }
+
+    @Test(timeout = 10000L)
+    public void coalescedCountsTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingTarget facebook = new BlockingTarget("facebook", 10, release);
+        BlockingTarget reddit = new BlockingTarget("reddit", 20, release);
+
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(facebook, reddit);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<Map<String, Integer>> first = executor.submit(() -> backend.getCounts(TEST_URL));
+            Future<Map<String, Integer>> second = executor.submit(() -> backend.getCounts(TEST_URL));
+            Future<Map<String, Integer>> third = executor.submit(() -> backend.getCounts(TEST_URL));
+
+            while (backend.getCoalescedCount() < 4) {
+                TimeUnit.MILLISECONDS.sleep(10L);
+            }
+            release.countDown();
+
+            for (Future<Map<String, Integer>> result : Arrays.asList(first, second, third)) {
+                assertThat(result.get().get("facebook"), is(10));
+                assertThat(result.get().get("reddit"), is(20));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(facebook.invocations.get(), is(1));
+        assertThat(reddit.invocations.get(), is(1));
+        assertThat(backend.getCoalescedCount(), is(4L));
+
+        // Fetches that are not in progress anymore must not be shared
+        release.countDown();
+        backend.getCounts(TEST_URL);
+        assertThat(facebook.invocations.get(), is(2));
+        assertThat(reddit.invocations.get(), is(2));
+        assertThat(backend.getCoalescedCount(), is(4L));
+    }
+
+    @Test(timeout = 10000L)
+    public void deadlineTest() {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingTarget slow = new BlockingTarget("reddit", 20, release);
+        BlockingTarget queued = new BlockingTarget("xing", 30, release);
+
+        ShariffBackend backend = new ShariffBackend(null, 2) {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(new TestTarget("facebook", 10), slow, queued);
+            }
+        };
+
+        CountResult result = backend.getCounts(TEST_URL, 200L, TimeUnit.MILLISECONDS);
+        release.countDown();
+
+        assertThat(result.isComplete(), is(false));
+        assertThat(result.getCounts().size(), is(1));
+        assertThat(result.getCounts().get("facebook"), is(10));
+        assertThat(result.getTimedOut(), containsInAnyOrder("reddit", "xing"));
+
+        // The cancelled fetch must not be shared with the next request
+        Map<String, Integer> counts = backend.getCounts(TEST_URL);
+        assertThat(counts.size(), is(3));
+        assertThat(backend.getCoalescedCount(), is(0L));
+    }
+
+    @Test(timeout = 10000L)
+    public void cancelQueuedTest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingTarget slow = new BlockingTarget("facebook", 10, release);
+        BlockingTarget queued = new BlockingTarget("reddit", 20, release);
+
+        ShariffBackend backend = new ShariffBackend(null, 1) {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(slow, queued);
+            }
+        };
+
+        CountResult result = backend.getCounts(TEST_URL, 100L, TimeUnit.MILLISECONDS);
+        assertThat(result.getCounts().isEmpty(), is(true));
+        assertThat(result.getTimedOut(), containsInAnyOrder("facebook", "reddit"));
+
+        // The queued fetch was cancelled, and must not be invoked anymore
+        release.countDown();
+        backend.getCounts(TEST_URL);
+        assertThat(slow.invocations.get(), is(2));
+        assertThat(queued.invocations.get(), is(1));
+    }
+
+    @Test(timeout = 10000L)
+    public void maxThreadsTest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingTarget slow = new BlockingTarget("facebook", 10, release);
+        BlockingTarget queued = new BlockingTarget("reddit", 20, release);
+
+        ShariffBackend backend = new ShariffBackend(null, 1) {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(slow, queued);
+            }
+        };
+        assertThat(backend.getMaxThreads(), is(1));
+
+        CompletableFuture<CountResult> future = backend.getCountsAsync(TEST_URL);
+        while (slow.invocations.get() == 0) {
+            Thread.sleep(10L);
+        }
+        assertThat(queued.invocations.get(), is(0));
+
+        // Another thread picks up the queued fetch while the first one is blocked
+        backend.setMaxThreads(2);
+        assertThat(backend.getMaxThreads(), is(2));
+        while (queued.invocations.get() == 0) {
+            Thread.sleep(10L);
+        }
+
+        release.countDown();
+        assertThat(future.join().getCounts().size(), is(2));
+
+        backend.setMaxThreads(1);
+        assertThat(backend.getMaxThreads(), is(1));
+        assertThat(backend.getCounts(TEST_URL).size(), is(2));
+
+        try {
+            backend.setMaxThreads(0);
+            fail("0 threads accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void virtualThreadsTest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingTarget slow = new BlockingTarget("facebook", 10, release);
+        BlockingTarget queued = new BlockingTarget("reddit", 20, release);
+
+        // Falls back to a thread pool before Java 21
+        ShariffBackend backend = new ShariffBackend(null, 1, true) {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(slow, queued);
+            }
+        };
+        assertThat(backend.isVirtualThreads(), is(ShariffBackend.isVirtualThreadSupported()));
+        assertThat(backend.getMaxThreads(), is(1));
+
+        CompletableFuture<CountResult> future = backend.getCountsAsync(TEST_URL);
+        while (slow.invocations.get() == 0) {
+            Thread.sleep(10L);
+        }
+        Thread.sleep(50L);
+        assertThat(queued.invocations.get(), is(0));
+
+        backend.setMaxThreads(2);
+        while (queued.invocations.get() == 0) {
+            Thread.sleep(10L);
+        }
+
+        release.countDown();
+        assertThat(future.join().getCounts().size(), is(2));
+    }
+
+    @Test(timeout = 10000L)
+    public void concurrencyLimitTest() throws InterruptedException {
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(10);
+
+        ExecutorService threads = Executors.newCachedThreadPool();
+        try {
+            ShariffBackend.ConcurrencyLimit limit = new ShariffBackend.ConcurrencyLimit(task -> {
+                started.incrementAndGet();
+                threads.execute(task);
+            }, 2);
+
+            for (int ix = 0; ix < 10; ix++) {
+                limit.execute(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+
+            // Only a thread for each permit is started, the other tasks are queued
+            while (running.get() < 2) {
+                Thread.sleep(10L);
+            }
+            assertThat(started.get(), is(2));
+
+            limit.setLimit(3);
+            while (running.get() < 3) {
+                Thread.sleep(10L);
+            }
+            assertThat(started.get(), is(3));
+
+            release.countDown();
+            done.await();
+            while (limit.getRunning() > 0) {
+                Thread.sleep(10L);
+            }
+            assertThat(started.get(), is(10));
+            assertThat(maxRunning.get(), is(3));
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void enabledTest() {
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(
+                        new TestTarget("facebook", 10),
+                        new TestTarget("reddit", 20),
+                        new TestTarget("xing", 30)
+                );
+            }
+        };
+        assertThat(backend.isEnabled("reddit"), is(true));
+        assertThat(backend.isEnabled("foo"), is(false));
+
+        backend.setEnabled("reddit", false);
+        assertThat(backend.isEnabled("reddit"), is(false));
+        assertThat(backend.getCounts(TEST_URL).keySet(), containsInAnyOrder("facebook", "xing"));
+        assertThat(backend.getCountsAsync(TEST_URL, Arrays.asList("reddit")).join()
+                .getCounts().isEmpty(), is(true));
+        assertThat(backend.getTargets().size(), is(3));
+
+        backend.setEnabled("reddit", true);
+        assertThat(backend.isEnabled("reddit"), is(true));
+        assertThat(backend.getCounts(TEST_URL).keySet(), containsInAnyOrder("facebook", "reddit", "xing"));
+
+        try {
+            backend.setEnabled("foo", false);
+            fail("unknown target accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void circuitBreakerTest() throws InterruptedException {
+        FailingTarget failing = new FailingTarget("reddit", 20);
+        failing.failure = new IOException("connection refused");
+
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(new TestTarget("facebook", 10), failing);
+            }
+        };
+
+        CircuitBreaker breaker = backend.getCircuitBreaker("reddit");
+        breaker.setFailureThreshold(2);
+        breaker.setOpenDuration(100L, TimeUnit.MILLISECONDS);
+        assertThat(backend.getCircuitBreakers().size(), is(2));
+        assertThat(backend.getCircuitBreaker("xing"), is(nullValue()));
+
+        // Consecutive failures open the breaker
+        for (int ix = 0; ix < 4; ix++) {
+            Map<String, Integer> counts = backend.getCounts(TEST_URL);
+            assertThat(counts.size(), is(1));
+            assertThat(counts.get("facebook"), is(10));
+        }
+        assertThat(failing.invocations.get(), is(2));
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(backend.getCircuitBreaker("facebook").getState(), is(CircuitBreaker.State.CLOSED));
+
+        // A successful probe closes the breaker again
+        TimeUnit.MILLISECONDS.sleep(150L);
+        failing.failure = null;
+        Map<String, Integer> counts = backend.getCounts(TEST_URL);
+        assertThat(counts.get("reddit"), is(20));
+        assertThat(failing.invocations.get(), is(3));
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void circuitBreakerRateLimitTest() {
+        FailingTarget failing = new FailingTarget("facebook", 10);
+        failing.failure = new RateLimitExceededException("app usage 120%");
+
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(failing);
+            }
+        };
+
+        assertThat(backend.getCounts(TEST_URL).isEmpty(), is(true));
+        assertThat(backend.getCounts(TEST_URL).isEmpty(), is(true));
+        assertThat(failing.invocations.get(), is(1));
+        assertThat(backend.getCircuitBreaker("facebook").getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void throttledTest() {
+        FailingTarget throttled = new FailingTarget("facebook", 10);
+        throttled.failure = new ThrottledException("facebook is throttled");
+
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(throttled, new TestTarget("reddit", 20));
+            }
+        };
+
+        CircuitBreaker breaker = backend.getCircuitBreaker("facebook");
+        breaker.setFailureThreshold(1);
+
+        // Throttling is not a failure of the target
+        for (int ix = 0; ix < 3; ix++) {
+            Map<String, Integer> counts = backend.getCounts(TEST_URL);
+            assertThat(counts.size(), is(1));
+            assertThat(counts.get("reddit"), is(20));
+        }
+        assertThat(throttled.invocations.get(), is(3));
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+        assertThat(backend.isThrottled("facebook"), is(false));
+    }
+
+    @Test(timeout = 10000L)
+    public void warmUpTest() throws Exception {
+        FailingTarget target = new FailingTarget("facebook", 10);
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(target);
+            }
+        };
+
+        String list = "http://example.com/1\nhttp://example.com/2\n\n# comment\nhttp://example.com/3\n";
+        assertThat(backend.warmUp(new StringReader(list), 2), is(3));
+        assertThat(target.invocations.get(), is(3));
+    }
+
+    @Test(timeout = 10000L)
+    public void warmUpConcurrencyTest() throws Exception {
+        ShariffBackend backend = new ShariffBackend(Arrays.asList("facebook"));
+
+        StringBuilder list = new StringBuilder();
+        for (int ix = 0; ix < 10; ix++) {
+            list.append("http://example.com/").append(ix).append('\n');
+        }
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            int count = backend.warmUp(new StringReader(list.toString()), 2,
+                    url -> CompletableFuture.runAsync(() -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(10L);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        fetched.add(url);
+                        running.decrementAndGet();
+                    }, executor));
+
+            // All fetches are completed when warmUp returns
+            assertThat(count, is(10));
+            assertThat(fetched, hasSize(10));
+            assertThat(maxRunning.get(), is(lessThanOrEqualTo(2)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void metricsTest() throws Exception {
+        HttpTarget facebook = mock(HttpTarget.class);
+        when(facebook.getName()).thenReturn("facebook");
+        when(facebook.countAsync(eq(TEST_URL), any())).thenAnswer(invocation -> {
+            CompletableFuture<Integer> result = new CompletableFuture<>();
+            invocation.<Executor>getArgument(1).execute(() -> result.complete(10));
+            return result;
+        });
+
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(facebook, new TestTarget("reddit", 20));
+            }
+        };
+
+        MetricsListener listener = mock(MetricsListener.class);
+        backend.setMetricsListener(listener);
+        verify(facebook).setMetricsListener(listener);
+
+        Map<String, Integer> counts = backend.getCounts(TEST_URL);
+        assertThat(counts.get("facebook"), is(10));
+        assertThat(counts.get("reddit"), is(20));
+        verify(listener, times(2)).onQueueWait(longThat(nanos -> nanos >= 0L));
+
+        // No more reports after the listener was removed
+        backend.setMetricsListener(null);
+        backend.getCounts(TEST_URL);
+        verify(listener, times(2)).onQueueWait(anyLong());
+    }
+
+    @Test(timeout = 10000L)
+    public void warmUpRateLimitTest() throws Exception {
+        RateLimiter limiter = mock(RateLimiter.class);
+        when(limiter.getDelayNanos()).thenReturn(1000000L, 1000000L, 0L);
+
+        HttpTarget target = mock(HttpTarget.class);
+        when(target.getName()).thenReturn("facebook");
+        when(target.getRateLimiter()).thenReturn(limiter);
+
+        ShariffBackend backend = new ShariffBackend() {
+            @Override
+            protected List<Target> createTargets() {
+                return Arrays.asList(target);
+            }
+        };
+
+        // The warm-up waits until the rate limiter permits a request
+        assertThat(backend.warmUp(new StringReader("http://example.com/1\n"), 1,
+                url -> CompletableFuture.completedFuture(null)), is(1));
+        verify(limiter, times(3)).getDelayNanos();
+        verify(limiter, never()).tryAcquire();
+    }
+
+    /**
+     * Sends requests to a backend that uses the {@link UpstreamSimulator}, and reports
+     * the latencies. This benchmark is only run if the {@code shariff.benchmark} system
+     * property is set.
+     * <p>
+     * The load can be configured by the system properties {@code shariff.load.rate}
+     * (requests per second, default 50), {@code shariff.load.seconds} (default 10),
+     * {@code shariff.load.urls} (number of different URLs, default 10000), and
+     * {@code shariff.load.threads} (maximum number of backend threads, default is one per
+     * target).
+     */
+    @Test
+    public void loadBenchmark() throws Exception {
+        assumeThat(System.getProperty("shariff.benchmark"), is(notNullValue()));
+
+        double rate = Double.parseDouble(System.getProperty("shariff.load.rate", "50"));
+        int seconds = Integer.getInteger("shariff.load.seconds", 10);
+        int urls = Integer.getInteger("shariff.load.urls", 10000);
+        Integer threads = Integer.getInteger("shariff.load.threads");
+
+        try (UpstreamSimulator simulator = new UpstreamSimulator().realistic()) {
+            ShariffBackend backend = new ShariffBackend(null, threads) {
+                @Override
+                protected List<Target> createTargets() {
+                    return simulator.createTargets();
+                }
+            };
+
+            LoadDriver.Report report = new LoadDriver(256).run(index -> {
+                // Few articles are popular, most are rarely read
+                int article = (int) (urls * Math.pow(ThreadLocalRandom.current().nextDouble(), 3));
+                backend.getCounts("https://www.example.com/article-" + article + ".html");
+            }, rate, seconds, TimeUnit.SECONDS);
+
+            System.out.printf("ShariffBackend.getCounts at %.0f req/s: %s%n", rate, report);
+            assertThat(report.getCount(), is(greaterThan(0)));
+        }
+    }
+
+    @Test
+    public void virtualThreadBenchmark() throws Exception {
+        assumeThat(System.getProperty("shariff.benchmark"), is(notNullValue()));
+
+        int misses = Integer.getInteger("shariff.load.misses", 1000);
+        long latencyMs = Long.getLong("shariff.load.latencyMs", 50L);
+
+        try (UpstreamSimulator simulator = new UpstreamSimulator()) {
+            simulator.defaults().latency(UpstreamSimulator.Latency.logNormal(latencyMs, 0.5));
+
+            benchmarkMisses("thread pool, one thread per target", simulator, null, false, misses);
+            benchmarkMisses("thread pool, " + ShariffBackend.DEFAULT_VIRTUAL_CONCURRENCY + " threads",
+                    simulator, ShariffBackend.DEFAULT_VIRTUAL_CONCURRENCY, false, misses);
+            if (ShariffBackend.isVirtualThreadSupported()) {
+                benchmarkMisses("virtual threads, " + ShariffBackend.DEFAULT_VIRTUAL_CONCURRENCY
+                        + " concurrent fetches", simulator, null, true, misses);
+            } else {
+                System.out.println("Virtual threads: skipped, Java 21 or higher is required");
+            }
+        }
+    }
+
+    /**
+     * Fetches the counters of the given number of different URLs at once, so all of them
+     * are cache misses, and prints the time until all of them are completed.
+     */
+    private void benchmarkMisses(String mode, UpstreamSimulator simulator, Integer threads,
+                boolean virtual, int misses) {
+        ShariffBackend backend = new ShariffBackend(null, threads, virtual) {
+            @Override
+            protected List<Target> createTargets() {
+                return simulator.createTargets();
+            }
+        };
+        assertThat(backend.isVirtualThreads(), is(virtual));
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        List<CompletableFuture<?>> futures = new ArrayList<>(misses);
+        long start = System.nanoTime();
+        for (int ix = 0; ix < misses; ix++) {
+            long begin = System.nanoTime();
+            futures.add(backend.getCountsAsync("https://www.example.com/miss-" + ix + ".html")
+                    .thenRun(() -> latencies.record(System.nanoTime() - begin)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%d concurrent misses, %s: %d ms total, p50 %d ms, p99 %d ms%n",
+                misses, mode,
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                TimeUnit.NANOSECONDS.toMillis(latencies.getPercentile(50.0)),
+                TimeUnit.NANOSECONDS.toMillis(latencies.getPercentile(99.0)));
+        assertThat(latencies.getCount(), is((long) misses));
+    }
+
     /**
      * A mock {@link Target} that returns a fixed name and counter.
      */
@@ -124,4 +723,58 @@ public class BackendTest {
         }
     }
 
+    /**
+     * A mock {@link Target} that fails with an exception if set, and counts its
+     * invocations.
+     */
+    private static class FailingTarget implements Target {
+        private final String name;
+        private final int count;
+        private final AtomicInteger invocations = new AtomicInteger();
+        private volatile IOException failure;
+
+        public FailingTarget(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int count(String url) throws IOException {
+            invocations.incrementAndGet();
+            if (failure != null) {
+                throw failure;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * A mock {@link Target} that waits for a latch, and counts its invocations.
+     */
+    private static class BlockingTarget extends TestTarget {
+        private final CountDownLatch latch;
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        public BlockingTarget(String name, int count, CountDownLatch latch) {
+            super(name, count);
+            this.latch = latch;
+        }
+
+        @Override
+        public int count(String url) {
+            invocations.incrementAndGet();
+            try {
+                latch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return super.count(url);
+        }
+    }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assume.assumeThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link CacheSnapshot}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class CacheSnapshotTest {
+
+    private static final List<String> NAMES = Arrays.asList("facebook", "reddit");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripTest() throws IOException {
+        long now = System.currentTimeMillis();
+        Path file = folder.getRoot().toPath().resolve("snapshot.bin");
+
+        ConcurrentCache<String, CachedCounts> cache = new ConcurrentCache<>(100, 1L, TimeUnit.HOURS);
+        cache.restore("http://example.com/1", counts(12, 34, now + 60000L), now + 60000L);
+        cache.restore("http://example.com/2", counts(56, null, now + 120000L), now + 120000L);
+        cache.restore("http://example.com/old", counts(78, 90, now - 3600000L), now - 3600000L);
+
+        assertThat(new CacheSnapshot(file).write(cache, NAMES), is(3));
+        assertThat(Files.exists(file), is(true));
+
+        ConcurrentCache<String, CachedCounts> restored = new ConcurrentCache<>(100, 1L, TimeUnit.HOURS);
+        assertThat(new CacheSnapshot(file).read(restored, now - 60000L), is(2));
+        assertThat(restored.size(), is(2));
+
+        CachedCounts first = restored.get("http://example.com/1");
+        assertThat(first.getCount("facebook"), is(12));
+        assertThat(first.getCount("reddit"), is(34));
+        assertThat(first.getExpiry("facebook"), is(now + 60000L));
+
+        CachedCounts second = restored.get("http://example.com/2");
+        assertThat(second.getCount("facebook"), is(56));
+        assertThat(second.getCount("reddit"), is(nullValue()));
+        assertThat(second.getExpiry("reddit"), is(now + 120000L));
+
+        assertThat(restored.get("http://example.com/old"), is(nullValue()));
+    }
+
+    @Test(expected = IOException.class)
+    public void badFileTest() throws IOException {
+        Path file = folder.newFile("snapshot.bin").toPath();
+        Files.write(file, "not a snapshot".getBytes("utf-8"));
+
+        new CacheSnapshot(file).read(new ConcurrentCache<>(100, 1L, TimeUnit.HOURS), 0L);
+    }
+
+    /**
+     * Measures how long it takes to write and restore one million cache entries. It is
+     * only run if the {@code shariff.benchmark} system property is set.
+     */
+    @Test
+    public void loadMillionEntriesBenchmark() throws IOException {
+        assumeThat(System.getProperty("shariff.benchmark"), is(notNullValue()));
+
+        int entries = 1_000_000;
+        long now = System.currentTimeMillis();
+        Path file = folder.getRoot().toPath().resolve("snapshot.bin");
+        CachedCountsCodec codec = new CachedCountsCodec(NAMES);
+
+        ConcurrentCache<String, CachedCounts> cache = new ConcurrentCache<>(
+                new OffHeapCacheStore<>(512L * 1024L * 1024L, codec), 1L, TimeUnit.HOURS);
+        for (int ix = 0; ix < entries; ix++) {
+            cache.restore("https://www.example.com/blog/article-" + ix + ".html",
+                    counts(ix, ix * 2, now + 60000L), now + 60000L);
+        }
+
+        long start = System.nanoTime();
+        int written = new CacheSnapshot(file).write(cache, NAMES);
+        long writeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        ConcurrentCache<String, CachedCounts> restored = new ConcurrentCache<>(
+                new OffHeapCacheStore<>(512L * 1024L * 1024L, codec), 1L, TimeUnit.HOURS);
+        start = System.nanoTime();
+        int read = new CacheSnapshot(file).read(restored, now);
+        long readMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.printf("Snapshot of %d entries (%d MB): write %d ms, load %d ms%n",
+                written, Files.size(file) / (1024 * 1024), writeMs, readMs);
+
+        assertThat(written, is(entries));
+        assertThat(read, is(entries));
+        assertThat(restored.size(), is(entries));
+    }
+
+    private static CachedCounts counts(Integer facebook, Integer reddit, long expiry) {
+        CachedCounts result = new CachedCounts();
+        result.put("facebook", facebook, expiry);
+        result.put("reddit", reddit, expiry);
+        return result;
+    }
+
+}
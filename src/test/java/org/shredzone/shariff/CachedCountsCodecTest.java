@@ -0,0 +1,60 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CachedCountsCodec}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class CachedCountsCodecTest {
+
+    @Test
+    public void roundTripTest() {
+        CachedCountsCodec codec = new CachedCountsCodec(Arrays.asList("facebook", "reddit", "xing"));
+
+        CachedCounts counts = new CachedCounts();
+        counts.put("facebook", 123456, 1000L);
+        counts.put("reddit", null, 2000L);
+        counts.put("unknown", 42, 3000L);
+
+        byte[] encoded = codec.encode(counts);
+        assertThat(encoded.length, is(1 + 14 + 10 + 22));
+
+        CachedCounts decoded = codec.decode(ByteBuffer.wrap(encoded));
+        assertThat(decoded.getNames(), containsInAnyOrder("facebook", "reddit", "unknown"));
+        assertThat(decoded.getCounts().size(), is(2));
+        assertThat(decoded.getCount("facebook"), is(123456));
+        assertThat(decoded.getCount("reddit"), is(nullValue()));
+        assertThat(decoded.getCount("unknown"), is(42));
+        assertThat(decoded.getExpiry("facebook"), is(1000L));
+        assertThat(decoded.getExpiry("reddit"), is(2000L));
+        assertThat(decoded.getExpiry("unknown"), is(3000L));
+    }
+
+    @Test
+    public void emptyTest() {
+        CachedCountsCodec codec = new CachedCountsCodec(Arrays.asList("facebook"));
+        CachedCounts decoded = codec.decode(ByteBuffer.wrap(codec.encode(new CachedCounts())));
+        assertThat(decoded.getNames(), is(empty()));
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.shredzone.shariff.CountVector.NameTable;
+
+/**
+ * Unit tests for {@link CachedCounts}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class CachedCountsTest {
+
+    @Test
+    public void countsTest() {
+        CachedCounts counts = new CachedCounts();
+        counts.put("facebook", 10, 1000L);
+        counts.put("reddit", null, 500L);
+        counts.put("xing", 30, 2000L);
+
+        assertThat(counts.getCounts().size(), is(2));
+        assertThat(counts.getCount("facebook"), is(10));
+        assertThat(counts.getCount("reddit"), is(nullValue()));
+        assertThat(counts.getNames(), containsInAnyOrder("facebook", "reddit", "xing"));
+        assertThat(counts.getExpiry("xing"), is(2000L));
+        assertThat(counts.getExpiry("foo"), is(0L));
+        assertThat(counts.getExpiry(), is(500L));
+        assertThat(counts.getCountVector().getExpiry(), is(500L));
+
+        counts.put("facebook", null, 3000L);
+        assertThat(counts.getCount("facebook"), is(nullValue()));
+    }
+
+    @Test
+    public void nameTableTest() {
+        NameTable table = new NameTable(Arrays.asList("facebook", "reddit"));
+
+        CachedCounts counts = new CachedCounts(table);
+        counts.put("facebook", 10, 1000L);
+        assertThat(counts.getNameTable(), is(sameInstance(table)));
+        assertThat(counts.getNames(), contains("facebook"));
+        assertThat(counts.getExpiry("reddit"), is(0L));
+
+        // Unknown names extend the table
+        counts.put("xing", 30, 2000L);
+        assertThat(counts.getNameTable().getNames(), contains("facebook", "reddit", "xing"));
+        assertThat(counts.getCount("facebook"), is(10));
+        assertThat(counts.getCount("xing"), is(30));
+        assertThat(counts.getExpiry("facebook"), is(1000L));
+        assertThat(counts.getExpiry("xing"), is(2000L));
+        assertThat(counts.getCountVector().size(), is(2));
+        assertThat(table.size(), is(2));
+    }
+
+    @Test
+    public void expiredTest() {
+        CachedCounts counts = new CachedCounts();
+        counts.put("facebook", 10, 1000L);
+        counts.put("reddit", null, 500L);
+        counts.put("xing", 30, 2000L);
+
+        assertThat(counts.getExpired(Arrays.asList("facebook", "reddit", "xing"), 400L),
+                is(empty()));
+        assertThat(counts.getExpired(Arrays.asList("facebook", "reddit", "xing"), 1000L),
+                containsInAnyOrder("facebook", "reddit"));
+        assertThat(counts.getExpired(Arrays.asList("facebook", "vk"), 400L),
+                containsInAnyOrder("vk"));
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.shredzone.shariff.CircuitBreaker.State;
+
+/**
+ * Unit tests for {@link CircuitBreaker}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class CircuitBreakerTest {
+
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setup() {
+        breaker = new CircuitBreaker("test");
+        breaker.setFailureThreshold(3);
+        breaker.setOpenDuration(100L, TimeUnit.MILLISECONDS);
+        breaker.setRateLimitOpenDuration(300L, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void closedTest() {
+        assertThat(breaker.getName(), is("test"));
+        assertThat(breaker.getState(), is(State.CLOSED));
+
+        for (int ix = 0; ix < 10; ix++) {
+            assertThat(breaker.tryAcquire(), is(true));
+        }
+
+        // Failures that are not consecutive do not open the breaker
+        breaker.onFailure(new IOException());
+        breaker.onFailure(new IOException());
+        breaker.onSuccess();
+        breaker.onFailure(new IOException());
+        assertThat(breaker.getFailures(), is(1));
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    @Test
+    public void openTest() throws InterruptedException {
+        for (int ix = 0; ix < 3; ix++) {
+            assertThat(breaker.tryAcquire(), is(true));
+            breaker.onFailure(new IOException());
+        }
+
+        assertThat(breaker.getState(), is(State.OPEN));
+        assertThat(breaker.getFailures(), is(3));
+        assertThat(breaker.getOpenUntil(), is(greaterThan(System.currentTimeMillis())));
+        assertThat(breaker.tryAcquire(), is(false));
+
+        // After the open duration, a single probe is let through
+        TimeUnit.MILLISECONDS.sleep(150L);
+        assertThat(breaker.getState(), is(State.HALF_OPEN));
+        assertThat(breaker.tryAcquire(), is(true));
+        assertThat(breaker.tryAcquire(), is(false));
+
+        // A failing probe opens the breaker again
+        breaker.onFailure(new IOException());
+        assertThat(breaker.getState(), is(State.OPEN));
+        assertThat(breaker.tryAcquire(), is(false));
+
+        // A successful probe closes the breaker
+        TimeUnit.MILLISECONDS.sleep(150L);
+        assertThat(breaker.tryAcquire(), is(true));
+        breaker.onSuccess();
+        assertThat(breaker.getState(), is(State.CLOSED));
+        assertThat(breaker.getFailures(), is(0));
+        assertThat(breaker.tryAcquire(), is(true));
+    }
+
+    @Test
+    public void cancelledProbeTest() throws InterruptedException {
+        for (int ix = 0; ix < 3; ix++) {
+            breaker.onFailure(new IOException());
+        }
+        TimeUnit.MILLISECONDS.sleep(150L);
+
+        assertThat(breaker.tryAcquire(), is(true));
+        breaker.onCancel();
+        assertThat(breaker.getState(), is(State.HALF_OPEN));
+        assertThat(breaker.tryAcquire(), is(true));
+    }
+
+    @Test
+    public void rateLimitTest() throws InterruptedException {
+        assertThat(breaker.tryAcquire(), is(true));
+        breaker.onFailure(new RateLimitExceededException());
+
+        assertThat(breaker.getState(), is(State.OPEN));
+        assertThat(breaker.tryAcquire(), is(false));
+
+        // Rate limits keep the breaker open for longer
+        TimeUnit.MILLISECONDS.sleep(150L);
+        assertThat(breaker.getState(), is(State.OPEN));
+        assertThat(breaker.tryAcquire(), is(false));
+
+        TimeUnit.MILLISECONDS.sleep(250L);
+        assertThat(breaker.getState(), is(State.HALF_OPEN));
+        assertThat(breaker.tryAcquire(), is(true));
+    }
+
+}
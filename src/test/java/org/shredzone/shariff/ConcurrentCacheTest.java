@@ -0,0 +1,425 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeThat;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.shredzone.shariff.api.MetricsListener;
+
+/**
+ * Unit tests for {@link ConcurrentCache}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ConcurrentCacheTest {
+
+    @Test
+    public void maxEntriesTest() {
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(10, 5, TimeUnit.SECONDS, 1);
+
+        for (int ix = 0; ix < 20; ix++) {
+            cache.put(ix, String.valueOf(ix));
+            assertThat(cache.size(), is(Math.min(ix + 1, 10)));
+        }
+
+        assertThat(cache.size(), is(10));
+
+        int count = 0;
+        for (int ix = 0; ix < 20; ix++) {
+            String data = cache.get(ix);
+            if (data != null) {
+                assertThat(data, is(String.valueOf(ix)));
+                count++;
+            }
+        }
+        assertThat(count, is(10));
+    }
+
+    @Test
+    public void segmentedMaxEntriesTest() {
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(100, 5, TimeUnit.SECONDS, 8);
+
+        for (int ix = 0; ix < 1000; ix++) {
+            cache.put(ix, String.valueOf(ix));
+            assertThat(cache.size(), is(lessThanOrEqualTo(100)));
+        }
+
+        assertThat(cache.size(), is(greaterThan(50)));
+    }
+
+    @Test
+    public void resizeTest() {
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(10, 5, TimeUnit.SECONDS, 1);
+        MetricsListener listener = mock(MetricsListener.class);
+        cache.setMetricsListener(listener);
+
+        for (int ix = 0; ix < 10; ix++) {
+            cache.put(ix, String.valueOf(ix));
+        }
+        for (int ix = 0; ix < 5; ix++) {
+            cache.get(ix);
+        }
+
+        // Shrinking evicts the least recently used entries
+        cache.resize(5);
+        assertThat(cache.size(), is(5));
+        verify(listener, times(5)).onCacheEviction();
+        for (int ix = 0; ix < 5; ix++) {
+            assertThat(cache.get(ix), is(String.valueOf(ix)));
+        }
+
+        // Growing keeps all entries
+        cache.resize(20);
+        for (int ix = 10; ix < 25; ix++) {
+            cache.put(ix, String.valueOf(ix));
+        }
+        assertThat(cache.size(), is(20));
+        assertThat(cache.get(0), is("0"));
+        verify(listener, times(5)).onCacheEviction();
+
+        cache.put(25, "25");
+        assertThat(cache.size(), is(20));
+    }
+
+    @Test
+    public void segmentedResizeTest() {
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(100, 5, TimeUnit.SECONDS, 8);
+        for (int ix = 0; ix < 1000; ix++) {
+            cache.put(ix, String.valueOf(ix));
+        }
+
+        cache.resize(16);
+        assertThat(cache.size(), is(lessThanOrEqualTo(16)));
+
+        // Every segment keeps at least one entry
+        cache.resize(1);
+        assertThat(cache.size(), is(lessThanOrEqualTo(8)));
+
+        try {
+            cache.resize(0);
+            fail("0 entries accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void timeoutTest() {
+        AtomicBoolean expired = new AtomicBoolean(false);
+
+        ConcurrentCache<Integer, Object> cache = new ConcurrentCache<Integer, Object>(10, 5, TimeUnit.SECONDS) {
+            @Override
+            protected boolean isExpired(long expiry) {
+                return expired.get();
+            }
+        };
+
+        // Fill with 10 entries
+        Object[] values = new Object[10];
+        for (int ix = 0; ix < 10; ix++) {
+            values[ix] = new Object();
+            cache.put(ix, values[ix]);
+        }
+
+        // Not expired yet: make sure all entries are present
+        assertThat(cache.size(), is(10));
+        for (int ix = 0; ix < 10; ix++) {
+            assertThat(cache.get(ix), is(notNullValue()));
+        }
+
+        // Now expire all records
+        expired.set(true);
+
+        // Make sure all entries are expired, but still kept for the next fetch
+        for (int ix = 0; ix < 10; ix++) {
+            assertThat(cache.get(ix), is(nullValue()));
+        }
+        assertThat(cache.size(), is(10));
+        for (int ix = 0; ix < 10; ix++) {
+            assertThat(cache.fetch(ix, (key, prev) -> prev), is(sameInstance(values[ix])));
+        }
+    }
+
+    @Test
+    public void fetchTest() {
+        AtomicBoolean expired = new AtomicBoolean(false);
+
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(10, 5, TimeUnit.SECONDS) {
+            @Override
+            protected boolean isExpired(long expiry) {
+                return expired.get();
+            }
+        };
+
+        // Fill with 10 entries
+        for (int ix = 0; ix < 10; ix++) {
+            cache.put(ix, String.valueOf(ix));
+        }
+
+        // Now expire all records
+        expired.set(true);
+
+        // Fetch entries
+        for (int ix = 0; ix < 10; ix++) {
+            String result = cache.fetch(ix, (key, prev) ->
+                key % 2 == 0 ? key + " new" : prev + " old");
+
+            if (ix % 2 == 0) {
+                assertThat(result, is(ix + " new"));
+            } else {
+                assertThat(result, is(ix + " old"));
+            }
+        }
+    }
+
+    @Test
+    public void expireTest() {
+        ConcurrentCache<Integer, Object> cache = new ConcurrentCache<>(10, 5, TimeUnit.SECONDS);
+
+        long now = System.currentTimeMillis();
+
+        assertThat(cache.isExpired(now - 500L), is(true));
+        assertThat(cache.isExpired(now + 500L), is(false));
+    }
+
+    @Test
+    public void staleWhileRevalidateTest() throws InterruptedException {
+        List<Runnable> refreshes = new ArrayList<>();
+
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(10, 200, TimeUnit.MILLISECONDS);
+        cache.setStaleWhileRevalidate(1, TimeUnit.HOURS, refreshes::add);
+        cache.put(1, "old");
+
+        // Fresh: no refresh
+        assertThat(cache.fetch(1, (key, prev) -> "new"), is("old"));
+        assertThat(refreshes, is(empty()));
+
+        // Stale: old value is returned, only one refresh is scheduled
+        TimeUnit.MILLISECONDS.sleep(300L);
+        assertThat(cache.fetch(1, (key, prev) -> prev + " new"), is("old"));
+        assertThat(cache.fetch(1, (key, prev) -> "unexpected"), is("old"));
+        assertThat(cache.get(1), is(nullValue()));
+        assertThat(refreshes, hasSize(1));
+
+        // Refresh is completed
+        refreshes.remove(0).run();
+        assertThat(cache.get(1), is("old new"));
+    }
+
+    @Test
+    public void metricsTest() throws InterruptedException {
+        List<Runnable> refreshes = new ArrayList<>();
+        MetricsListener listener = mock(MetricsListener.class);
+
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(2, 200, TimeUnit.MILLISECONDS, 1);
+        cache.setStaleWhileRevalidate(1, TimeUnit.HOURS, refreshes::add);
+        cache.setMetricsListener(listener);
+
+        assertThat(cache.fetch(1, (key, prev) -> "one"), is("one"));
+        assertThat(cache.fetch(1, (key, prev) -> "unexpected"), is("one"));
+        assertThat(cache.get(2), is(nullValue()));
+        verify(listener, times(1)).onCacheHit();
+        verify(listener, times(2)).onCacheMiss();
+
+        // Evictions are reported by the store
+        cache.put(2, "two");
+        cache.put(3, "three");
+        verify(listener, times(1)).onCacheEviction();
+
+        // Stale elements are hits
+        TimeUnit.MILLISECONDS.sleep(300L);
+        assertThat(cache.fetch(3, (key, prev) -> "unexpected"), is("three"));
+        verify(listener, times(2)).onCacheHit();
+
+        // Expired elements that cannot be served are expiries, but no misses
+        assertThat(cache.get(3), is(nullValue()));
+        verify(listener, times(1)).onCacheExpiry();
+
+        // Restores and reloads are not reported
+        cache.restore(4, "four", System.currentTimeMillis() + 1000L);
+        cache.reload(4, (key, prev) -> CompletableFuture.completedFuture("new"));
+        verify(listener, times(2)).onCacheEviction();
+        verify(listener, times(2)).onCacheMiss();
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void tooStaleTest() throws InterruptedException {
+        List<Runnable> refreshes = new ArrayList<>();
+
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(10, 100, TimeUnit.MILLISECONDS);
+        cache.setStaleWhileRevalidate(100, TimeUnit.MILLISECONDS, refreshes::add);
+        cache.put(1, "old");
+
+        // Too stale: the caller waits for the new value
+        TimeUnit.MILLISECONDS.sleep(300L);
+        assertThat(cache.fetch(1, (key, prev) -> prev + " new"), is("old new"));
+        assertThat(refreshes, is(empty()));
+    }
+
+    /**
+     * A slow fetch of one key must neither block hits nor misses of other keys.
+     */
+    @Test(timeout = 10000L)
+    public void slowFetchDoesNotBlockTest() throws Exception {
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(100, 5, TimeUnit.SECONDS);
+        cache.put("hit", "cached");
+
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(() -> cache.fetch("slow", (key, prev) -> {
+                fetching.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            }));
+
+            fetching.await();
+
+            assertThat(cache.get("hit"), is("cached"));
+            assertThat(cache.fetch("hit", (key, prev) -> "unexpected"), is("cached"));
+            assertThat(cache.fetch("other", (key, prev) -> "other"), is("other"));
+            assertThat(slow.isDone(), is(false));
+
+            release.countDown();
+            assertThat(slow.get(), is("slow"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Concurrent misses of the same key must invoke the provider only once.
+     */
+    @Test(timeout = 10000L)
+    public void sameKeyFetchedOnceTest() throws Exception {
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(100, 5, TimeUnit.SECONDS);
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int ix = 0; ix < threads; ix++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.fetch("key", (key, prev) -> {
+                        invocations.incrementAndGet();
+                        try {
+                            Thread.sleep(100L);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "value";
+                    });
+                }));
+            }
+
+            start.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(), is("value"));
+            }
+            assertThat(invocations.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Measures if the hit throughput grows with the number of reading threads. This
+     * benchmark is only run if the {@code shariff.benchmark} system property is set,
+     * and is skipped on single core machines.
+     */
+    @Test
+    public void hitThroughputBenchmark() throws Exception {
+        assumeThat(System.getProperty("shariff.benchmark"), is(notNullValue()));
+        int cores = Runtime.getRuntime().availableProcessors();
+        assumeThat(cores, is(greaterThan(1)));
+
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(1000, 1, TimeUnit.HOURS);
+        for (int ix = 0; ix < 1000; ix++) {
+            cache.put(ix, String.valueOf(ix));
+        }
+
+        measureHits(cache, 1); // warm up
+        long single = measureHits(cache, 1);
+        long multi = measureHits(cache, cores);
+
+        System.out.printf("Cache hits in 300 ms: %d with 1 thread, %d with %d threads%n",
+                single, multi, cores);
+        assertThat(multi, is(greaterThan(single)));
+    }
+
+    /**
+     * Reads cache entries with the given number of threads for a fixed period of time.
+     *
+     * @return Total number of cache hits
+     */
+    private static long measureHits(ConcurrentCache<Integer, String> cache, int threads)
+                throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int ix = 0; ix < threads; ix++) {
+                int offset = ix * 97;
+                results.add(executor.submit(() -> {
+                    long hits = 0;
+                    int key = offset;
+                    while (running.get()) {
+                        if (cache.get(key % 1000) != null) {
+                            hits++;
+                        }
+                        key++;
+                    }
+                    return hits;
+                }));
+            }
+
+            Thread.sleep(300L);
+            running.set(false);
+
+            long total = 0;
+            for (Future<Long> result : results) {
+                total += result.get();
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
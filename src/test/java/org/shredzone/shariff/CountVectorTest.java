@@ -0,0 +1,193 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+import org.shredzone.shariff.CountVector.NameTable;
+
+/**
+ * Unit tests for {@link CountVector}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class CountVectorTest {
+
+    @Test
+    public void nameTableTest() {
+        NameTable table = new NameTable(Arrays.asList("facebook", "reddit", "facebook", "xing"));
+        assertThat(table.size(), is(3));
+        assertThat(table.getNames(), contains("facebook", "reddit", "xing"));
+        assertThat(table.getName(1), is("reddit"));
+        assertThat(table.indexOf("xing"), is(2));
+        assertThat(table.indexOf("vk"), is(-1));
+
+        assertThat(table.with("reddit"), is(sameInstance(table)));
+
+        NameTable extended = table.with("vk");
+        assertThat(extended.getNames(), contains("facebook", "reddit", "xing", "vk"));
+        assertThat(table.size(), is(3));
+    }
+
+    @Test
+    public void vectorTest() {
+        NameTable table = new NameTable(Arrays.asList("facebook", "reddit", "xing"));
+        CountVector vector = new CountVector(table);
+        assertThat(vector.size(), is(0));
+        assertThat(vector.asMap().isEmpty(), is(true));
+
+        vector.set("facebook", 123);
+        vector.set(2, 0);
+        vector.set("reddit", null);
+
+        assertThat(vector.getNameTable(), is(sameInstance(table)));
+        assertThat(vector.size(), is(2));
+        assertThat(vector.isPresent(0), is(true));
+        assertThat(vector.isPresent(1), is(false));
+        assertThat(vector.getInt(0), is(123));
+        assertThat(vector.get("facebook"), is(123));
+        assertThat(vector.get("reddit"), is(nullValue()));
+        assertThat(vector.get("xing"), is(0));
+        assertThat(vector.get("vk"), is(nullValue()));
+
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("facebook", 123);
+        expected.put("xing", 0);
+
+        Map<String, Integer> map = vector.asMap();
+        assertThat(map, is(expected));
+        assertThat(map.keySet(), contains("facebook", "xing"));
+        assertThat(map.containsKey("reddit"), is(false));
+        assertThat(map.get(42), is(nullValue()));
+        assertThat(vector.toString(), is("{facebook=123, xing=0}"));
+
+        CountVector extended = vector.extend(table.with("vk"));
+        extended.set("vk", 5);
+        assertThat(extended.get("facebook"), is(123));
+        assertThat(extended.get("vk"), is(5));
+        assertThat(vector.get("vk"), is(nullValue()));
+    }
+
+    @Test
+    public void ofTest() {
+        Map<String, Integer> counts = new TreeMap<>();
+        counts.put("facebook", 123);
+        counts.put("reddit", 456);
+
+        CountVector vector = CountVector.of(counts);
+        assertThat(vector.asMap(), is(counts));
+        assertThat(vector.getNameTable().getNames(), contains("facebook", "reddit"));
+
+        // A map view is not copied
+        assertThat(CountVector.of(vector.asMap()), is(sameInstance(vector)));
+
+        // Vectors are equal if the counters are equal, even if their tables differ
+        CountVector other = new CountVector(new NameTable(Arrays.asList("reddit", "xing", "facebook")));
+        other.set("facebook", 123);
+        other.set("reddit", 456);
+        assertThat(other, is(vector));
+        assertThat(other.hashCode(), is(vector.hashCode()));
+    }
+
+    @Test
+    public void modifiableMapTest() {
+        NameTable table = new NameTable(Arrays.asList("facebook", "reddit", "xing"));
+        CountVector vector = new CountVector(table);
+        vector.set("facebook", 123);
+        vector.set("reddit", 456);
+
+        Map<String, Integer> previous = new HashMap<>();
+        previous.put("facebook", 1);
+        previous.put("xing", 2);
+
+        // Extending the counters like the baseline servlet did
+        Map<String, Integer> map = vector.asMap();
+        previous.forEach(map::putIfAbsent);
+        assertThat(map.get("facebook"), is(123));
+        assertThat(map.get("xing"), is(2));
+        assertThat(map.size(), is(3));
+        assertThat(vector.get("xing"), is(nullValue()));
+        assertThat(CountVector.of(map), is(not(sameInstance(vector))));
+        assertThat(CountVector.of(map).get("xing"), is(2));
+
+        map.remove("reddit");
+        assertThat(map.keySet(), contains("facebook", "xing"));
+        assertThat(vector.get("reddit"), is(456));
+
+        // Changes by the iterator of an unmodified view
+        Map<String, Integer> iterated = vector.asMap();
+        Iterator<Map.Entry<String, Integer>> it = iterated.entrySet().iterator();
+        it.next().setValue(7);
+        it.next();
+        it.remove();
+        assertThat(it.hasNext(), is(false));
+        assertThat(iterated, is(Collections.singletonMap("facebook", 7)));
+        assertThat(vector.get("facebook"), is(123));
+        assertThat(vector.get("reddit"), is(456));
+    }
+
+    @Test
+    public void jsonTest() throws IOException {
+        CountVector vector = new CountVector(new NameTable(Arrays.asList("face\"book", "reddit", "xing")));
+        assertThat(new String(vector.getJson(), UTF_8), is("{}"));
+
+        vector.set("face\"book", 123);
+        vector.set("xing", 456);
+
+        byte[] json = vector.getJson();
+        assertThat(new String(json, UTF_8), is("{\"face\\\"book\":123,\"xing\":456}"));
+        assertThat(vector.getJson(), is(sameInstance(json)));
+
+        byte[] gzip = vector.getJsonGzip();
+        assertThat(vector.getJsonGzip(), is(sameInstance(gzip)));
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, len);
+            }
+            assertThat(out.toByteArray(), is(json));
+        }
+
+        String etag = vector.getETag();
+        assertThat(etag, matchesPattern("\"[0-9a-f]+\""));
+        assertThat(vector.getETag(), is(sameInstance(etag)));
+
+        // Changes invalidate the JSON representation
+        vector.set("reddit", 0);
+        assertThat(new String(vector.getJson(), UTF_8), is("{\"face\\\"book\":123,\"reddit\":0,\"xing\":456}"));
+        assertThat(vector.getETag(), is(not(etag)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownNameTest() {
+        new CountVector(new NameTable(Arrays.asList("facebook"))).set("reddit", 1);
+    }
+
+}
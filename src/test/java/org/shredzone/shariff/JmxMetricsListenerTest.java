@@ -0,0 +1,137 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link JmxMetricsListener}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class JmxMetricsListenerTest {
+
+    private MBeanServer server;
+
+    @Before
+    public void setup() {
+        server = MBeanServerFactory.newMBeanServer();
+    }
+
+    @Test
+    public void cacheTest() throws JMException {
+        JmxMetricsListener listener = new JmxMetricsListener("test");
+        assertThat(listener.getCacheMetrics().getHitRatio(), is(0.0));
+
+        listener.onCacheHit();
+        listener.onCacheHit();
+        listener.onCacheHit();
+        listener.onCacheMiss();
+        listener.onCacheExpiry();
+        listener.onCacheEviction();
+        listener.onCacheEviction();
+
+        listener.register(server);
+        ObjectName name = new ObjectName("org.shredzone.shariff:type=Cache,instance=\"test\"");
+        assertThat(server.getAttribute(name, "Hits"), is(3L));
+        assertThat(server.getAttribute(name, "Misses"), is(1L));
+        assertThat(server.getAttribute(name, "Expiries"), is(1L));
+        assertThat(server.getAttribute(name, "Evictions"), is(2L));
+        assertThat(server.getAttribute(name, "HitRatio"), is(0.6));
+    }
+
+    @Test
+    public void executorTest() throws JMException {
+        JmxMetricsListener listener = new JmxMetricsListener("test");
+        listener.register(server);
+
+        listener.onQueueWait(TimeUnit.MILLISECONDS.toNanos(2L));
+        listener.onQueueWait(TimeUnit.MILLISECONDS.toNanos(4L));
+
+        ObjectName name = new ObjectName("org.shredzone.shariff:type=Executor,instance=\"test\"");
+        assertThat(server.getAttribute(name, "Count"), is(2L));
+        assertThat((Double) server.getAttribute(name, "MeanMillis"), is(closeTo(3.0, 0.001)));
+        assertThat((Double) server.getAttribute(name, "MedianMillis"), is(closeTo(2.0, 0.25)));
+        assertThat(server.getAttribute(name, "MaxMillis"), is(4.0));
+        assertThat(listener.getQueueWaitMetrics().getP99Millis(), is(4.0));
+    }
+
+    @Test
+    public void targetTest() throws JMException {
+        JmxMetricsListener listener = new JmxMetricsListener("test");
+        listener.onFetchStart("early");
+        listener.onFetchSuccess("early", 1000L);
+
+        listener.register(server);
+        assertThat(server.isRegistered(new ObjectName(
+                "org.shredzone.shariff:type=Target,name=\"early\",instance=\"test\"")), is(true));
+
+        // A target that is used after registration is registered on the fly
+        ObjectName name = new ObjectName(
+                "org.shredzone.shariff:type=Target,name=\"facebook\",instance=\"test\"");
+        assertThat(server.isRegistered(name), is(false));
+        assertThat(listener.getTargetMetrics("facebook"), is(nullValue()));
+
+        listener.onFetchStart("facebook");
+        listener.onFetchStart("facebook");
+        assertThat(server.getAttribute(name, "InFlight"), is(2L));
+
+        listener.onFetchSuccess("facebook", TimeUnit.MILLISECONDS.toNanos(10L));
+        listener.onFetchFailure("facebook", TimeUnit.MILLISECONDS.toNanos(30L), new IOException("failed"));
+
+        assertThat(server.getAttribute(name, "InFlight"), is(0L));
+        assertThat(server.getAttribute(name, "Count"), is(2L));
+        assertThat(server.getAttribute(name, "Failures"), is(1L));
+        assertThat(server.getAttribute(name, "FailureRatio"), is(0.5));
+        assertThat(server.getAttribute(name, "MaxMillis"), is(30.0));
+        assertThat(listener.getTargetMetrics("facebook").getFailures(), is(1L));
+    }
+
+    @Test
+    public void unregisterTest() throws JMException {
+        JmxMetricsListener listener = new JmxMetricsListener("test");
+        listener.register(server);
+        listener.onFetchStart("reddit");
+        assertThat(server.queryNames(new ObjectName("org.shredzone.shariff:*"), null), hasSize(3));
+
+        // Another instance can be registered besides
+        JmxMetricsListener other = new JmxMetricsListener("other");
+        other.register(server);
+        assertThat(server.queryNames(new ObjectName("org.shredzone.shariff:*"), null), hasSize(5));
+
+        listener.unregister();
+        assertThat(server.queryNames(new ObjectName("org.shredzone.shariff:*"), null), hasSize(2));
+
+        // Unregistering twice is harmless, and metrics are still collected
+        listener.unregister();
+        listener.onCacheHit();
+        assertThat(listener.getCacheMetrics().getHits(), is(1L));
+
+        // The listener can be registered again
+        listener.register(server);
+        assertThat(server.queryNames(new ObjectName("org.shredzone.shariff:*"), null), hasSize(5));
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketTest() {
+        long[] values = {0L, 1L, 15L, 16L, 17L, 18L, 1000L, 123456789L,
+                Long.MAX_VALUE / 3, Long.MAX_VALUE};
+
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(value + " above bucket", LatencyHistogram.upperBoundOf(index),
+                    is(greaterThanOrEqualTo(value)));
+            if (index > 0) {
+                assertThat(value + " below bucket", LatencyHistogram.upperBoundOf(index - 1),
+                        is(lessThan(value)));
+            }
+            // bucket width is at most 12.5% of the value
+            assertThat(LatencyHistogram.upperBoundOf(index) - value,
+                    is(lessThanOrEqualTo(value / 8)));
+        }
+
+        // Buckets are contiguous
+        for (int ix = 1; ix < LatencyHistogram.indexOf(Long.MAX_VALUE); ix++) {
+            assertThat(LatencyHistogram.indexOf(LatencyHistogram.upperBoundOf(ix - 1) + 1), is(ix));
+        }
+    }
+
+    @Test
+    public void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getMean(), is(0.0));
+        assertThat(histogram.getMax(), is(0L));
+        assertThat(histogram.getPercentile(99.0), is(0L));
+
+        for (long ix = 1; ix <= 1000; ix++) {
+            histogram.record(ix * 1000L);
+        }
+        histogram.record(-5L);
+
+        assertThat(histogram.getCount(), is(1001L));
+        assertThat(histogram.getMean(), is(closeTo(500000.0, 500.0)));
+        assertThat(histogram.getMax(), is(1000000L));
+        assertThat((double) histogram.getPercentile(50.0), is(closeTo(500000.0, 500000.0 / 8)));
+        assertThat((double) histogram.getPercentile(99.0), is(closeTo(990000.0, 990000.0 / 8)));
+        assertThat(histogram.getPercentile(100.0), is(1000000L));
+        assertThat(histogram.getPercentile(0.0), is(0L));
+    }
+
+    @Test(timeout = 10000L)
+    public void concurrentTest() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int ix = 0; ix < 10000; ix++) {
+                    histogram.record(ix);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(histogram.getCount(), is(40000L));
+        assertThat(histogram.getMax(), is(9999L));
+        assertThat(histogram.getPercentile(100.0), is(9999L));
+    }
+
+}
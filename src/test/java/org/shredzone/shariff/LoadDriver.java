@@ -0,0 +1,182 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a constant rate, and reports the throughput and the latency
+ * percentiles.
+ * <p>
+ * The load is open: requests are started at their scheduled time, regardless of how
+ * long the previous requests took. The latency is measured from the scheduled start, so
+ * the time a request has been waiting for a free worker is included, and a stalled
+ * system cannot hide its tail latencies.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class LoadDriver {
+
+    /**
+     * A request to be measured.
+     */
+    @FunctionalInterface
+    public interface Request {
+        /**
+         * Sends the request.
+         *
+         * @param index
+         *            Running number of the request
+         * @throws Exception
+         *             if the request failed
+         */
+        void send(int index) throws Exception;
+    }
+
+    /**
+     * Result of a load test.
+     */
+    public static class Report {
+        private final long[] latencies;
+        private final int failures;
+        private final long durationNanos;
+
+        private Report(long[] latencies, int failures, long durationNanos) {
+            this.latencies = latencies;
+            this.failures = failures;
+            this.durationNanos = durationNanos;
+            Arrays.sort(latencies);
+        }
+
+        /**
+         * Returns the number of requests that were sent.
+         */
+        public int getCount() {
+            return latencies.length;
+        }
+
+        /**
+         * Returns the number of requests that failed.
+         */
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * Returns the number of completed requests per second.
+         */
+        public double getThroughput() {
+            return latencies.length * 1e9 / durationNanos;
+        }
+
+        /**
+         * Returns a latency percentile, in milliseconds.
+         *
+         * @param percentile
+         *            Percentile, between 0 and 100
+         */
+        public double getPercentile(double percentile) {
+            if (latencies.length == 0) {
+                return 0.0;
+            }
+            int ix = (int) Math.ceil(percentile / 100.0 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(ix, latencies.length - 1))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d failed, %.1f req/s, "
+                    + "p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                    getCount(), getFailures(), getThroughput(),
+                    getPercentile(50.0), getPercentile(99.0), getPercentile(99.9),
+                    getPercentile(100.0));
+        }
+    }
+
+    private final int workers;
+
+    /**
+     * Creates a new {@link LoadDriver}.
+     *
+     * @param workers
+     *            Number of worker threads, which is the maximum number of requests that
+     *            are sent at the same time
+     */
+    public LoadDriver(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Sends requests at the given rate, and waits until all of them are completed.
+     *
+     * @param request
+     *            {@link Request} to send
+     * @param rate
+     *            Requests per second
+     * @param duration
+     *            Duration of the test
+     * @param unit
+     *            {@link TimeUnit} of duration
+     * @return {@link Report} of the test
+     */
+    public Report run(Request request, double rate, long duration, TimeUnit unit)
+                throws InterruptedException {
+        int count = (int) (rate * unit.toNanos(duration) / 1e9);
+        long intervalNanos = (long) (1e9 / rate);
+        long[] latencies = new long[count];
+        AtomicInteger failures = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread t = new Thread(runnable, "load-driver");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long start = System.nanoTime();
+        try {
+            for (int ix = 0; ix < count; ix++) {
+                long scheduled = start + ix * intervalNanos;
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0L) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                int index = ix;
+                executor.execute(() -> {
+                    try {
+                        request.send(index);
+                    } catch (Exception ex) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[index] = System.nanoTime() - scheduled;
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (!executor.awaitTermination(unit.toNanos(duration) + TimeUnit.MINUTES.toNanos(1L),
+                    TimeUnit.NANOSECONDS)) {
+            executor.shutdownNow();
+            throw new IllegalStateException("Requests did not complete in time");
+        }
+
+        return new Report(latencies, failures.get(), System.nanoTime() - start);
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LoadDriver}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class LoadDriverTest {
+
+    @Test(timeout = 10000L)
+    public void runTest() throws InterruptedException {
+        LoadDriver.Report report = new LoadDriver(4).run(index -> {
+            if (index % 10 == 0) {
+                throw new IOException("failed");
+            }
+            TimeUnit.MILLISECONDS.sleep(index % 2 == 0 ? 20L : 1L);
+        }, 200.0, 500L, TimeUnit.MILLISECONDS);
+
+        assertThat(report.getCount(), is(100));
+        assertThat(report.getFailures(), is(10));
+        assertThat(report.getThroughput(), is(both(greaterThan(50.0)).and(lessThan(250.0))));
+        assertThat(report.getPercentile(50.0), is(lessThan(report.getPercentile(99.0))));
+        assertThat(report.getPercentile(99.0), is(greaterThanOrEqualTo(20.0)));
+        assertThat(report.toString(), startsWith("100 requests, 10 failed, "));
+    }
+
+    @Test(timeout = 10000L)
+    public void stalledTest() throws InterruptedException {
+        // A single worker is blocked by slow requests, so the others have to wait.
+        LoadDriver.Report report = new LoadDriver(1).run(index ->
+            TimeUnit.MILLISECONDS.sleep(index < 2 ? 200L : 0L),
+            100.0, 100L, TimeUnit.MILLISECONDS);
+
+        assertThat(report.getCount(), is(10));
+
+        // The waiting time is included in the latency of the fast requests
+        assertThat(report.getPercentile(50.0), is(greaterThan(200.0)));
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.shredzone.shariff.api.MetricsListener;
+
+/**
+ * Unit tests for {@link OffHeapCacheStore}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class OffHeapCacheStoreTest {
+
+    private static final OffHeapCacheStore.Codec<String> CODEC = new OffHeapCacheStore.Codec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(UTF_8);
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            return new String(data, UTF_8);
+        }
+    };
+
+    @Test
+    public void readWriteTest() {
+        OffHeapCacheStore<String> store = new OffHeapCacheStore<>(4096L, CODEC, 1);
+
+        assertThat(store.read("foo"), is(nullValue()));
+
+        store.write("foo", "bar", 1000L);
+        store.write("äöü", "ÄÖÜ", 2000L);
+        assertThat(store.size(), is(2));
+        assertThat(store.read("foo").getValue(), is("bar"));
+        assertThat(store.read("foo").getExpiry(), is(1000L));
+        assertThat(store.read("äöü").getValue(), is("ÄÖÜ"));
+
+        store.write("foo", "baz", 3000L);
+        assertThat(store.size(), is(2));
+        assertThat(store.read("foo").getValue(), is("baz"));
+        assertThat(store.read("foo").getExpiry(), is(3000L));
+
+        store.remove("foo", 1000L);
+        assertThat(store.read("foo").getValue(), is("baz"));
+        store.remove("foo", 3000L);
+        assertThat(store.read("foo"), is(nullValue()));
+
+        store.remove("äöü");
+        assertThat(store.read("äöü"), is(nullValue()));
+        assertThat(store.size(), is(0));
+    }
+
+    @Test
+    public void byteBudgetTest() {
+        OffHeapCacheStore<String> store = new OffHeapCacheStore<>(4096L, CODEC, 1);
+
+        // Every record takes 20 + 8 + 92 = 120 bytes, so at most 34 records fit
+        for (int ix = 0; ix < 1000; ix++) {
+            store.write(String.format("key%05d", ix), String.format("%092d", ix), ix);
+        }
+
+        assertThat(store.size(), is(both(greaterThan(25)).and(lessThanOrEqualTo(34))));
+
+        // The oldest records have been evicted
+        assertThat(store.read("key00000"), is(nullValue()));
+        assertThat(store.read("key00999").getValue(), is(String.format("%092d", 999)));
+        assertThat(store.read("key00999").getExpiry(), is(999L));
+
+        // Records that exceed the segment size are not stored
+        StringBuilder large = new StringBuilder();
+        for (int ix = 0; ix < 5000; ix++) {
+            large.append('x');
+        }
+        store.write("large", large.toString(), 0L);
+        assertThat(store.read("large"), is(nullValue()));
+    }
+
+    @Test
+    public void evictionMetricsTest() {
+        OffHeapCacheStore<String> store = new OffHeapCacheStore<>(4096L, CODEC, 1);
+        MetricsListener listener = mock(MetricsListener.class);
+        store.setMetricsListener(listener);
+
+        // Replaced and removed records are not counted when they are overwritten
+        for (int ix = 0; ix < 40; ix++) {
+            store.write("replaced", String.format("%092d", ix), ix);
+        }
+        store.remove("replaced");
+        verify(listener, never()).onCacheEviction();
+
+        for (int ix = 0; ix < 100; ix++) {
+            store.write(String.format("key%05d", ix), String.format("%092d", ix), ix);
+        }
+        verify(listener, times(100 - store.size())).onCacheEviction();
+    }
+
+    @Test
+    public void randomTest() {
+        OffHeapCacheStore<String> store = new OffHeapCacheStore<>(64 * 1024L, CODEC, 4);
+        Map<String, String> reference = new HashMap<>();
+        Random rnd = new Random(4711L);
+
+        for (int ix = 0; ix < 200000; ix++) {
+            String key = "http://example.com/" + rnd.nextInt(5000);
+            int op = rnd.nextInt(10);
+            if (op < 6) {
+                String value = Integer.toString(rnd.nextInt()) + "-" + ix;
+                store.write(key, value, ix);
+                reference.put(key, value);
+            } else if (op < 7) {
+                store.remove(key);
+                reference.remove(key);
+            } else {
+                CacheStore.Entry<String> entry = store.read(key);
+                if (entry != null) {
+                    // Evicted records may be missing, but must never be wrong
+                    assertThat(entry.getValue(), is(reference.get(key)));
+                }
+            }
+        }
+
+        assertThat(store.size(), is(both(greaterThan(100)).and(lessThanOrEqualTo(reference.size()))));
+    }
+
+    @Test
+    public void cacheTest() {
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(
+                new OffHeapCacheStore<>(4096L, CODEC), 1L, TimeUnit.HOURS);
+
+        assertThat(cache.fetch("foo", (key, previous) -> "bar"), is("bar"));
+        assertThat(cache.get("foo"), is("bar"));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void resizeTest() {
+        new OffHeapCacheStore<>(4096L, CODEC).resize(100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooSmallTest() {
+        new OffHeapCacheStore<>(100L, CODEC);
+    }
+
+}
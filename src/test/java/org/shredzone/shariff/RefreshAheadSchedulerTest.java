@@ -0,0 +1,139 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RefreshAheadScheduler}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class RefreshAheadSchedulerTest {
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    @Test
+    public void hotKeysTest() {
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(100, 1L, TimeUnit.SECONDS);
+        RefreshAheadScheduler<String, String> scheduler =
+                new RefreshAheadScheduler<>(cache, 5L, TimeUnit.SECONDS, 2, this::provide);
+
+        read(cache, "hot", 5);
+        read(cache, "warm", 3);
+        read(cache, "lukewarm", 2);
+        read(cache, "cold", 1);
+        assertThat(fetches.get(), is(4));
+        assertThat(scheduler.getTrackedKeyCount(), is(4));
+
+        // The two hottest keys are refreshed, the third one exceeds the budget
+        scheduler.run();
+        assertThat(scheduler.getRefreshCount(), is(2L));
+        assertThat(scheduler.getSkippedCount(), is(1L));
+        assertThat(fetches.get(), is(6));
+        assertThat(cache.get("hot"), is("hot-5"));
+        assertThat(cache.get("warm"), is("warm-6"));
+        assertThat(cache.get("lukewarm"), is("lukewarm-3"));
+
+        read(cache, "hot", 1);
+        read(cache, "lukewarm", 1);
+        assertThat(scheduler.getRefreshedHitCount(), is(1L));
+    }
+
+    @Test
+    public void forgetTest() {
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(100, 1L, TimeUnit.SECONDS);
+        RefreshAheadScheduler<String, String> scheduler =
+                new RefreshAheadScheduler<>(cache, 5L, TimeUnit.SECONDS, 10, this::provide);
+
+        read(cache, "hot", 4);
+        read(cache, "cold", 1);
+
+        // hot: score 4, cold: score 1
+        scheduler.run();
+        assertThat(scheduler.getRefreshCount(), is(1L));
+        assertThat(scheduler.getTrackedKeyCount(), is(2));
+
+        // hot: score 2, cold: score 0 and forgotten
+        scheduler.run();
+        assertThat(scheduler.getRefreshCount(), is(2L));
+        assertThat(scheduler.getTrackedKeyCount(), is(1));
+
+        // hot: score 1, not refreshed any more
+        scheduler.run();
+        assertThat(scheduler.getRefreshCount(), is(2L));
+
+        // hot: score 0 and forgotten
+        scheduler.run();
+        assertThat(scheduler.getTrackedKeyCount(), is(0));
+        assertThat(scheduler.getSkippedCount(), is(0L));
+    }
+
+    @Test
+    public void notExpiringTest() {
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(100, 1L, TimeUnit.HOURS);
+        RefreshAheadScheduler<String, String> scheduler =
+                new RefreshAheadScheduler<>(cache, 5L, TimeUnit.SECONDS, 10, this::provide);
+
+        read(cache, "hot", 10);
+        scheduler.run();
+        assertThat(scheduler.getRefreshCount(), is(0L));
+        assertThat(fetches.get(), is(1));
+    }
+
+    @Test(timeout = 10000L)
+    public void scheduledTest() throws InterruptedException {
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(100, 1L, TimeUnit.SECONDS);
+        RefreshAheadScheduler<String, String> scheduler =
+                new RefreshAheadScheduler<>(cache, 5L, TimeUnit.SECONDS, 10, this::provide);
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            scheduler.start(executor, 10L, TimeUnit.MILLISECONDS);
+            read(cache, "hot", 5);
+
+            // The first fetch was the cache miss, the next one is the refresh
+            while (fetches.get() < 2) {
+                Thread.sleep(10L);
+            }
+            assertThat(scheduler.getRefreshCount(), is(greaterThan(0L)));
+
+            scheduler.stop();
+            read(cache, "other", 5);
+            assertThat(scheduler.getTrackedKeyCount(), is(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void read(ConcurrentCache<String, String> cache, String key, int times) {
+        for (int ix = 0; ix < times; ix++) {
+            cache.fetchAsync(key, this::provide).join();
+        }
+    }
+
+    private CompletionStage<String> provide(String key, String previous) {
+        return CompletableFuture.completedFuture(key + '-' + fetches.incrementAndGet());
+    }
+
+}
@@ -14,22 +14,61 @@ package org.shredzone.shariff;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeThat;
 import static org.mockito.Mockito.*;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.shredzone.shariff.api.Target;
+import org.shredzone.shariff.target.Facebook;
 
 /**
  * Unit tests for {@link ShariffServlet}.
@@ -38,6 +77,35 @@ import org.junit.Test;
  */
 public class ShariffServletTest {
 
+    @FunctionalInterface
+    private interface IORunnable {
+        void run() throws IOException;
+    }
+
+    /**
+     * A {@link ServletOutputStream} that writes to an {@link OutputStream}.
+     */
+    private static class TestOutputStream extends ServletOutputStream {
+        private final OutputStream out;
+
+        public TestOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private ShariffServlet servlet;
 
     @Before
@@ -101,17 +169,822 @@ public class ShariffServletTest {
         when(req.getParameter("url")).thenReturn("http://example.com/testpage");
         when(req.getServerName()).thenReturn("example.com");
 
-        StringWriter out = new StringWriter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
         HttpServletResponse resp = mock(HttpServletResponse.class);
-        when(resp.getWriter()).thenReturn(new PrintWriter(out));
+        when(resp.getOutputStream()).thenReturn(new TestOutputStream(out));
 
         servlet.doGet(req, resp);
 
         verify(resp, never()).sendError(anyInt(), anyString());
         verify(resp).setContentType("application/json");
         verify(resp).setCharacterEncoding("UTF-8");
+        verify(resp).setContentLength(29);
+        verify(resp, never()).setHeader(eq("Content-Encoding"), anyString());
+        verify(resp).setHeader(eq("ETag"), startsWith("\""));
+        verify(resp).setHeader(eq("Cache-Control"), matches("public, max-age=(59|60), stale-if-error=86400"));
+
+        assertThat(out.toString("UTF-8"), is("{\"facebook\":123,\"reddit\":456}"));
+    }
+
+    @Test
+    public void notModifiedTest() throws IOException {
+        servlet.staleWhileRevalidateMs = 30000L;
+        servlet.staleIfErrorMs = 0L;
+
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getParameter("url")).thenReturn("http://example.com/testpage");
+        when(req.getServerName()).thenReturn("example.com");
+
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new TestOutputStream(new ByteArrayOutputStream()));
+
+        servlet.doGet(req, resp);
+
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(resp).setHeader(eq("ETag"), etag.capture());
+        verify(resp).setHeader(eq("Cache-Control"), matches("public, max-age=(59|60), stale-while-revalidate=30"));
+
+        // Revalidation with the same ETag gets a 304 without body
+        HttpServletRequest req2 = mock(HttpServletRequest.class);
+        when(req2.getParameter("url")).thenReturn("http://example.com/testpage");
+        when(req2.getServerName()).thenReturn("example.com");
+        when(req2.getHeader("If-None-Match")).thenReturn("\"foo\", " + etag.getValue());
+
+        HttpServletResponse resp2 = mock(HttpServletResponse.class);
+
+        servlet.doGet(req2, resp2);
+
+        verify(resp2).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(resp2).setHeader("ETag", etag.getValue());
+        verify(resp2).setHeader(eq("Cache-Control"), anyString());
+        verify(resp2, never()).getOutputStream();
+        verify(resp2, never()).sendError(anyInt(), anyString());
+
+        // A different ETag gets the full response
+        HttpServletRequest req3 = mock(HttpServletRequest.class);
+        when(req3.getParameter("url")).thenReturn("http://example.com/testpage");
+        when(req3.getServerName()).thenReturn("example.com");
+        when(req3.getHeader("If-None-Match")).thenReturn("\"foo\"");
+
+        ByteArrayOutputStream out3 = new ByteArrayOutputStream();
+        HttpServletResponse resp3 = mock(HttpServletResponse.class);
+        when(resp3.getOutputStream()).thenReturn(new TestOutputStream(out3));
+
+        servlet.doGet(req3, resp3);
+
+        verify(resp3, never()).setStatus(anyInt());
+        assertThat(out3.toString("UTF-8"), is("{\"facebook\":123,\"reddit\":456}"));
+    }
+
+    @Test
+    public void emptyCountsCachedTest() {
+        String url = "http://example.com/nocounts";
+
+        // A result without any counters is cached for the default time to live
+        assertThat(servlet.getCountsCached(url).isEmpty(), is(true));
+        assertThat(servlet.getCountsCached(url).isEmpty(), is(true));
+        verify(servlet.getBackend(), times(1)).getCounts(url);
+    }
+
+    @Test
+    public void ifNoneMatchTest() throws IOException {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getParameter("url")).thenReturn("http://example.com/testpage");
+        when(req.getServerName()).thenReturn("example.com");
+
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new TestOutputStream(new ByteArrayOutputStream()));
+
+        servlet.doGet(req, resp);
+
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(resp).setHeader(eq("ETag"), captor.capture());
+        String etag = captor.getValue();
+        String unquoted = etag.substring(1, etag.length() - 1);
+
+        // Weak ETags and blanks around the list elements are accepted
+        verify(revalidate("W/\"foo\" ,W/" + etag + " ")).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(revalidate("\"foo\", *")).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+        // ETags must match exactly
+        verify(revalidate("\"x" + unquoted + "\""), never()).setStatus(anyInt());
+        verify(revalidate("\"" + unquoted + "x\""), never()).setStatus(anyInt());
+        verify(revalidate("\"" + etag + "\""), never()).setStatus(anyInt());
+        verify(revalidate(unquoted), never()).setStatus(anyInt());
+        verify(revalidate(""), never()).setStatus(anyInt());
+    }
+
+    @Test(timeout = 10000L)
+    public void destroyRefreshExecutorTest() throws InterruptedException {
+        List<Thread> fetchers = new CopyOnWriteArrayList<>();
+        ShariffServlet staleServlet = new ShariffServlet() {
+            @Override
+            protected Map<String, Integer> getCounts(String url) {
+                fetchers.add(Thread.currentThread());
+                return Collections.singletonMap("facebook", 123);
+            }
+        };
+        staleServlet.timeToLiveMs = 1L;
+        staleServlet.staleWhileRevalidateMs = 60000L;
+
+        staleServlet.getCountsCached("http://example.com/testpage");
+        Thread.sleep(10L);
+
+        // The stale counters are refreshed in background
+        staleServlet.getCountsCached("http://example.com/testpage");
+        while (fetchers.size() < 2) {
+            Thread.sleep(10L);
+        }
+        Thread refresher = fetchers.get(1);
+        assertThat(refresher, is(not(Thread.currentThread())));
+
+        staleServlet.destroy();
+        refresher.join(5000L);
+        assertThat(refresher.isAlive(), is(false));
+    }
+
+    @Test
+    public void noHttpCachingTest() throws IOException {
+        servlet.httpCaching = false;
+
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getParameter("url")).thenReturn("http://example.com/testpage");
+        when(req.getServerName()).thenReturn("example.com");
+        when(req.getHeader("If-None-Match")).thenReturn("*");
+
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new TestOutputStream(new ByteArrayOutputStream()));
+
+        servlet.doGet(req, resp);
+
+        verify(resp, never()).setHeader(eq("ETag"), anyString());
+        verify(resp, never()).setHeader(eq("Cache-Control"), anyString());
+        verify(resp, never()).setStatus(anyInt());
+        verify(resp).setContentLength(29);
+    }
+
+    @Test
+    public void batchTest() throws IOException {
+        ShariffServlet batchServlet = createBatchServlet();
+
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(req.getParameterValues("url")).thenReturn(new String[] {
+                "http://example.com/page2", "http://example.com/page1", "http://example.com/page2"});
+        when(req.getServerName()).thenReturn("example.com");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new TestOutputStream(out));
+
+        batchServlet.doGet(req, resp);
+
+        verify(resp, never()).sendError(anyInt(), anyString());
+        verify(resp).setContentType("application/json");
+        verify(resp).setContentLength(out.size());
+        verify(resp).setHeader(eq("Cache-Control"), anyString());
+        assertThat(out.toString("UTF-8"), is("{"
+                + "\"http://example.com/page2\":{\"facebook\":2},"
+                + "\"http://example.com/page1\":{\"facebook\":1}}"));
+        verify(batchServlet.getBackend()).getCountsAsync("http://example.com/page2");
+    }
+
+    @Test
+    public void batchNotModifiedTest() throws IOException {
+        ShariffServlet batchServlet = createBatchServlet();
+
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(req.getParameterValues("url")).thenReturn(new String[] {
+                "http://example.com/page1", "http://example.com/page2"});
+        when(req.getServerName()).thenReturn("example.com");
+
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new TestOutputStream(new ByteArrayOutputStream()));
+
+        batchServlet.doGet(req, resp);
+
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(resp).setHeader(eq("ETag"), etag.capture());
+        assertThat(etag.getValue(), matchesPattern("\"[0-9a-f]+\""));
+
+        // Revalidation with the same ETag gets a 304 without body
+        when(req.getHeader("If-None-Match")).thenReturn(etag.getValue());
+
+        HttpServletResponse resp2 = mock(HttpServletResponse.class);
+
+        batchServlet.doGet(req, resp2);
+
+        verify(resp2).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(resp2).setHeader("ETag", etag.getValue());
+        verify(resp2).setHeader(eq("Cache-Control"), anyString());
+        verify(resp2, never()).getOutputStream();
+
+        // Another set of URLs has another ETag
+        when(req.getParameterValues("url")).thenReturn(new String[] {
+                "http://example.com/page1", "http://example.com/page3"});
+
+        HttpServletResponse resp3 = mock(HttpServletResponse.class);
+        when(resp3.getOutputStream()).thenReturn(new TestOutputStream(new ByteArrayOutputStream()));
+
+        batchServlet.doGet(req, resp3);
+
+        ArgumentCaptor<String> etag3 = ArgumentCaptor.forClass(String.class);
+        verify(resp3, never()).setStatus(anyInt());
+        verify(resp3).setHeader(eq("ETag"), etag3.capture());
+        assertThat(etag3.getValue(), is(not(etag.getValue())));
+    }
+
+    @Test
+    public void batchPostTest() throws IOException {
+        ShariffServlet batchServlet = createBatchServlet();
+
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("POST");
+        when(req.getContentLength()).thenReturn(-1);
+        when(req.getReader()).thenReturn(new BufferedReader(new StringReader(
+                "[\"http://example.com/page1\", \"http://example.com/page2\"]")));
+        when(req.getServerName()).thenReturn("example.com");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new TestOutputStream(out));
+
+        batchServlet.doPost(req, resp);
+
+        verify(resp, never()).sendError(anyInt(), anyString());
+        verify(resp, never()).setHeader(eq("Cache-Control"), anyString());
+        assertThat(out.toString("UTF-8"), is("{"
+                + "\"http://example.com/page1\":{\"facebook\":1},"
+                + "\"http://example.com/page2\":{\"facebook\":2}}"));
+    }
+
+    @Test
+    public void batchInvalidTest() throws IOException {
+        ShariffServlet batchServlet = createBatchServlet();
+        batchServlet.batchMaxUrls = 2;
+
+        // One invalid host fails the entire batch
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getParameterValues("url")).thenReturn(new String[] {
+                "http://example.com/page1", "http://illegal.com/page2"});
+        when(req.getServerName()).thenReturn("example.com");
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        batchServlet.doGet(req, resp);
+        verify(resp).sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid host");
+
+        // Too many URLs
+        HttpServletRequest req2 = mock(HttpServletRequest.class);
+        when(req2.getParameterValues("url")).thenReturn(new String[] {
+                "http://example.com/page1", "http://example.com/page2", "http://example.com/page3"});
+        when(req2.getServerName()).thenReturn("example.com");
+        HttpServletResponse resp2 = mock(HttpServletResponse.class);
+        batchServlet.doGet(req2, resp2);
+        verify(resp2).sendError(HttpServletResponse.SC_BAD_REQUEST, "too many urls");
+
+        // Invalid body
+        HttpServletRequest req3 = mock(HttpServletRequest.class);
+        when(req3.getReader()).thenReturn(new BufferedReader(new StringReader("{\"url\": 1}")));
+        HttpServletResponse resp3 = mock(HttpServletResponse.class);
+        batchServlet.doPost(req3, resp3);
+        verify(resp3).sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid request body");
+
+        // Empty batch
+        HttpServletRequest req4 = mock(HttpServletRequest.class);
+        when(req4.getReader()).thenReturn(new BufferedReader(new StringReader("[]")));
+        HttpServletResponse resp4 = mock(HttpServletResponse.class);
+        batchServlet.doPost(req4, resp4);
+        verify(resp4).sendError(HttpServletResponse.SC_BAD_REQUEST, "missing url parameter");
+
+        verify(batchServlet.getBackend(), never()).getCountsAsync(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void gzipTest() throws IOException {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (int ix = 0; ix < 20; ix++) {
+            counts.put("target" + ix, 1000 + ix);
+        }
+
+        ShariffServlet gzipServlet = new ShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                ShariffBackend backend = mock(ShariffBackend.class);
+                when(backend.getCounts("http://example.com/testpage")).thenReturn(counts);
+                return backend;
+            }
+        };
+        gzipServlet.cacheGzip = true;
+
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getParameter("url")).thenReturn("http://example.com/testpage");
+        when(req.getServerName()).thenReturn("example.com");
+        when(req.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new TestOutputStream(out));
+
+        gzipServlet.doGet(req, resp);
+
+        verify(resp, never()).sendError(anyInt(), anyString());
+        verify(resp).setHeader("Vary", "Accept-Encoding");
+        verify(resp).setHeader("Content-Encoding", "gzip");
+        verify(resp).setHeader(eq("ETag"), endsWith("-gz\""));
+        verify(resp).setContentLength(out.size());
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            JSONObject json = new JSONObject(new JSONTokener(in));
+            assertThat(json.length(), is(20));
+            assertThat(json.getInt("target7"), is(1007));
+        }
+
+        // Clients that do not accept gzip get the plain response
+        HttpServletRequest plainReq = mock(HttpServletRequest.class);
+        when(plainReq.getParameter("url")).thenReturn("http://example.com/testpage");
+        when(plainReq.getServerName()).thenReturn("example.com");
+
+        ByteArrayOutputStream plainOut = new ByteArrayOutputStream();
+        HttpServletResponse plainResp = mock(HttpServletResponse.class);
+        when(plainResp.getOutputStream()).thenReturn(new TestOutputStream(plainOut));
+
+        gzipServlet.doGet(plainReq, plainResp);
+
+        verify(plainResp).setHeader("Vary", "Accept-Encoding");
+        verify(plainResp, never()).setHeader(eq("Content-Encoding"), anyString());
+        assertThat(new JSONObject(plainOut.toString("UTF-8")).length(), is(20));
+    }
+
+    /**
+     * Compares the bytes allocated for writing the response of a cache hit, with the
+     * previous implementation that generated the JSON response on every hit. It is
+     * only run if the {@code shariff.benchmark} system property is set.
+     */
+    @Test
+    public void responseAllocationBenchmark() throws IOException {
+        assumeThat(System.getProperty("shariff.benchmark"), is(notNullValue()));
+        assumeThat(ManagementFactory.getThreadMXBean(),
+                is(instanceOf(com.sun.management.ThreadMXBean.class)));
 
-        assertThat(out.toString(), is("{\"facebook\":123,\"reddit\":456}"));
+        String url = "http://example.com/testpage";
+        HttpServletRequest req = stub(HttpServletRequest.class, null);
+        HttpServletResponse resp = stub(HttpServletResponse.class, new TestOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                // discard
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // discard
+            }
+        }));
+        PrintWriter writer = new PrintWriter(new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                // discard
+            }
+
+            @Override
+            public void flush() {
+                // discard
+            }
+
+            @Override
+            public void close() {
+                // discard
+            }
+        });
+
+        int hits = 200000;
+        long[] allocated = new long[2];
+        for (int round = 0; round < 3; round++) {
+            allocated[0] = measureAllocation(hits, () -> {
+                Map<String, Integer> counts = servlet.getCountsCached(url);
+                JSONObject json = new JSONObject();
+                for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                    json.put(count.getKey(), count.getValue());
+                }
+                resp.setContentType("application/json");
+                resp.setCharacterEncoding("UTF-8");
+                writer.append(json.toString());
+            });
+            allocated[1] = measureAllocation(hits, () ->
+                servlet.writeCounts(req, resp, servlet.getCountsCached(url)));
+        }
+
+        System.out.printf("Bytes allocated per cache hit: %d before, %d after%n",
+                allocated[0] / hits, allocated[1] / hits);
+
+        assertThat(allocated[1], is(lessThan(allocated[0])));
+    }
+
+    /**
+     * Sends requests to a servlet with a backend that uses the {@link UpstreamSimulator},
+     * and reports the latencies. This benchmark is only run if the
+     * {@code shariff.benchmark} system property is set.
+     * <p>
+     * Besides the system properties of {@link BackendTest#loadBenchmark()}, the cache
+     * size can be set by {@code shariff.load.cacheSize} (default 1000).
+     */
+    @Test
+    @SuppressWarnings("serial")
+    public void loadBenchmark() throws Exception {
+        assumeThat(System.getProperty("shariff.benchmark"), is(notNullValue()));
+
+        double rate = Double.parseDouble(System.getProperty("shariff.load.rate", "50"));
+        int seconds = Integer.getInteger("shariff.load.seconds", 10);
+        int urls = Integer.getInteger("shariff.load.urls", 10000);
+        Integer maxThreads = Integer.getInteger("shariff.load.threads");
+
+        try (UpstreamSimulator simulator = new UpstreamSimulator().realistic()) {
+            ShariffServlet loadServlet = new ShariffServlet() {
+                @Override
+                protected ShariffBackend createBackend() {
+                    return new ShariffBackend(null, maxThreads) {
+                        @Override
+                        protected List<Target> createTargets() {
+                            return simulator.createTargets();
+                        }
+                    };
+                }
+            };
+            loadServlet.cacheSize = Integer.getInteger("shariff.load.cacheSize", 1000);
+
+            ServletOutputStream out = new TestOutputStream(new ByteArrayOutputStream() {
+                @Override
+                public synchronized void write(byte[] b, int off, int len) {
+                    // discard
+                }
+            });
+            HttpServletResponse resp = (HttpServletResponse) Proxy.newProxyInstance(
+                    HttpServletResponse.class.getClassLoader(), new Class<?>[] {HttpServletResponse.class},
+                    (proxy, method, args) -> {
+                        if ("sendError".equals(method.getName())) {
+                            throw new IOException("HTTP " + args[0]);
+                        }
+                        return "getOutputStream".equals(method.getName()) ? out : null;
+                    });
+
+            LoadDriver.Report report = new LoadDriver(256).run(index -> {
+                // Few articles are popular, most are rarely read
+                int article = (int) (urls * Math.pow(ThreadLocalRandom.current().nextDouble(), 3));
+                String url = "https://www.example.com/article-" + article + ".html";
+                HttpServletRequest req = (HttpServletRequest) Proxy.newProxyInstance(
+                        HttpServletRequest.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class},
+                        (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "getParameter":
+                                    return url;
+                                case "getServerName":
+                                    return "www.example.com";
+                                case "getMethod":
+                                    return "GET";
+                                default:
+                                    return null;
+                            }
+                        });
+                loadServlet.doGet(req, resp);
+            }, rate, seconds, TimeUnit.SECONDS);
+
+            System.out.printf("ShariffServlet.doGet at %.0f req/s: %s%n", rate, report);
+            assertThat(report.getCount(), is(greaterThan(0)));
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static ShariffServlet createBatchServlet() {
+        ShariffBackend backend = mock(ShariffBackend.class);
+        for (int ix = 1; ix <= 3; ix++) {
+            when(backend.getCountsAsync("http://example.com/page" + ix)).thenReturn(
+                    CompletableFuture.completedFuture(new CountResult(
+                            Collections.singletonMap("facebook", ix), Collections.emptySet())));
+        }
+
+        return new ShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                return backend;
+            }
+        };
+    }
+
+    /**
+     * Sends a request with the given "If-None-Match" header.
+     *
+     * @return Mocked {@link HttpServletResponse} of the request
+     */
+    private HttpServletResponse revalidate(String ifNoneMatch) throws IOException {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getParameter("url")).thenReturn("http://example.com/testpage");
+        when(req.getServerName()).thenReturn("example.com");
+        when(req.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new TestOutputStream(new ByteArrayOutputStream()));
+
+        servlet.doGet(req, resp);
+        return resp;
+    }
+
+    private static long measureAllocation(int iterations, IORunnable runnable) throws IOException {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long start = bean.getThreadAllocatedBytes(threadId);
+        for (int ix = 0; ix < iterations; ix++) {
+            runnable.run();
+        }
+        return bean.getThreadAllocatedBytes(threadId) - start;
+    }
+
+    /**
+     * Creates a stub that returns the given output stream, and {@code null} on all other
+     * invocations. Unlike mocks, it does not record the invocations.
+     */
+    private static <T> T stub(Class<T> type, ServletOutputStream out) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> "getOutputStream".equals(method.getName()) ? out : null));
+    }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void throttledFallbackTest() throws InterruptedException {
+        Map<String, Integer> first = new TreeMap<>();
+        first.put("facebook", 123);
+        first.put("reddit", 456);
+
+        Map<String, Integer> second = new TreeMap<>();
+        second.put("reddit", 789);
+
+        ShariffServlet throttledServlet = new ShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                ShariffBackend backend = mock(ShariffBackend.class);
+                when(backend.getCounts("http://example.com/testpage")).thenReturn(first).thenReturn(second);
+                when(backend.isThrottled("facebook")).thenReturn(true);
+                return backend;
+            }
+        };
+        throttledServlet.timeToLiveMs = 0L;
+
+        assertThat(throttledServlet.getCountsCached("http://example.com/testpage"), is(first));
+        TimeUnit.MILLISECONDS.sleep(10L);
+
+        // Facebook is throttled, so the previous counter is used
+        Map<String, Integer> result = throttledServlet.getCountsCached("http://example.com/testpage");
+        assertThat(result.get("facebook"), is(123));
+        assertThat(result.get("reddit"), is(789));
+    }
+
+    /**
+     * The cached counters can be modified by the caller, without changing the cache.
+     */
+    @Test
+    public void modifiableCountsTest() {
+        Map<String, Integer> counts = servlet.getCountsCached("http://example.com/testpage");
+        counts.put("xing", 1);
+        counts.remove("facebook");
+        assertThat(counts.keySet(), containsInAnyOrder("reddit", "xing"));
+
+        Map<String, Integer> cached = servlet.getCountsCached("http://example.com/testpage");
+        assertThat(cached.get("facebook"), is(123));
+        assertThat(cached.containsKey("xing"), is(false));
+    }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void snapshotTest() throws IOException {
+        String file = folder.getRoot().toPath().resolve("snapshot.bin").toString();
+
+        servlet.snapshotFile = file;
+        Map<String, Integer> counts = servlet.getCountsCached("http://example.com/testpage");
+        servlet.destroy();
+
+        ShariffServlet restartedServlet = new ShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                return mock(ShariffBackend.class);
+            }
+        };
+        restartedServlet.snapshotFile = file;
+
+        // The counters are restored from the snapshot, the backend is not asked
+        assertThat(restartedServlet.getCountsCached("http://example.com/testpage"), is(counts));
+    }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void perTargetTimeToLiveTest() throws InterruptedException {
+        Map<String, Integer> first = new TreeMap<>();
+        first.put("facebook", 123);
+        first.put("reddit", 456);
+
+        Map<String, Integer> second = new TreeMap<>();
+        second.put("facebook", 789);
+
+        ShariffBackend backend = mock(ShariffBackend.class);
+        Target facebook = mock(Target.class);
+        when(facebook.getName()).thenReturn("facebook");
+        Target reddit = mock(Target.class);
+        when(reddit.getName()).thenReturn("reddit");
+        when(backend.getTargets()).thenReturn(Arrays.asList(facebook, reddit));
+        when(backend.getCounts("http://example.com/testpage")).thenReturn(first);
+        when(backend.getCountsAsync("http://example.com/testpage", Collections.singleton("facebook")))
+                .thenReturn(CompletableFuture.completedFuture(new CountResult(second, Collections.emptySet())));
+
+        ShariffServlet ttlServlet = new ShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                return backend;
+            }
+        };
+        ttlServlet.targetTimeToLiveMs.put("facebook", 0L);
+
+        assertThat(ttlServlet.getCountsCached("http://example.com/testpage"), is(first));
+        TimeUnit.MILLISECONDS.sleep(10L);
+
+        // Only the expired facebook counter is fetched again
+        Map<String, Integer> result = ttlServlet.getCountsCached("http://example.com/testpage");
+        assertThat(result.get("facebook"), is(789));
+        assertThat(result.get("reddit"), is(456));
+        verify(backend, times(1)).getCounts("http://example.com/testpage");
+        verify(backend).getCountsAsync("http://example.com/testpage", new HashSet<>(Arrays.asList("facebook")));
+    }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void refreshAheadTest() {
+        Map<String, Integer> first = new TreeMap<>();
+        first.put("facebook", 123);
+        first.put("reddit", 456);
+
+        Map<String, Integer> second = new TreeMap<>();
+        second.put("facebook", 789);
+
+        ShariffBackend backend = mock(ShariffBackend.class);
+        Target facebook = mock(Target.class);
+        when(facebook.getName()).thenReturn("facebook");
+        Target reddit = mock(Target.class);
+        when(reddit.getName()).thenReturn("reddit");
+        when(backend.getTargets()).thenReturn(Arrays.asList(facebook, reddit));
+        when(backend.getCounts("http://example.com/testpage")).thenReturn(first);
+        when(backend.getCountsAsync("http://example.com/testpage", Collections.singleton("facebook")))
+                .thenReturn(CompletableFuture.completedFuture(new CountResult(second, Collections.emptySet())));
+
+        ShariffServlet refreshServlet = new ShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                return backend;
+            }
+        };
+        refreshServlet.refreshAheadMs = 5000L;
+        refreshServlet.targetTimeToLiveMs.put("facebook", 2000L);
+
+        try {
+            for (int ix = 0; ix < 3; ix++) {
+                assertThat(refreshServlet.getCountsCached("http://example.com/testpage"), is(first));
+            }
+
+            RefreshAheadScheduler<String, CachedCounts> scheduler = refreshServlet.getRefreshAheadScheduler();
+            assertThat(scheduler, is(notNullValue()));
+            scheduler.run();
+
+            // Only the facebook counter expires soon, and is refreshed before its expiry
+            assertThat(scheduler.getRefreshCount(), is(1L));
+            verify(backend).getCountsAsync("http://example.com/testpage", Collections.singleton("facebook"));
+
+            Map<String, Integer> result = refreshServlet.getCountsCached("http://example.com/testpage");
+            assertThat(result.get("facebook"), is(789));
+            assertThat(result.get("reddit"), is(456));
+            assertThat(scheduler.getRefreshedHitCount(), is(1L));
+            verify(backend, times(1)).getCounts("http://example.com/testpage");
+        } finally {
+            refreshServlet.destroy();
+        }
+        assertThat(refreshServlet.getRefreshAheadScheduler(), is(nullValue()));
+    }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void metricsTest() throws Exception {
+        Map<String, Integer> counts = new TreeMap<>();
+        counts.put("facebook", 123);
+
+        ShariffBackend backend = mock(ShariffBackend.class);
+        when(backend.getCounts("http://example.com/testpage")).thenReturn(counts);
+
+        ShariffServlet metricsServlet = new ShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                return backend;
+            }
+        };
+
+        ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletName()).thenReturn("metricsTest");
+        when(config.getInitParameterNames()).thenReturn(Collections.emptyEnumeration());
+        when(config.getInitParameter("metrics.jmx")).thenReturn("true");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.shredzone.shariff:type=Cache,instance=\"metricsTest\"");
+
+        metricsServlet.init(config);
+        try {
+            JmxMetricsListener metrics = metricsServlet.getMetricsListener();
+            assertThat(metrics, is(notNullValue()));
+            assertThat(server.isRegistered(name), is(true));
+
+            for (int ix = 0; ix < 3; ix++) {
+                assertThat(metricsServlet.getCountsCached("http://example.com/testpage"), is(counts));
+            }
+            verify(backend).setMetricsListener(metrics);
+            assertThat(server.getAttribute(name, "Misses"), is(1L));
+            assertThat(server.getAttribute(name, "Hits"), is(2L));
+        } finally {
+            metricsServlet.destroy();
+        }
+        assertThat(server.isRegistered(name), is(false));
+
+        // Disabled by default
+        assertThat(servlet.getMetricsListener(), is(nullValue()));
+    }
+
+    @Test
+    public void controlTest() throws Exception {
+        Map<String, Integer> counts = new TreeMap<>();
+        counts.put("facebook", 123);
+
+        Target facebook = mock(Target.class);
+        when(facebook.getName()).thenReturn("facebook");
+        Target reddit = mock(Target.class);
+        when(reddit.getName()).thenReturn("reddit");
+
+        ShariffBackend backend = mock(ShariffBackend.class);
+        when(backend.getCounts("http://example.com/testpage")).thenReturn(counts);
+        when(backend.getTargets()).thenReturn(Arrays.asList(facebook, reddit));
+        when(backend.getMaxThreads()).thenReturn(2);
+        when(backend.isEnabled("facebook")).thenReturn(true);
+
+        ShariffServlet controlServlet = new ShariffServlet() {
+            @Override
+            protected ShariffBackend createBackend() {
+                return backend;
+            }
+        };
+
+        ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletName()).thenReturn("controlTest");
+        when(config.getInitParameterNames()).thenReturn(Collections.emptyEnumeration());
+        when(config.getInitParameter("control.jmx")).thenReturn("true");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.shredzone.shariff:type=Control,instance=\"controlTest\"");
+
+        controlServlet.init(config);
+        try {
+            assertThat(server.isRegistered(name), is(true));
+            ShariffControlMXBean control = JMX.newMXBeanProxy(server, name, ShariffControlMXBean.class);
+
+            // Changes before the cache is created are used for creating it
+            assertThat(control.getCacheSize(), is(1000));
+            control.setCacheSize(10);
+            assertThat(controlServlet.cacheSize, is(10));
+            assertThat(controlServlet.getCountsCached("http://example.com/testpage"), is(counts));
+
+            // The existing cache is resized, keeping its entries
+            control.setCacheSize(500);
+            assertThat(control.getCacheSize(), is(500));
+            assertThat(controlServlet.getCountsCached("http://example.com/testpage"), is(counts));
+            verify(backend, times(1)).getCounts("http://example.com/testpage");
+
+            control.setTimeToLiveMs(5000L);
+            assertThat(control.getTimeToLiveMs(), is(5000L));
+            assertThat(controlServlet.getTimeToLive("facebook"), is(5000L));
+
+            assertThat(control.getThreads(), is(2));
+            control.setThreads(16);
+            verify(backend).setMaxThreads(16);
+            assertThat(controlServlet.threads, is(16));
+
+            assertThat(control.getTargets(), contains("facebook", "reddit"));
+            assertThat(control.getDisabledTargets(), contains("reddit"));
+            control.disableTarget("facebook");
+            verify(backend).setEnabled("facebook", false);
+            control.enableTarget("reddit");
+            verify(backend).setEnabled("reddit", true);
+
+            try {
+                control.setThreads(0);
+                fail("0 threads accepted");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        } finally {
+            controlServlet.destroy();
+        }
+        assertThat(server.isRegistered(name), is(false));
     }
 
     @Test
@@ -122,27 +995,76 @@ public class ShariffServletTest {
         when(config.getInitParameter("host")).thenReturn("http://example\\.com");
         when(config.getInitParameter("cache.size")).thenReturn("50");
         when(config.getInitParameter("cache.timeToLiveMs")).thenReturn("1000000");
+        when(config.getInitParameter("cache.offHeapBytes")).thenReturn("1048576");
+        when(config.getInitParameter("cache.snapshotIntervalMs")).thenReturn("600000");
+        when(config.getInitParameter("cache.gzip")).thenReturn("true");
+        when(config.getInitParameter("http.cacheControl")).thenReturn("false");
+        when(config.getInitParameter("http.staleIfErrorMs")).thenReturn("3600000");
+        when(config.getInitParameterNames()).thenReturn(Collections.enumeration(
+                Arrays.asList("cache.timeToLiveMs", "cache.timeToLiveMs.facebook")));
+        when(config.getInitParameter("cache.timeToLiveMs.facebook")).thenReturn("3600000");
         when(config.getInitParameter("cache.useOnError")).thenReturn("true");
+        when(config.getInitParameter("cache.staleWhileRevalidateMs")).thenReturn("300000");
+        when(config.getInitParameter("cache.partialTimeToLiveMs")).thenReturn("2000");
+        when(config.getInitParameter("cache.refreshAheadMs")).thenReturn("10000");
+        when(config.getInitParameter("cache.refreshAheadRate")).thenReturn("5");
+        when(config.getInitParameter("timeout.deadlineMs")).thenReturn("3000");
+        when(config.getInitParameter("timeout.connectMs")).thenReturn("1000");
+        when(config.getInitParameter("timeout.readMs")).thenReturn("1500");
+        when(config.getInitParameter("breaker.failureThreshold")).thenReturn("3");
+        when(config.getInitParameter("breaker.openMs")).thenReturn("20000");
+        when(config.getInitParameter("breaker.rateLimitOpenMs")).thenReturn("600000");
         when(config.getInitParameter("targets")).thenReturn("facebook,reddit");
         when(config.getInitParameter("threads")).thenReturn("5");
+        when(config.getInitParameter("threads.virtual")).thenReturn("true");
         when(config.getInitParameter("facebook.id")).thenReturn("12345");
         when(config.getInitParameter("facebook.secret")).thenReturn("54321");
+        when(config.getInitParameter("facebook.rateLimit")).thenReturn("2.5");
+        when(config.getInitParameter("facebook.batchSize")).thenReturn("25");
+        when(config.getInitParameter("facebook.batchWindowMs")).thenReturn("15");
         when(config.getInitParameter("organisation")).thenReturn("acme corp");
+        when(config.getInitParameter("warmup.concurrency")).thenReturn("8");
 
         realServlet.init(config);
 
         assertThat(realServlet.hostPattern.pattern(), is("http://example\\.com"));
         assertThat(realServlet.cacheSize, is(50));
         assertThat(realServlet.timeToLiveMs, is(1000000L));
+        assertThat(realServlet.cacheOffHeapBytes, is(1048576L));
+        assertThat(realServlet.snapshotIntervalMs, is(600000L));
+        assertThat(realServlet.cacheGzip, is(true));
+        assertThat(realServlet.httpCaching, is(false));
+        assertThat(realServlet.staleIfErrorMs, is(3600000L));
+        assertThat(realServlet.targetTimeToLiveMs.get("facebook"), is(3600000L));
+        assertThat(realServlet.getTimeToLive("facebook"), is(3600000L));
+        assertThat(realServlet.getTimeToLive("reddit"), is(1000000L));
         assertThat(realServlet.useCacheOnError, is(true));
+        assertThat(realServlet.staleWhileRevalidateMs, is(300000L));
+        assertThat(realServlet.partialTimeToLiveMs, is(2000L));
+        assertThat(realServlet.refreshAheadMs, is(10000L));
+        assertThat(realServlet.refreshAheadRate, is(5.0));
+        assertThat(realServlet.deadlineMs, is(3000L));
+        assertThat(realServlet.connectTimeoutMs, is(1000));
+        assertThat(realServlet.readTimeoutMs, is(1500));
+        assertThat(realServlet.breakerFailureThreshold, is(3));
+        assertThat(realServlet.breakerOpenMs, is(20000L));
+        assertThat(realServlet.breakerRateLimitOpenMs, is(600000L));
         assertThat(realServlet.targets, is(arrayContaining("facebook", "reddit")));
         assertThat(realServlet.threads, is(5));
+        assertThat(realServlet.virtualThreads, is(true));
         assertThat(realServlet.fbClientId, is("12345"));
         assertThat(realServlet.fbClientSecret, is("54321"));
+        assertThat(realServlet.fbRateLimit, is(2.5));
+        assertThat(realServlet.fbBatchSize, is(25));
+        assertThat(realServlet.fbBatchWindowMs, is(15L));
         assertThat(realServlet.organisation, is("acme corp"));
+        assertThat(realServlet.warmupConcurrency, is(8));
 
         ShariffBackend backend = realServlet.createBackend();
         assertThat(backend.getTargets().size(), is(2));
+        assertThat(backend.getTarget(Facebook.class).getBatcher().getMaxBatchSize(), is(25));
+        assertThat(backend.isVirtualThreads(), is(ShariffBackend.isVirtualThreadSupported()));
+        assertThat(backend.getMaxThreads(), is(5));
     }
 
 }
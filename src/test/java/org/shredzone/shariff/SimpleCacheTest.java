@@ -14,11 +14,13 @@ package org.shredzone.shariff;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Test;
+import org.shredzone.shariff.api.MetricsListener;
 
 /**
  * Unit tests for {@link SimpleCache}.
@@ -113,6 +115,38 @@ public class SimpleCacheTest {
         }
     }
 
+    @Test
+    public void metricsTest() {
+        AtomicBoolean expired = new AtomicBoolean(false);
+        MetricsListener listener = mock(MetricsListener.class);
+
+        SimpleCache<Integer, String> cache = new SimpleCache<Integer, String>(2, 5, TimeUnit.SECONDS) {
+            @Override
+            protected boolean isExpired(long expiry) {
+                return expired.get();
+            }
+        };
+        cache.setMetricsListener(listener);
+
+        assertThat(cache.fetch(1, (key, prev) -> "one"), is("one"));
+        assertThat(cache.fetch(1, (key, prev) -> "unexpected"), is("one"));
+        assertThat(cache.get(2), is(nullValue()));
+        verify(listener, times(1)).onCacheHit();
+        verify(listener, times(2)).onCacheMiss();
+
+        cache.put(2, "two");
+        cache.put(3, "three");
+        verify(listener, times(1)).onCacheEviction();
+
+        expired.set(true);
+        assertThat(cache.get(3), is(nullValue()));
+        assertThat(cache.fetch(2, (key, prev) -> prev + " new"), is("two new"));
+        verify(listener, times(2)).onCacheExpiry();
+        verify(listener, times(2)).onCacheMiss();
+        verify(listener, times(1)).onCacheHit();
+        verifyNoMoreInteractions(listener);
+    }
+
     @Test
     public void expireTest() {
         SimpleCache<Integer, Object> cache = new SimpleCache<>(10, 5, TimeUnit.SECONDS);
@@ -0,0 +1,482 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.shredzone.shariff.api.Target;
+import org.shredzone.shariff.target.AddThis;
+import org.shredzone.shariff.target.Buffer;
+import org.shredzone.shariff.target.Facebook;
+import org.shredzone.shariff.target.Pinterest;
+import org.shredzone.shariff.target.Reddit;
+import org.shredzone.shariff.target.StumbleUpon;
+import org.shredzone.shariff.target.Vk;
+import org.shredzone.shariff.target.Xing;
+
+/**
+ * A local HTTP server that imitates the APIs of all targets, for load tests without
+ * network access.
+ * <p>
+ * The targets returned by {@link #createTargets()} send their requests to this server
+ * instead of the real API. Each API answers in its own format, including the Graph API
+ * batch requests of Facebook, the POST requests of Xing, and the JSONP responses of Vk
+ * and Pinterest. The counter of an URL is always {@link #countOf(String)}.
+ * <p>
+ * The {@link Behavior} of every target can be configured at runtime: the latency
+ * distribution, the rate of server errors and "429 Too Many Requests" responses, and
+ * the usage that Facebook reports in the X-App-Usage header.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class UpstreamSimulator implements Closeable {
+
+    private static final Map<String, String> HOSTS = new HashMap<>();
+
+    static {
+        HOSTS.put("api-public.addthis.com", "addthis");
+        HOSTS.put("api.bufferapp.com", "buffer");
+        HOSTS.put("graph.facebook.com", "facebook");
+        HOSTS.put("api.pinterest.com", "pinterest");
+        HOSTS.put("www.reddit.com", "reddit");
+        HOSTS.put("www.stumbleupon.com", "stumbleupon");
+        HOSTS.put("vk.com", "vk");
+        HOSTS.put("www.xing-share.com", "xing");
+    }
+
+    /**
+     * A distribution of response latencies.
+     */
+    @FunctionalInterface
+    public interface Latency {
+        /**
+         * Returns the next latency, in milliseconds.
+         */
+        long nextMillis(ThreadLocalRandom random);
+
+        /**
+         * Always the same latency.
+         */
+        static Latency fixed(long ms) {
+            return random -> ms;
+        }
+
+        /**
+         * Latencies that are evenly distributed between min and max.
+         */
+        static Latency uniform(long minMs, long maxMs) {
+            return random -> minMs + random.nextLong(maxMs - minMs + 1);
+        }
+
+        /**
+         * Log-normal distributed latencies, with a long tail like real APIs. A sigma of
+         * 0.5 gives a p99 of about 3.2 times the median.
+         */
+        static Latency logNormal(long medianMs, double sigma) {
+            return random -> Math.round(medianMs * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    /**
+     * Behavior of a simulated API.
+     */
+    public static class Behavior {
+        private volatile Latency latency = Latency.fixed(0L);
+        private volatile double errorRate = 0.0;
+        private volatile double throttleRate = 0.0;
+        private volatile int appUsage = -1;
+
+        /**
+         * Sets the latency distribution of the responses. Default is no latency.
+         */
+        public Behavior latency(Latency latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Sets the rate of "500 Internal Server Error" responses, between 0 and 1.
+         */
+        public Behavior errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Sets the rate of "429 Too Many Requests" responses, between 0 and 1.
+         */
+        public Behavior throttleRate(double throttleRate) {
+            this.throttleRate = throttleRate;
+            return this;
+        }
+
+        /**
+         * Sets the usage in percent that is reported in an X-App-Usage header. Only
+         * Facebook sends this header. A negative value sends no header.
+         */
+        public Behavior appUsage(int appUsage) {
+            this.appUsage = appUsage;
+            return this;
+        }
+    }
+
+    /**
+     * Request statistics of a simulated API.
+     */
+    private static class Stats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+    }
+
+    private final Behavior defaults = new Behavior();
+    private final Map<String, Behavior> behaviors = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Starts a new simulator on a free port of the loopback interface.
+     */
+    public UpstreamSimulator() throws IOException {
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread t = new Thread(runnable, "upstream-simulator");
+            t.setDaemon(true);
+            return t;
+        });
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Configures a behavior that is similar to the real APIs on a normal day: a median
+     * latency of 80 ms with a long tail, 1% server errors, 0.5% "429 Too Many Requests",
+     * and a Facebook app usage of 40%.
+     *
+     * @return itself
+     */
+    public UpstreamSimulator realistic() {
+        defaults.latency(Latency.logNormal(80L, 0.5)).errorRate(0.01).throttleRate(0.005);
+        behavior("facebook").latency(Latency.logNormal(80L, 0.5)).errorRate(0.01)
+                .throttleRate(0.005).appUsage(40);
+        return this;
+    }
+
+    /**
+     * Returns the {@link Behavior} of all targets that have no behavior of their own.
+     */
+    public Behavior defaults() {
+        return defaults;
+    }
+
+    /**
+     * Returns the {@link Behavior} of the given target. It replaces the defaults
+     * completely, and initially has no latency and no failures.
+     *
+     * @param target
+     *            Target name
+     */
+    public Behavior behavior(String target) {
+        return behaviors.computeIfAbsent(target, k -> new Behavior());
+    }
+
+    /**
+     * Returns the counter that is simulated for the given URL.
+     */
+    public static int countOf(String url) {
+        return Math.floorMod(url.hashCode(), 10000);
+    }
+
+    /**
+     * Returns the number of requests that were received by the given target.
+     */
+    public long getRequestCount(String target) {
+        return stats(target).requests.sum();
+    }
+
+    /**
+     * Returns the number of server errors that were sent by the given target.
+     */
+    public long getErrorCount(String target) {
+        return stats(target).errors.sum();
+    }
+
+    /**
+     * Returns the number of "429 Too Many Requests" that were sent by the given target.
+     */
+    public long getThrottledCount(String target) {
+        return stats(target).throttled.sum();
+    }
+
+    /**
+     * Creates all targets, connecting to this simulator instead of the real APIs. The
+     * Facebook target has dummy credentials.
+     */
+    public List<Target> createTargets() {
+        Facebook facebook = new Facebook() {
+            @Override
+            protected HttpURLConnection openConnection(URL url) throws IOException {
+                return super.openConnection(rewrite(url));
+            }
+        };
+        facebook.setSecret("simulator", "secret");
+
+        return Arrays.asList(
+                new AddThis() {
+                    @Override
+                    protected HttpURLConnection openConnection(URL url) throws IOException {
+                        return super.openConnection(rewrite(url));
+                    }
+                },
+                new Buffer() {
+                    @Override
+                    protected HttpURLConnection openConnection(URL url) throws IOException {
+                        return super.openConnection(rewrite(url));
+                    }
+                },
+                facebook,
+                new Pinterest() {
+                    @Override
+                    protected HttpURLConnection openConnection(URL url) throws IOException {
+                        return super.openConnection(rewrite(url));
+                    }
+                },
+                new Reddit() {
+                    @Override
+                    protected HttpURLConnection openConnection(URL url) throws IOException {
+                        return super.openConnection(rewrite(url));
+                    }
+                },
+                new StumbleUpon() {
+                    @Override
+                    protected HttpURLConnection openConnection(URL url) throws IOException {
+                        return super.openConnection(rewrite(url));
+                    }
+                },
+                new Vk() {
+                    @Override
+                    protected HttpURLConnection openConnection(URL url) throws IOException {
+                        return super.openConnection(rewrite(url));
+                    }
+                },
+                new Xing() {
+                    @Override
+                    protected HttpURLConnection openConnection(URL url) throws IOException {
+                        return super.openConnection(rewrite(url));
+                    }
+                }
+        );
+    }
+
+    /**
+     * Rewrites an API URL, so it points to this simulator. The host of the API becomes
+     * the first path segment.
+     */
+    public URL rewrite(URL url) throws IOException {
+        InetSocketAddress address = server.getAddress();
+        // The simulator does not accept the unescaped '|' of the Facebook access token
+        return new URL("http://" + address.getHostString() + ':' + address.getPort()
+                + '/' + url.getHost() + url.getFile().replace("|", "%7C"));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private Stats stats(String target) {
+        return stats.computeIfAbsent(target, k -> new Stats());
+    }
+
+    /**
+     * Handles a request to one of the simulated APIs.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            int slash = path.indexOf('/', 1);
+            String target = HOSTS.get(slash > 0 ? path.substring(1, slash) : path.substring(1));
+            if (target == null) {
+                send(exchange, HttpURLConnection.HTTP_NOT_FOUND, "{\"error\":\"unknown API\"}");
+                return;
+            }
+
+            Behavior behavior = behaviors.getOrDefault(target, defaults);
+            Stats stat = stats(target);
+            stat.requests.increment();
+
+            Map<String, String> params = parse(exchange.getRequestURI().getRawQuery());
+            params.putAll(parse(new String(readAll(exchange.getRequestBody()), UTF_8)));
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long latency = behavior.latency.nextMillis(random);
+            if (latency > 0L) {
+                TimeUnit.MILLISECONDS.sleep(latency);
+            }
+
+            if ("facebook".equals(target) && behavior.appUsage >= 0) {
+                int usage = behavior.appUsage;
+                exchange.getResponseHeaders().set("X-App-Usage",
+                        "{\"call_count\":" + usage + ",\"total_cputime\":" + usage / 2
+                        + ",\"total_time\":" + usage / 2 + "}");
+            }
+
+            double dice = random.nextDouble();
+            if (dice < behavior.throttleRate) {
+                stat.throttled.increment();
+                send(exchange, 429, "{\"error\":\"rate limit exceeded\"}");
+            } else if (dice < behavior.throttleRate + behavior.errorRate) {
+                stat.errors.increment();
+                send(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, "{\"error\":\"internal error\"}");
+            } else {
+                send(exchange, HttpURLConnection.HTTP_OK, respond(target, params));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Generates the response of a target, in the format of the real API.
+     */
+    private static String respond(String target, Map<String, String> params) {
+        String url = params.getOrDefault("url", "");
+
+        switch (target) {
+            case "addthis":
+            case "buffer":
+                return new JSONObject().put("shares", countOf(url)).toString();
+
+            case "facebook":
+                if (params.containsKey("ids")) {
+                    JSONObject result = new JSONObject();
+                    for (String id : params.get("ids").split(",")) {
+                        result.put(id, graphObject(id));
+                    }
+                    return result.toString();
+                }
+                return graphObject(params.getOrDefault("id", "")).toString();
+
+            case "pinterest":
+                return params.getOrDefault("callback", "x") + '('
+                        + new JSONObject().put("url", url).put("count", countOf(url)) + ')';
+
+            case "reddit": {
+                // The counter is split into the scores of two submissions
+                int count = countOf(url);
+                JSONArray children = new JSONArray()
+                        .put(submission(count / 3))
+                        .put(submission(count - count / 3));
+                return new JSONObject()
+                        .put("kind", "Listing")
+                        .put("data", new JSONObject().put("children", children))
+                        .toString();
+            }
+
+            case "stumbleupon":
+                return new JSONObject()
+                        .put("result", new JSONObject()
+                                .put("url", url)
+                                .put("in_index", true)
+                                .put("views", countOf(url)))
+                        .put("timestamp", System.currentTimeMillis() / 1000L)
+                        .put("success", true)
+                        .toString();
+
+            case "vk":
+                return "VK.Share.count(" + params.getOrDefault("index", "1") + ", " + countOf(url) + ");";
+
+            case "xing":
+                return new JSONObject().put("share_counter", String.valueOf(countOf(url))).toString();
+
+            default:
+                throw new IllegalArgumentException(target);
+        }
+    }
+
+    private static JSONObject graphObject(String id) {
+        return new JSONObject()
+                .put("og_object", new JSONObject()
+                        .put("engagement", new JSONObject().put("count", countOf(id)))
+                        .put("id", String.valueOf(Math.abs((long) id.hashCode()))))
+                .put("id", id);
+    }
+
+    private static JSONObject submission(int score) {
+        return new JSONObject()
+                .put("kind", "t3")
+                .put("data", new JSONObject().put("score", score).put("domain", "example.com"));
+    }
+
+    private static Map<String, String> parse(String query) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        if (query != null && !query.isEmpty()) {
+            for (String param : query.split("&")) {
+                String[] kv = param.split("=", 2);
+                result.put(URLDecoder.decode(kv[0], UTF_8.name()),
+                        kv.length > 1 ? URLDecoder.decode(kv[1], UTF_8.name()) : "");
+            }
+        }
+        return result;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int len;
+        while ((len = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+}
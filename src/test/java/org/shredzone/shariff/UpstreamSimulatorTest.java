@@ -0,0 +1,131 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.shredzone.shariff.api.Target;
+import org.shredzone.shariff.target.Facebook;
+
+/**
+ * Unit tests for {@link UpstreamSimulator}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class UpstreamSimulatorTest {
+
+    private static final String TEST_URL = "http://www.example.com/some/article?a=1&b=2";
+
+    private UpstreamSimulator simulator;
+
+    @Before
+    public void setup() throws IOException {
+        simulator = new UpstreamSimulator();
+    }
+
+    @After
+    public void tearDown() {
+        simulator.close();
+    }
+
+    @Test
+    public void allTargetsTest() throws IOException {
+        List<Target> targets = simulator.createTargets();
+        assertThat(targets, hasSize(8));
+
+        for (Target target : targets) {
+            assertThat(target.getName(), target.count(TEST_URL),
+                    is(UpstreamSimulator.countOf(TEST_URL)));
+            assertThat(simulator.getRequestCount(target.getName()), is(1L));
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void facebookBatchTest() throws Exception {
+        Facebook facebook = (Facebook) simulator.createTargets().get(2);
+        facebook.setBatching(2, 1L, TimeUnit.HOURS);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Integer> a = facebook.countAsync("http://example.com/a", executor).toCompletableFuture();
+            CompletableFuture<Integer> b = facebook.countAsync("http://example.com/b", executor).toCompletableFuture();
+
+            assertThat(a.get(), is(UpstreamSimulator.countOf("http://example.com/a")));
+            assertThat(b.get(), is(UpstreamSimulator.countOf("http://example.com/b")));
+            assertThat(simulator.getRequestCount("facebook"), is(1L));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void errorTest() {
+        simulator.defaults().errorRate(1.0);
+        simulator.behavior("reddit").errorRate(0.0).throttleRate(1.0);
+
+        for (Target target : simulator.createTargets()) {
+            try {
+                target.count(TEST_URL);
+                fail(target.getName() + " did not fail");
+            } catch (IOException ex) {
+                String expected = "reddit".equals(target.getName()) ? "HTTP 429" : "HTTP 500";
+                assertThat(ex.getMessage(), startsWith(expected));
+            }
+        }
+
+        assertThat(simulator.getErrorCount("vk"), is(1L));
+        assertThat(simulator.getThrottledCount("vk"), is(0L));
+        assertThat(simulator.getErrorCount("reddit"), is(0L));
+        assertThat(simulator.getThrottledCount("reddit"), is(1L));
+    }
+
+    @Test
+    public void appUsageTest() throws IOException {
+        Facebook facebook = (Facebook) simulator.createTargets().get(2);
+
+        simulator.behavior("facebook").appUsage(50);
+        assertThat(facebook.count(TEST_URL), is(UpstreamSimulator.countOf(TEST_URL)));
+
+        simulator.behavior("facebook").appUsage(120);
+        try {
+            facebook.count(TEST_URL);
+            fail("Exceeded rate limit was not detected");
+        } catch (RateLimitExceededException ex) {
+            assertThat(ex.getMessage(), is("call_count = 120%"));
+        }
+    }
+
+    @Test
+    public void latencyTest() throws IOException {
+        simulator.defaults().latency(UpstreamSimulator.Latency.fixed(100L));
+        Target target = simulator.createTargets().get(0);
+
+        long start = System.nanoTime();
+        target.count(TEST_URL);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                is(greaterThanOrEqualTo(100L)));
+    }
+
+}
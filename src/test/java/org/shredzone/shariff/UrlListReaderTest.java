@@ -0,0 +1,110 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link UrlListReader}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class UrlListReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void plainListTest() throws IOException {
+        String list = "\uFEFFhttp://example.com/1\n"
+                + "  http://example.com/2  \r\n"
+                + "\n"
+                + "# http://example.com/comment\n"
+                + "http://example.com/3";
+
+        assertThat(readAll(new StringReader(list)),
+                contains("http://example.com/1", "http://example.com/2", "http://example.com/3"));
+    }
+
+    @Test
+    public void sitemapTest() throws IOException {
+        String sitemap = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+                + "  <url>\n"
+                + "    <loc>http://example.com/1</loc>\n"
+                + "    <lastmod>2026-10-01</lastmod>\n"
+                + "  </url>\n"
+                + "  <url><loc>\n"
+                + "    http://example.com/2?a=1&amp;b=2\n"
+                + "  </loc></url>\n"
+                + "  <url><loc></loc></url>\n"
+                + "  <loc>http://example.com/outside</loc>\n"
+                + "</urlset>\n";
+
+        assertThat(readAll(new StringReader(sitemap)),
+                contains("http://example.com/1", "http://example.com/2?a=1&b=2"));
+    }
+
+    @Test
+    public void emptyTest() throws IOException {
+        assertThat(readAll(new StringReader("")), is(empty()));
+        assertThat(readAll(new StringReader("  \n\n")), is(empty()));
+    }
+
+    @Test(expected = IOException.class)
+    public void externalEntityTest() throws IOException {
+        Path secret = folder.newFile("secret.txt").toPath();
+        Files.write(secret, "http://example.com/secret".getBytes(UTF_8));
+
+        String sitemap = "<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE urlset [<!ENTITY secret SYSTEM \"" + secret.toUri() + "\">]>\n"
+                + "<urlset><url><loc>&secret;</loc></url></urlset>";
+
+        readAll(new StringReader(sitemap));
+    }
+
+    @Test
+    public void openFileTest() throws IOException {
+        Path file = folder.newFile("urls.txt").toPath();
+        Files.write(file, "http://example.com/1\nhttp://example.com/2\n".getBytes(UTF_8));
+
+        assertThat(readAll(UrlListReader.open(file.toString())),
+                contains("http://example.com/1", "http://example.com/2"));
+    }
+
+    private static List<String> readAll(Reader in) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (UrlListReader reader = new UrlListReader(in)) {
+            String url;
+            while ((url = reader.next()) != null) {
+                result.add(url);
+            }
+        }
+        return result;
+    }
+
+}
@@ -14,15 +14,20 @@ package org.shredzone.shariff.api;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.shredzone.shariff.ThrottledException;
 
 /**
  * Unit tests for {@link HttpTarget}.
@@ -54,7 +59,19 @@ public class HttpTargetTest {
 
         verify(mockConnection).getResponseCode();
         verify(mockConnection).getInputStream();
-        verify(mockConnection).disconnect();
+        verify(mockConnection, never()).disconnect();
+        verify(mockIn).close();
+    }
+
+    @Test
+    public void countAsyncTest() throws Exception {
+        when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        TestTarget target = new TestTarget();
+
+        CompletableFuture<Integer> count = target.countAsync(TEST_URL, Runnable::run).toCompletableFuture();
+        assertThat(count.isDone(), is(true));
+        assertThat(count.get(), is(TEST_COUNT));
     }
 
     @Test(expected = IOException.class)
@@ -62,7 +79,121 @@ public class HttpTargetTest {
         when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_INTERNAL_ERROR);
 
         TestTarget target = new TestTarget();
-        target.count(TEST_URL);
+        try {
+            target.count(TEST_URL);
+        } finally {
+            verify(mockConnection).disconnect();
+        }
+    }
+
+    @Test
+    public void asyncFailureTest() throws Exception {
+        when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_INTERNAL_ERROR);
+
+        TestTarget target = new TestTarget();
+
+        CompletableFuture<Integer> count = target.countAsync(TEST_URL, Runnable::run).toCompletableFuture();
+        assertThat(count.isCompletedExceptionally(), is(true));
+        try {
+            count.get();
+            fail("IOException expected");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), is(instanceOf(IOException.class)));
+        }
+    }
+
+    @Test
+    public void metricsTest() throws IOException {
+        when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK,
+                HttpURLConnection.HTTP_INTERNAL_ERROR);
+        MetricsListener listener = mock(MetricsListener.class);
+
+        TestTarget target = new TestTarget();
+        target.setMetricsListener(listener);
+
+        assertThat(target.count(TEST_URL), is(TEST_COUNT));
+        verify(listener).onFetchStart(TEST_NAME);
+        verify(listener).onFetchSuccess(eq(TEST_NAME), anyLong());
+
+        try {
+            target.count(TEST_URL);
+            fail("request did not fail");
+        } catch (IOException ex) {
+            verify(listener).onFetchFailure(eq(TEST_NAME), anyLong(), same(ex));
+        }
+
+        verify(listener, times(2)).onFetchStart(TEST_NAME);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void connectFailureMetricsTest() {
+        IOException failure = new IOException("connection refused");
+        MetricsListener listener = mock(MetricsListener.class);
+
+        TestTarget target = new TestTarget() {
+            @Override
+            protected HttpURLConnection connect(String url) throws IOException {
+                throw failure;
+            }
+        };
+        target.setMetricsListener(listener);
+
+        try {
+            target.count(TEST_URL);
+            fail("request did not fail");
+        } catch (IOException ex) {
+            assertThat(ex, is(sameInstance(failure)));
+        }
+
+        verify(listener).onFetchStart(TEST_NAME);
+        verify(listener).onFetchFailure(eq(TEST_NAME), anyLong(), same(failure));
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void rateLimiterTest() throws IOException {
+        when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        RateLimiter limiter = mock(RateLimiter.class);
+        when(limiter.tryAcquire()).thenReturn(true, false);
+
+        TestTarget target = new TestTarget();
+        target.setRateLimiter(limiter);
+        assertThat(target.getRateLimiter(), is(sameInstance(limiter)));
+
+        assertThat(target.count(TEST_URL), is(TEST_COUNT));
+
+        try {
+            target.count(TEST_URL);
+            fail("request was not throttled");
+        } catch (ThrottledException ex) {
+            // expected
+        }
+
+        verify(mockConnection, times(1)).getResponseCode();
+
+        target.reportUsage(80);
+        verify(limiter).onUsage(80);
+    }
+
+    @Test
+    public void batchingTest() throws Exception {
+        when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        TestTarget target = new TestTarget();
+        assertThat(target.getBatcher(), is(nullValue()));
+
+        target.setBatching(10, 0L, TimeUnit.MILLISECONDS);
+        assertThat(target.getBatcher().getMaxBatchSize(), is(10));
+
+        // Targets without batch support fall back to single lookups
+        CompletableFuture<Integer> count = target.countAsync(TEST_URL, Runnable::run).toCompletableFuture();
+        assertThat(count.get(), is(TEST_COUNT));
+        verify(mockConnection).getResponseCode();
+
+        target.setBatching(1, 0L, TimeUnit.MILLISECONDS);
+        assertThat(target.getBatcher(), is(nullValue()));
     }
 
     @Test
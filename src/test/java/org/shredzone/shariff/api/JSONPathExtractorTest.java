@@ -0,0 +1,358 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff.api;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link JSONPathExtractor}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class JSONPathExtractorTest {
+
+    @Test
+    public void firstTest() throws IOException {
+        String json = "{\"a\": 1, \"b\": {\"x\": [1, {\"c\": 5}], \"c\": 42, \"d\": 7}, \"c\": 3}";
+
+        assertThat(first("a", json), is(OptionalLong.of(1L)));
+        assertThat(first("b.c", json), is(OptionalLong.of(42L)));
+        assertThat(first("b.d", json), is(OptionalLong.of(7L)));
+        assertThat(first("c", json), is(OptionalLong.of(3L)));
+        assertThat(first("b.e", json), is(OptionalLong.empty()));
+        assertThat(first("a.b", json), is(OptionalLong.empty()));
+        assertThat(first("b", json), is(OptionalLong.empty()));
+        assertThat(first("", "  123  "), is(OptionalLong.of(123L)));
+    }
+
+    @Test
+    public void valueTest() throws IOException {
+        assertThat(first("a", "{\"a\": -17}"), is(OptionalLong.of(-17L)));
+        assertThat(first("a", "{\"a\": 12.9}"), is(OptionalLong.of(12L)));
+        assertThat(first("a", "{\"a\": 1.5e3}"), is(OptionalLong.of(1500L)));
+        assertThat(first("a", "{\"a\": \"815\"}"), is(OptionalLong.of(815L)));
+        assertThat(first("a", "{\"a\": \" 8.5 \"}"), is(OptionalLong.of(8L)));
+        assertThat(first("a", "{\"a\": \"many\"}"), is(OptionalLong.empty()));
+        assertThat(first("a", "{\"a\": null}"), is(OptionalLong.empty()));
+        assertThat(first("a", "{\"a\": true}"), is(OptionalLong.empty()));
+        assertThat(first("a", "{\"a\": {\"b\": 1}}"), is(OptionalLong.empty()));
+        assertThat(first("a", "{\"a\": 9223372036854775807}"),
+                is(OptionalLong.of(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void sumTest() throws IOException {
+        String json = "{\"data\": {\"children\": ["
+                + "{\"data\": {\"score\": 10, \"title\": \"a]}\\\"\"}},"
+                + "{\"data\": {\"title\": \"b\"}},"
+                + "{\"data\": {\"score\": 5}},"
+                + "{\"kind\": \"more\"},"
+                + "[], 17, null,"
+                + "{\"data\": {\"score\": \"27\"}}"
+                + "]}}";
+
+        assertThat(sum("data.children[*].data.score", json), is(42L));
+        assertThat(sum("data.children[*].data.missing", json), is(0L));
+        assertThat(sum("data.children", json), is(0L));
+        assertThat(sum("[*]", "[1, 2, 3]"), is(6L));
+        assertThat(sum("[*][*]", "[[1, 2], [], [3]]"), is(6L));
+        assertThat(sum("[*].a", "[]"), is(0L));
+    }
+
+    @Test
+    public void requiredSumTest() throws IOException {
+        JSONPathExtractor scores = JSONPathExtractor.compile("data.children[*].data.score");
+        assertThat(scores.sum(stream("{\"data\": {\"children\": [{\"data\": {\"score\": 3}}]}}"), true), is(3L));
+        assertThat(scores.sum(stream("{\"data\": {\"children\": []}}"), true), is(0L));
+        assertThat(scores.sum(stream("{\"data\": {\"children\": [{\"kind\": \"more\"}]}}"), true), is(0L));
+        assertThat(scores.sum(stream("{\"error\": 404}"), false), is(0L));
+
+        for (String json : new String[] {"{\"error\": 404}", "{\"data\": {}}",
+                    "{\"data\": {\"children\": {}}}", "[]"}) {
+            try {
+                scores.sum(stream(json), true);
+                fail("Missing path was accepted: " + json);
+            } catch (IOException ex) {
+                assertThat(ex.getMessage(), containsString("data.children[*].data.score"));
+            }
+        }
+
+        // Without wildcard, a number is required
+        JSONPathExtractor count = JSONPathExtractor.compile("result.views");
+        assertThat(count.sum(stream("{\"result\": {\"views\": 5}}"), true), is(5L));
+        try {
+            count.sum(stream("{\"result\": {}}"), true);
+            fail("Missing number was accepted");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void firstWithParentTest() throws IOException {
+        JSONPathExtractor views = JSONPathExtractor.compile("result.views");
+        assertThat(views.firstWithParent(stream("{\"result\": {\"views\": 5}}")), is(OptionalLong.of(5L)));
+        assertThat(views.firstWithParent(stream("{\"result\": {}}")), is(OptionalLong.empty()));
+        assertThat(views.firstWithParent(stream("{\"result\": {\"views\": null}}")), is(OptionalLong.empty()));
+
+        for (String json : new String[] {"{\"error\": 404}", "{\"result\": null}",
+                    "{\"result\": []}", "[]"}) {
+            try {
+                views.firstWithParent(stream(json));
+                fail("Missing parent was accepted: " + json);
+            } catch (IOException ex) {
+                assertThat(ex.getMessage(), containsString("result.views"));
+            }
+        }
+    }
+
+    @Test
+    public void sumByKeyTest() throws IOException {
+        JSONPathExtractor count = JSONPathExtractor.compile("og_object.engagement.count");
+        Map<String, Long> sums = count.sumByKey(stream("{"
+                + "\"http://example.com/a\": {\"og_object\": {\"engagement\": {\"count\": 20}}},"
+                + "\"http://example.com/b\": {\"id\": \"http://example.com/b\"},"
+                + "\"http://example.com/c\": null,"
+                + "\"http://example.com/d\": {\"og_object\": {\"engagement\": {\"count\": \"22\"}}}"
+                + "}"));
+        assertThat(sums.keySet(), contains("http://example.com/a", "http://example.com/b",
+                "http://example.com/d"));
+        assertThat(sums.get("http://example.com/a"), is(20L));
+        assertThat(sums.get("http://example.com/b"), is(0L));
+        assertThat(sums.get("http://example.com/d"), is(22L));
+
+        assertThat(count.sumByKey(stream(" { } ")).isEmpty(), is(true));
+
+        try {
+            count.sumByKey(stream("[]"));
+            fail("Array was accepted");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void escapeTest() throws IOException {
+        assertThat(first("käse", "{\"k\\u00e4se\": 1}"), is(OptionalLong.of(1L)));
+        assertThat(first("käse", "{\"käse\": 2}"), is(OptionalLong.of(2L)));
+        assertThat(first("a\"b", "{\"a\\\"b\": 3}"), is(OptionalLong.of(3L)));
+        assertThat(first("ab", "{\"a\\\"b\": 3, \"ab\": 4}"), is(OptionalLong.of(4L)));
+        assertThat(first("a", "{\"ab\": 5, \"\": 6, \"a\": 7}"), is(OptionalLong.of(7L)));
+        assertThat(first("a", "{\"a\": \"\\u0031\\u0032\"}"), is(OptionalLong.of(12L)));
+    }
+
+    @Test
+    public void stopAtFirstTest() throws IOException {
+        // Everything after the first match is invalid, but never read
+        assertThat(first("a", "{\"a\": 1, ]]]"), is(OptionalLong.of(1L)));
+        assertThat(first("[*]", "[4, 5, 6"), is(OptionalLong.of(4L)));
+
+        try {
+            sum("[*]", "[4, 5, 6");
+            fail("Incomplete document was accepted");
+        } catch (IOException ex) {
+            assertThat(ex.getMessage(), containsString("at byte 8 of JSON document"));
+        }
+    }
+
+    @Test
+    public void sizeLimitTest() throws IOException {
+        StringBuilder sb = new StringBuilder("{\"padding\": \"");
+        for (int ix = 0; ix < 10000; ix++) {
+            sb.append('x');
+        }
+        sb.append("\", \"count\": 1}");
+        String json = sb.toString();
+
+        assertThat(JSONPathExtractor.compile("count").first(stream(json)),
+                is(OptionalLong.of(1L)));
+
+        try {
+            JSONPathExtractor.compile("count", 5000L).first(stream(json));
+            fail("Size limit was ignored");
+        } catch (IOException ex) {
+            assertThat(ex.getMessage(), is("JSON document exceeds 5000 bytes"));
+        }
+    }
+
+    @Test
+    public void invalidDocumentTest() {
+        String[] invalid = {
+            "",
+            "{",
+            "{\"a\" 1}",
+            "{\"b\": 1 \"a\": 2}",
+            "{\"b\": \"unterminated",
+            "{\"b\": [1, 2}",
+            "{\"a\": -x}",
+            "{\"a\": 99999999999999999999}",
+            "{\"a\\x\": 1}",
+            "{\"a\": \"\\uZZZZ\"}",
+            "{'a': 1}",
+        };
+
+        for (String json : invalid) {
+            try {
+                first("a", json);
+                fail("Invalid document was accepted: " + json);
+            } catch (IOException ex) {
+                assertThat(ex.getMessage(), endsWith("of JSON document"));
+            }
+        }
+    }
+
+    @Test
+    public void invalidPathTest() {
+        String[] invalid = { ".a", "a.", "a..b", "a[0]", "a[*]b", "a.[" };
+
+        for (String path : invalid) {
+            try {
+                JSONPathExtractor.compile(path);
+                fail("Invalid path was accepted: " + path);
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+
+        assertThat(JSONPathExtractor.compile("a.b[*][*].c").getPath(), is("a.b[*][*].c"));
+        assertThat(JSONPathExtractor.compile("[*].c").toString(), is("[*].c"));
+    }
+
+    @Test
+    public void recordedResponseTest() throws IOException {
+        JSONPathExtractor facebook = JSONPathExtractor.compile("og_object.engagement.count");
+        try (InputStream in = resource("/facebook-result.json")) {
+            assertThat(facebook.first(in), is(OptionalLong.of(9450L)));
+        }
+
+        JSONPathExtractor reddit = JSONPathExtractor.compile("data.children[*].data.score");
+        try (InputStream in = resource("/reddit-result.json")) {
+            assertThat(reddit.sum(in), is(redditScoreSum(readResource("/reddit-result.json"))));
+        }
+    }
+
+    /**
+     * Compares the streaming extraction with building the JSON document. This benchmark
+     * is only run if the {@code shariff.benchmark} system property is set.
+     */
+    @Test
+    public void extractionBenchmark() throws IOException {
+        assumeThat(System.getProperty("shariff.benchmark"), is(notNullValue()));
+
+        int rounds = 20000;
+        byte[] facebookJson = readResource("/facebook-result.json");
+        byte[] redditJson = readResource("/reddit-result.json");
+        JSONPathExtractor facebook = JSONPathExtractor.compile("og_object.engagement.count");
+        JSONPathExtractor reddit = JSONPathExtractor.compile("data.children[*].data.score");
+
+        long check = 0L;
+        for (int pass = 0; pass < 2; pass++) {
+            // The first pass is a warm-up
+            long start = System.nanoTime();
+            for (int ix = 0; ix < rounds; ix++) {
+                JSONObject json = new JSONObject(new JSONTokener(new ByteArrayInputStream(facebookJson)));
+                check += json.getJSONObject("og_object").getJSONObject("engagement").getInt("count");
+            }
+            long facebookDom = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int ix = 0; ix < rounds; ix++) {
+                check += facebook.first(new ByteArrayInputStream(facebookJson)).getAsLong();
+            }
+            long facebookStream = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int ix = 0; ix < rounds; ix++) {
+                check += redditScoreSum(redditJson);
+            }
+            long redditDom = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int ix = 0; ix < rounds; ix++) {
+                check += reddit.sum(new ByteArrayInputStream(redditJson));
+            }
+            long redditStream = System.nanoTime() - start;
+
+            if (pass > 0) {
+                System.out.printf("Facebook (%d bytes): JSONObject %d ns, stream %d ns per response%n",
+                        facebookJson.length, facebookDom / rounds, facebookStream / rounds);
+                System.out.printf("Reddit (%d bytes): JSONObject %d ns, stream %d ns per response%n",
+                        redditJson.length, redditDom / rounds, redditStream / rounds);
+                System.out.printf("Total: %d ms%n",
+                        TimeUnit.NANOSECONDS.toMillis(facebookDom + facebookStream + redditDom + redditStream));
+            }
+        }
+
+        assertThat(check, is(greaterThan(0L)));
+    }
+
+    private static OptionalLong first(String path, String json) throws IOException {
+        return JSONPathExtractor.compile(path).first(stream(json));
+    }
+
+    private static long sum(String path, String json) throws IOException {
+        return JSONPathExtractor.compile(path).sum(stream(json));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(UTF_8));
+    }
+
+    private static InputStream resource(String name) {
+        return JSONPathExtractorTest.class.getResourceAsStream(name);
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream in = resource(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Sums up the Reddit scores the way the target did before, by building the JSON
+     * document.
+     */
+    private static long redditScoreSum(byte[] json) {
+        JSONObject obj = new JSONObject(new JSONTokener(new ByteArrayInputStream(json)));
+        JSONArray children = obj.getJSONObject("data").getJSONArray("children");
+        long sum = 0L;
+        for (int ix = 0; ix < children.length(); ix++) {
+            sum += children.getJSONObject(ix).getJSONObject("data").getInt("score");
+        }
+        return sum;
+    }
+
+}
@@ -13,13 +13,17 @@
 package org.shredzone.shariff.api;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.is;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 
+import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.junit.Test;
 import org.shredzone.shariff.target.Reddit;
 
@@ -52,4 +56,137 @@ public class JSONTargetTest {
         }
     }
 
+    /**
+     * Test that a small response is drained after the streaming extractor stopped
+     * reading, so the connection can be reused.
+     */
+    @Test
+    public void drainSmallResponseTest() throws IOException {
+        byte[] body = createBody(1000);
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        HttpURLConnection connection = mockConnection(in, body.length);
+
+        assertThat(new StreamingTarget(connection).count(TEST_URL), is(42));
+        assertThat(in.available(), is(0));
+        verify(connection, never()).disconnect();
+    }
+
+    /**
+     * Test that a response of unknown length is not drained after the streaming
+     * extractor stopped reading, but the connection is closed.
+     */
+    @Test
+    public void unknownLengthResponseTest() throws IOException {
+        byte[] body = createBody(20 * 1024);
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        HttpURLConnection connection = mockConnection(in, -1L);
+
+        assertThat(new StreamingTarget(connection).count(TEST_URL), is(42));
+        assertThat(in.available(), is(greaterThan(0)));
+        verify(connection).disconnect();
+    }
+
+    /**
+     * Test that a large response is not drained after the streaming extractor stopped
+     * reading, but the connection is closed.
+     */
+    @Test
+    public void largeResponseTest() throws IOException {
+        byte[] body = createBody(200 * 1024);
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        HttpURLConnection connection = mockConnection(in, body.length);
+
+        assertThat(new StreamingTarget(connection).count(TEST_URL), is(42));
+        assertThat(in.available(), is(greaterThan(0)));
+        verify(connection).disconnect();
+    }
+
+    /**
+     * Test that targets that only override {@link JSONTarget#extractCount(JSONTokener)}
+     * get the decoded response.
+     */
+    @Test
+    public void tokenerTest() throws IOException {
+        byte[] body = createBody(10);
+        HttpURLConnection connection = mockConnection(new ByteArrayInputStream(body), body.length);
+
+        JSONTarget target = new TokenerTarget(connection) {
+            @Override
+            protected int extractCount(JSONTokener json) {
+                return ((JSONObject) json.nextValue()).getInt("count");
+            }
+        };
+        assertThat(target.count(TEST_URL), is(42));
+    }
+
+    /**
+     * Test that a target that overrides no extractCount method fails.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void noExtractorTest() throws IOException {
+        byte[] body = createBody(10);
+        HttpURLConnection connection = mockConnection(new ByteArrayInputStream(body), body.length);
+
+        new TokenerTarget(connection).count(TEST_URL);
+    }
+
+    private static byte[] createBody(int padding) {
+        StringBuilder sb = new StringBuilder("{\"count\": 42, \"padding\": \"");
+        for (int ix = 0; ix < padding; ix++) {
+            sb.append('x');
+        }
+        sb.append("\"}");
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    private static HttpURLConnection mockConnection(InputStream in, long length) throws IOException {
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        when(connection.getContentLengthLong()).thenReturn(length);
+        when(connection.getInputStream()).thenReturn(in);
+        return connection;
+    }
+
+    /**
+     * A target that stops reading the response after the counter was found.
+     */
+    @TargetName("streaming")
+    private static class StreamingTarget extends JSONTarget {
+        private static final JSONPathExtractor COUNT = JSONPathExtractor.compile("count");
+
+        private final HttpURLConnection connection;
+
+        public StreamingTarget(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        protected HttpURLConnection connect(String url) {
+            return connection;
+        }
+
+        @Override
+        protected int extractCount(InputStream in) throws IOException {
+            return extractCount(COUNT, in, true);
+        }
+    }
+
+    /**
+     * A target that uses the default implementation of
+     * {@link JSONTarget#extractCount(InputStream)}.
+     */
+    @TargetName("tokener")
+    private static class TokenerTarget extends JSONTarget {
+        private final HttpURLConnection connection;
+
+        public TokenerTarget(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        protected HttpURLConnection connect(String url) {
+            return connection;
+        }
+    }
+
 }
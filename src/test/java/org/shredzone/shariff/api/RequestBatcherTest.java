@@ -0,0 +1,206 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff.api;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RequestBatcher}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class RequestBatcherTest {
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+    private List<List<String>> requests;
+
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        requests = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    @Test(timeout = 10000L)
+    public void maxBatchSizeTest() throws Exception {
+        RequestBatcher batcher = new RequestBatcher(this::lengths, 3, 1L, TimeUnit.HOURS);
+        assertThat(batcher.getMaxBatchSize(), is(3));
+
+        CompletableFuture<Integer> a = submit(batcher, "a");
+        CompletableFuture<Integer> b = submit(batcher, "bb");
+        CompletableFuture<Integer> c = submit(batcher, "ccc");
+
+        assertThat(a.get(), is(1));
+        assertThat(b.get(), is(2));
+        assertThat(c.get(), is(3));
+        assertThat(requests, contains(contains("a", "bb", "ccc")));
+
+        // The next lookup opens a new batch
+        CompletableFuture<Integer> d = submit(batcher, "dddd");
+        submit(batcher, "e");
+        submit(batcher, "f");
+        assertThat(d.get(), is(4));
+        assertThat(requests, hasSize(2));
+    }
+
+    @Test(timeout = 10000L)
+    public void windowTest() throws Exception {
+        RequestBatcher batcher = new RequestBatcher(this::lengths, 10, 50L, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<Integer> a1 = submit(batcher, "a");
+        CompletableFuture<Integer> b = submit(batcher, "bb");
+        CompletableFuture<Integer> a2 = submit(batcher, "a");
+
+        assertThat(a1.get(), is(1));
+        assertThat(a2.get(), is(1));
+        assertThat(b.get(), is(2));
+        assertThat(requests, contains(contains("a", "bb")));
+    }
+
+    @Test(timeout = 10000L)
+    public void schedulerWindowTest() throws Exception {
+        RequestBatcher batcher = new RequestBatcher(this::lengths, 10, 200L, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<Integer> a = batcher.submit("a", executor, scheduler).toCompletableFuture();
+        CompletableFuture<Integer> b = batcher.submit("bb", executor, scheduler).toCompletableFuture();
+
+        // The executor thread is not blocked while the batch is collected
+        CompletableFuture<Boolean> pending = CompletableFuture.supplyAsync(() -> !a.isDone(), executor);
+        assertThat(pending.get(), is(true));
+
+        assertThat(a.get(), is(1));
+        assertThat(b.get(), is(2));
+        assertThat(requests, contains(contains("a", "bb")));
+    }
+
+    @Test(timeout = 10000L)
+    public void schedulerMaxBatchSizeTest() throws Exception {
+        RequestBatcher batcher = new RequestBatcher(this::lengths, 2, 1L, TimeUnit.HOURS);
+
+        CompletableFuture<Integer> a = batcher.submit("a", executor, scheduler).toCompletableFuture();
+        CompletableFuture<Integer> b = batcher.submit("bb", executor, scheduler).toCompletableFuture();
+        CompletableFuture<Integer> c = batcher.submit("ccc", executor, scheduler).toCompletableFuture();
+
+        assertThat(a.get(), is(1));
+        assertThat(b.get(), is(2));
+        assertThat(requests, contains(contains("a", "bb")));
+        assertThat(c.isDone(), is(false));
+    }
+
+    @Test(timeout = 10000L)
+    public void missingCounterTest() throws Exception {
+        RequestBatcher batcher = new RequestBatcher(
+                urls -> Collections.singletonMap("a", 1), 2, 1L, TimeUnit.HOURS);
+
+        CompletableFuture<Integer> a = submit(batcher, "a");
+        CompletableFuture<Integer> b = submit(batcher, "b");
+
+        assertThat(a.get(), is(1));
+        assertFailed(b, IOException.class);
+    }
+
+    @Test(timeout = 10000L)
+    public void failureTest() throws Exception {
+        RequestBatcher batcher = new RequestBatcher(urls -> {
+            throw new IOException("upstream failed");
+        }, 2, 1L, TimeUnit.HOURS);
+
+        CompletableFuture<Integer> a = submit(batcher, "a");
+        CompletableFuture<Integer> b = submit(batcher, "b");
+
+        assertFailed(a, IOException.class);
+        assertFailed(b, IOException.class);
+    }
+
+    @Test(timeout = 10000L)
+    public void cancelledTest() throws Exception {
+        RequestBatcher batcher = new RequestBatcher(this::lengths, 10, 200L, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<Integer> a = submit(batcher, "a");
+        CompletableFuture<Integer> b = submit(batcher, "bb");
+        a.cancel(false);
+
+        assertThat(b.get(), is(2));
+        assertThat(requests, contains(contains("bb")));
+    }
+
+    @Test(timeout = 10000L)
+    public void rejectedTest() throws Exception {
+        RequestBatcher batcher = new RequestBatcher(this::lengths, 10, 0L, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<Integer> a = batcher.submit("a", task -> {
+            throw new RejectedExecutionException();
+        }).toCompletableFuture();
+        assertFailed(a, RejectedExecutionException.class);
+
+        // A rejected batch is not reused
+        assertThat(submit(batcher, "bb").get(), is(2));
+        assertThat(requests, contains(contains("bb")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalBatchSizeTest() {
+        new RequestBatcher(this::lengths, 0, 1L, TimeUnit.SECONDS);
+    }
+
+    private CompletableFuture<Integer> submit(RequestBatcher batcher, String url) {
+        return batcher.submit(url, executor).toCompletableFuture();
+    }
+
+    /**
+     * Batch function that returns the length of each URL as counter.
+     */
+    private Map<String, Integer> lengths(List<String> urls) {
+        requests.add(new ArrayList<>(urls));
+        return urls.stream().collect(Collectors.toMap(Function.identity(), String::length));
+    }
+
+    private static void assertFailed(CompletableFuture<Integer> future, Class<? extends Throwable> type)
+    throws InterruptedException {
+        try {
+            future.get();
+            fail("lookup did not fail");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), is(instanceOf(type)));
+        }
+    }
+
+}
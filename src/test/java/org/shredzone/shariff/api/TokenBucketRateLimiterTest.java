@@ -0,0 +1,105 @@
+/*
+ * shariff-backend-java
+ *
+ * Copyright (C) 2026 Richard "Shred" Körber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+package org.shredzone.shariff.api;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TokenBucketRateLimiter}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class TokenBucketRateLimiterTest {
+
+    @Test
+    public void burstTest() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(20.0, 3);
+
+        assertThat(limiter.tryAcquire(), is(true));
+        assertThat(limiter.tryAcquire(), is(true));
+        assertThat(limiter.tryAcquire(), is(true));
+        assertThat(limiter.tryAcquire(), is(false));
+
+        // Refilled at 20 tokens per second
+        TimeUnit.MILLISECONDS.sleep(120L);
+        assertThat(limiter.tryAcquire(), is(true));
+    }
+
+    @Test
+    public void delayTest() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10.0, 1);
+        assertThat(limiter.getDelayNanos(), is(0L));
+
+        assertThat(limiter.tryAcquire(), is(true));
+
+        // The next token is available in 100 ms at most
+        long delay = limiter.getDelayNanos();
+        assertThat(delay, is(greaterThan(0L)));
+        assertThat(delay, is(lessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100L))));
+    }
+
+    @Test
+    public void usageTest() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10.0, 10);
+        assertThat(limiter.getRate(), is(10.0));
+        assertThat(limiter.isThrottled(), is(false));
+
+        limiter.onUsage(75);
+        assertThat(limiter.getRate(), is(10.0));
+        assertThat(limiter.isThrottled(), is(false));
+
+        limiter.onUsage(90);
+        assertThat(limiter.getRate(), is(closeTo(4.0, 0.001)));
+        assertThat(limiter.isThrottled(), is(true));
+
+        limiter.onUsage(100);
+        assertThat(limiter.getRate(), is(closeTo(0.5, 0.001)));
+
+        limiter.onUsage(130);
+        assertThat(limiter.getRate(), is(closeTo(0.5, 0.001)));
+
+        limiter.onUsage(20);
+        assertThat(limiter.getRate(), is(10.0));
+        assertThat(limiter.isThrottled(), is(false));
+    }
+
+    @Test
+    public void throttledBurstTest() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10.0, 10);
+        limiter.onUsage(100);
+
+        // Saved tokens must not be spent at once when the quota is nearly exhausted
+        assertThat(limiter.tryAcquire(), is(true));
+        assertThat(limiter.tryAcquire(), is(false));
+    }
+
+    @Test
+    public void thresholdTest() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10.0, 10);
+        limiter.setThrottleThreshold(50);
+        limiter.onUsage(60);
+        assertThat(limiter.isThrottled(), is(true));
+        assertThat(limiter.getRate(), is(closeTo(8.0, 0.001)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badRateTest() {
+        new TokenBucketRateLimiter(0.0, 1);
+    }
+
+}
@@ -14,18 +14,39 @@ package org.shredzone.shariff.target;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.shredzone.shariff.RateLimitExceededException;
+import org.shredzone.shariff.ThrottledException;
+import org.shredzone.shariff.api.RateLimiter;
+import org.shredzone.shariff.api.TokenBucketRateLimiter;
 
 /**
  * Unit tests for {@link Facebook}.
@@ -76,6 +97,107 @@ public class FacebookTest {
         target.count(TEST_URL);
     }
 
+    /**
+     * Resolves several URLs with a single request to a local stub of the Graph API.
+     */
+    @Test(timeout = 10000L)
+    public void batchTest() throws Exception {
+        List<String> queries = Collections.synchronizedList(new ArrayList<>());
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v15.0/", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            queries.add(query);
+
+            Map<String, String> params = new HashMap<>();
+            for (String param : query.split("&")) {
+                String[] kv = param.split("=", 2);
+                params.put(kv[0], URLDecoder.decode(kv[1], UTF_8.name()));
+            }
+            assertThat(params.get("access_token"), is(CLIENT_ID + "|" + CLIENT_SECRET));
+
+            JSONObject result;
+            if (params.containsKey("ids")) {
+                result = new JSONObject();
+                for (String id : params.get("ids").split(",")) {
+                    result.put(id, graphObject(id));
+                }
+            } else {
+                result = graphObject(params.get("id"));
+            }
+
+            byte[] body = result.toString().getBytes(UTF_8);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            String stubUrl = "http://" + server.getAddress().getHostString() + ':' + server.getAddress().getPort();
+            Facebook stubTarget = new Facebook() {
+                @Override
+                protected HttpURLConnection openConnection(URL url) throws IOException {
+                    // The stub server does not accept the unescaped '|' of the access token
+                    return super.openConnection(new URL(stubUrl + url.getFile().replace("|", "%7C")));
+                }
+            };
+            stubTarget.setSecret(CLIENT_ID, CLIENT_SECRET);
+            stubTarget.setBatching(3, 1L, TimeUnit.HOURS);
+
+            CompletableFuture<Integer> a = stubTarget.countAsync("http://example.com/a", executor).toCompletableFuture();
+            CompletableFuture<Integer> b = stubTarget.countAsync("http://example.com/bb", executor).toCompletableFuture();
+            CompletableFuture<Integer> c = stubTarget.countAsync("http://example.com/ccc", executor).toCompletableFuture();
+
+            assertThat(a.get(), is(20));
+            assertThat(b.get(), is(21));
+            assertThat(c.get(), is(22));
+            assertThat(queries, hasSize(1));
+            assertThat(queries.get(0), startsWith("ids=" + URLEncoder.encode(
+                    "http://example.com/a,http://example.com/bb,http://example.com/ccc", UTF_8.name())));
+
+            // URLs containing a comma are fetched individually
+            queries.clear();
+            Map<String, Integer> counts = stubTarget.countBatch(
+                    Arrays.asList("http://example.com/a", "http://example.com/?q=1,2"));
+            assertThat(counts.get("http://example.com/a"), is(20));
+            assertThat(counts.get("http://example.com/?q=1,2"), is(25));
+            assertThat(queries, hasSize(2));
+
+            // A throttled request fails the entire batch
+            queries.clear();
+            RateLimiter limiter = mock(RateLimiter.class);
+            when(limiter.tryAcquire()).thenReturn(true, false);
+            stubTarget.setRateLimiter(limiter);
+            try {
+                stubTarget.countBatch(Arrays.asList("http://example.com/a",
+                        "http://example.com/bb", "http://example.com/?q=1,2"));
+                fail("batch was not throttled");
+            } catch (ThrottledException ex) {
+                // expected
+            }
+            assertThat(queries, hasSize(1));
+            assertThat(queries.get(0), startsWith("id="));
+
+            // A URL containing a comma does not bypass an exhausted rate limiter
+            queries.clear();
+            when(limiter.tryAcquire()).thenReturn(false);
+            try {
+                stubTarget.countBatch(Arrays.asList("http://example.com/a",
+                        "http://example.com/?q=1,2", "http://example.com/?q=3,4"));
+                fail("batch was not throttled");
+            } catch (ThrottledException ex) {
+                // expected
+            }
+            assertThat(queries, is(empty()));
+        } finally {
+            executor.shutdownNow();
+            server.stop(0);
+        }
+    }
+
     @Test
     public void rateLimitNotExceededTest() throws IOException {
         target.checkAppUsageHeader("{\"call_count\":98,\"total_time\":24,\"total_cputime\":100}");
@@ -86,6 +208,25 @@ public class FacebookTest {
         target.checkAppUsageHeader("{\"call_count\":98,\"total_time\":24,\"total_cputime\":104}");
     }
 
+    @Test
+    public void appUsageFeedbackTest() throws IOException {
+        assertThat(target.getRateLimiter(), is(nullValue()));
+        target.checkAppUsageHeader("{\"call_count\":20,\"total_time\":90,\"total_cputime\":45}");
+
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10.0, 10);
+        target.setRateLimiter(limiter);
+        assertThat(limiter.isThrottled(), is(false));
+
+        target.checkAppUsageHeader("{\"call_count\":20,\"total_time\":90,\"total_cputime\":45}");
+        assertThat(limiter.getUsage(), is(90));
+        assertThat(limiter.isThrottled(), is(true));
+        assertThat(limiter.getRate(), is(lessThan(10.0)));
+
+        target.checkAppUsageHeader("{\"call_count\":20,\"total_time\":30,\"total_cputime\":45}");
+        assertThat(limiter.getUsage(), is(45));
+        assertThat(limiter.isThrottled(), is(false));
+    }
+
     @Test
     public void badRateLimitHeaderTest() throws IOException {
         target.checkAppUsageHeader("{}");
@@ -94,4 +235,18 @@ public class FacebookTest {
         target.checkAppUsageHeader("not-json");
     }
 
+    /**
+     * Returns a Graph API object of the given URL, using the URL length as counter.
+     */
+    private static JSONObject graphObject(String url) {
+        JSONObject engagement = new JSONObject();
+        engagement.put("count", url.length());
+        JSONObject ogObject = new JSONObject();
+        ogObject.put("engagement", engagement);
+        JSONObject result = new JSONObject();
+        result.put("og_object", ogObject);
+        result.put("id", url);
+        return result;
+    }
+
 }
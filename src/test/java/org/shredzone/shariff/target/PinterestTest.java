@@ -15,6 +15,7 @@ package org.shredzone.shariff.target;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -64,4 +65,31 @@ public class PinterestTest {
         assertThat(target.count(TEST_URL), is(LIKE_COUNT));
     }
 
+    @Test
+    public void formatTest() throws IOException {
+        assertThat(parse("x({\"count\": 5})"), is(5));
+        assertThat(parse(" x ( {\"url\": \"http://a/?b=(c)\", \"count\": 6} ) ;"), is(6));
+        assertThat(parse("jQuery_123({\"count\": \"7\", \"url\": \"x\"})"), is(7));
+
+        String[] invalid = {
+            "",
+            "x(",
+            "{\"count\": 5}",
+            "x({\"url\": \"http://a\"})",
+            "x({\"count\": null})",
+        };
+        for (String response : invalid) {
+            try {
+                parse(response);
+                fail("Invalid response was accepted: " + response);
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    private static int parse(String response) throws IOException {
+        return new Pinterest().extractCount(new ByteArrayInputStream(response.getBytes(UTF_8)));
+    }
+
 }
@@ -12,11 +12,13 @@
  */
 package org.shredzone.shariff.target;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 
@@ -60,4 +62,34 @@ public class StumbleUponTest {
         assertThat(target.count(TEST_URL), is(LIKE_COUNT));
     }
 
+    @Test
+    public void missingViewsTest() throws IOException {
+        StumbleUpon unknown = new StumbleUpon() {
+            @Override
+            protected HttpURLConnection connect(String url) throws IOException {
+                HttpURLConnection connection = mock(HttpURLConnection.class);
+                when(connection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+                when(connection.getInputStream()).thenReturn(
+                        new ByteArrayInputStream("{\"result\":{}}".getBytes(UTF_8)));
+                return connection;
+            }
+        };
+        assertThat(unknown.count(TEST_URL), is(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void missingPathTest() throws IOException {
+        StumbleUpon broken = new StumbleUpon() {
+            @Override
+            protected HttpURLConnection connect(String url) throws IOException {
+                HttpURLConnection connection = mock(HttpURLConnection.class);
+                when(connection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+                when(connection.getInputStream()).thenReturn(
+                        new ByteArrayInputStream("{\"error\": 404}".getBytes(UTF_8)));
+                return connection;
+            }
+        };
+        broken.count(TEST_URL);
+    }
+
 }
@@ -12,14 +12,21 @@
  */
 package org.shredzone.shariff.target;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +42,23 @@ public class VkTest {
     private static final String RESULT = "VK.Share.count(1, 7);";
     private static final int LIKE_COUNT = 7;
 
+    /**
+     * The regular expression that was used for parsing the counter before. The parser
+     * must give the same results.
+     */
+    private static final Pattern COUNTER = Pattern.compile(
+                    Pattern.quote("VK.Share.count") + "\\(.*?,\\s*(\\d+)\\);.*");
+
+    /**
+     * Fragments of the fuzzed responses. Unicode line separators are left out, because
+     * the parser does not read beyond the counter.
+     */
+    private static final String[] FRAGMENTS = {
+        "VK.Share.count(", "VK.Share.count", "VK", ".", "(", ")", ");", ";", ",", ", ",
+        " ", "\t", "\f", "\u000B", "\n", "\r", "0", "1", "7", "42", "007", "2147483647",
+        "2147483648", "99999999999", "a", "x", "\u00E4", "\u20AC", "\"",
+    };
+
     private Vk target;
 
     @Before
@@ -63,4 +87,79 @@ public class VkTest {
         assertThat(target.count(TEST_URL), is(LIKE_COUNT));
     }
 
+    @Test
+    public void formatTest() throws IOException {
+        assertThat(parse("VK.Share.count(1, 7);"), is(7));
+        assertThat(parse("VK.Share.count(1,0);\nfoo"), is(0));
+        assertThat(parse("VK.Share.count(1, \t 2147483647);"), is(Integer.MAX_VALUE));
+        assertThat(parse("VK.Share.count(1, 2, 3);"), is(3));
+        assertThat(parse("VK.Share.count(1, 99999999999, 5); trailing"), is(5));
+        assertThat(parse("VK.Share.count(1, 5)); VK.Share.count(1, 6);"), is(6));
+
+        String[] invalid = {
+            "",
+            "VK.Share.count(1, 7)",
+            "VK.Share.count(1, 7;",
+            "VK.Share.count(1, x7);",
+            "VK.Share.count(1,\n7);",
+            "VK.Share.count(1, 2147483648);",
+            " VK.Share.count(1, 7);",
+            "VK.Share.Count(1, 7);",
+        };
+        for (String response : invalid) {
+            try {
+                parse(response);
+                fail("Invalid response was accepted: " + response);
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void fuzzTest() throws IOException {
+        Random random = new Random(4711L);
+        for (int round = 0; round < 20000; round++) {
+            StringBuilder sb = new StringBuilder();
+            if (random.nextInt(4) > 0) {
+                sb.append("VK.Share.count(");
+            }
+            int fragments = random.nextInt(12);
+            for (int ix = 0; ix < fragments; ix++) {
+                sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            String response = sb.toString();
+
+            Integer expected = parseWithRegex(response);
+            try {
+                int actual = parse(response);
+                assertThat("Response: " + response, actual, is(expected));
+            } catch (IOException ex) {
+                assertThat("Response: " + response, expected, is((Integer) null));
+            }
+        }
+    }
+
+    private static int parse(String response) throws IOException {
+        return new Vk().extractCount(new ByteArrayInputStream(response.getBytes(UTF_8)));
+    }
+
+    /**
+     * Parses the response with {@link #COUNTER}, the way it was done before.
+     *
+     * @return Counter, or {@code null} if the response was rejected
+     */
+    private static Integer parseWithRegex(String response) throws IOException {
+        try (BufferedReader r = new BufferedReader(new StringReader(response))) {
+            String line = r.readLine();
+            if (line == null) {
+                return null;
+            }
+            Matcher m = COUNTER.matcher(line);
+            return m.matches() ? Integer.valueOf(m.group(1)) : null;
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
 }